@@ -0,0 +1,56 @@
+/**
+ * The read-only view of an undirected graph that the project2 analyses
+ * work on. Vertices are numbered 0 to V-1; each undirected edge appears
+ * in the neighbor lists of both its ends. Implementations differ in how
+ * they store the neighbor lists (plain CSR arrays, compressed bits, ...),
+ * so the analyses run unchanged on any of them.
+ * @author Joseph Ville
+ */
+public interface AdjacencyGraph
+{
+	/**
+	 * @return the number of vertices
+	 */
+	public int V();
+
+	/**
+	 * @return the number of stored neighbor entries (twice the number of
+	 * 		undirected edges)
+	 */
+	public long arcs();
+
+	/**
+	 * @param v - the vertex
+	 * @return the degree of v
+	 */
+	public int degree(int v);
+
+	/**
+	 * Get a new neighbor iterator over this graph. An iterator holds the
+	 * decoding state for one neighbor list at a time, so create one per
+	 * thread and reuse it.
+	 * @return the iterator
+	 */
+	public NeighborIterator neighborIterator();
+
+	/**
+	 * Relabel the vertices, so that vertex v of this graph becomes vertex
+	 * newId[v] of the result, with each neighbor list sorted. The mapping
+	 * back to the IDs in the input file carries over.
+	 * @param newId - a permutation of 0 to V-1
+	 * @return the relabeled graph, stored the same way as this one
+	 */
+	public AdjacencyGraph relabel(int[] newId);
+
+	/**
+	 * @param v - a vertex of this graph
+	 * @return v's ID in the input file
+	 */
+	public int originalId(int v);
+
+	/**
+	 * @param originalId - a vertex ID in the input file
+	 * @return the vertex of this graph with that ID
+	 */
+	public int vertexOf(int originalId);
+}// end interface AdjacencyGraph
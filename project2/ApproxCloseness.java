@@ -0,0 +1,224 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.rit.util.Random;
+
+/**
+ * Estimate the closeness centrality (average distance) of every vertex of
+ * a connected component from a random sample of pivot vertices, after
+ * Eppstein and Wang. A BFS is run from each pivot only, and the average
+ * distance of v is estimated from its distances to the pivots. By
+ * Hoeffding's inequality and a union bound, with
+ * 		k = ln(2n/delta) / (2 eps^2)
+ * pivots every estimate is within eps times the diameter of the true
+ * value, with probability at least 1-delta. The running time is k BFSs,
+ * independent of the number of vertices.
+ * @author Joseph Ville
+ */
+public class ApproxCloseness
+{
+	private double epsilon; // allowed error, as a fraction of the diameter
+	private double delta; // allowed probability of exceeding the error
+	private int pivots; // number of BFSs run
+	private boolean exact; // whether every vertex was a pivot
+	private float[] estimates; // estimated average distance, indexed by position in cc
+	private double error; // bound on |estimate - true value|, w.p. >= 1-delta
+	private double ccAverage; // estimated average distance over the whole component
+	private float[] sorted; // the estimates in ascending order
+
+	/**
+	 * Construct an object of this class, and run the estimation
+	 * @param graph - the graph
+	 * @param cc - a connected component of the graph, as original vertex IDs
+	 * @param epsilon - the allowed error, as a fraction of the diameter
+	 * @param delta - the allowed probability of exceeding the error
+	 * @param seed - the seed for choosing pivots
+	 */
+	public ApproxCloseness(final AdjacencyGraph graph, ArrayList<Integer> cc, double epsilon, double delta, long seed)
+	{
+		if(epsilon <= 0 || delta <= 0 || delta >= 1)
+		{
+			throw new IllegalArgumentException("Need eps > 0 and 0 < delta < 1");
+		}
+		this.epsilon = epsilon;
+		this.delta = delta;
+		final int n = cc.size();
+
+		// choose the pivots, uniformly with replacement; if that would be
+		// at least as many BFSs as the exact computation, do that instead
+		int k = sampleSize(n, epsilon, delta);
+		exact = k >= n;
+		pivots = exact ? n : k;
+		final int[] sources = new int[pivots];
+		Random prng = new Random(seed);
+		for(int i = 0; i < pivots; i++)
+		{
+			sources[i] = graph.vertexOf(cc.get(exact ? i : prng.nextInt(n)));
+		}
+
+		final long[] sums = new long[graph.V()]; // sum of distances to the pivots
+		final long[] totals = new long[2]; // sum over pivots of their avg distance * (n-1), and min eccentricity
+		totals[1] = Long.MAX_VALUE;
+		new ParallelLoop()
+		{
+			BfsKernel bfs; // per-thread BFS buffers
+			long[] thrSums; // per-thread distance sums
+			long thrTotal;
+			long thrMinEcc;
+
+			public void start()
+			{
+				bfs = new BfsKernel(graph);
+				thrSums = new long[graph.V()];
+				thrMinEcc = Long.MAX_VALUE;
+			}
+
+			public void run(int i)
+			{
+				bfs.clear();
+				int count = bfs.search(sources[i]);
+				for(int q = 1; q < count; q++)
+				{
+					int v = bfs.vertexAt(q);
+					int d = bfs.distance(v);
+					thrSums[v] += d;
+					thrTotal += d;
+				}
+				thrMinEcc = Math.min(thrMinEcc, bfs.distance(bfs.vertexAt(count - 1)));
+			}
+
+			public void finish()
+			{
+				synchronized(sums)
+				{
+					for(int v = 0; v < sums.length; v++)
+					{
+						sums[v] += thrSums[v];
+					}
+					totals[0] += thrTotal;
+					totals[1] = Math.min(totals[1], thrMinEcc);
+				}
+			}
+		}.exec(0, pivots - 1);
+
+		// the diameter is at most twice any vertex's eccentricity
+		double scale = n > 1 ? (double) n / (n - 1) : 0.0;
+		error = exact ? 0.0 : scale * epsilon * 2 * totals[1];
+		estimates = new float[n];
+		for(int i = 0; i < n; i++)
+		{
+			estimates[i] = (float) (exact
+				? (double) sums[graph.vertexOf(cc.get(i))] / (n - 1)
+				: scale * sums[graph.vertexOf(cc.get(i))] / pivots);
+		}
+		ccAverage = n > 1 ? (double) totals[0] / pivots / (n - 1) : 0.0;
+		sorted = estimates.clone();
+		Arrays.sort(sorted);
+	}
+
+	/**
+	 * Compute the number of pivots needed so that, with probability at
+	 * least 1-delta, all n estimates are within eps times the diameter
+	 * @param n - the number of vertices
+	 * @param epsilon - the allowed error, as a fraction of the diameter
+	 * @param delta - the allowed probability of exceeding the error
+	 * @return the number of pivots
+	 */
+	public static int sampleSize(int n, double epsilon, double delta)
+	{
+		double k = Math.ceil(Math.log(2.0 * n / delta) / (2 * epsilon * epsilon));
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(1, k));
+	}
+
+	/**
+	 * @return the estimated average distances, indexed by position in the component
+	 */
+	public float[] estimates()
+	{
+		return estimates;
+	}
+
+	/**
+	 * @return the error bound on every estimate, which holds with
+	 * 		probability at least 1-delta (0 if the computation was exact)
+	 */
+	public double error()
+	{
+		return error;
+	}
+
+	/**
+	 * @return the estimated average distance between two vertices of the
+	 * 		component; within error() of the truth with probability at
+	 * 		least 1-delta
+	 */
+	public double ccAverage()
+	{
+		return ccAverage;
+	}
+
+	/**
+	 * @return the number of pivots (BFSs) used
+	 */
+	public int pivots()
+	{
+		return pivots;
+	}
+
+	/**
+	 * @return true if every vertex was used as a pivot, so the estimates are exact
+	 */
+	public boolean isExact()
+	{
+		return exact;
+	}
+
+	/**
+	 * @return the allowed error, as a fraction of the diameter
+	 */
+	public double epsilon()
+	{
+		return epsilon;
+	}
+
+	/**
+	 * @return the allowed probability of exceeding the error
+	 */
+	public double delta()
+	{
+		return delta;
+	}
+
+	/**
+	 * Decide whether the vertex at the given position is in the true top k
+	 * whenever all estimates are within the error bound, i.e. with
+	 * probability at least 1-delta. That is the case when at most k
+	 * vertices, itself included, have an estimate that could still be
+	 * below its true value.
+	 * @param position - the vertex's position in the component
+	 * @param k - the size of the top list
+	 * @return true if the vertex is in the top k with confidence 1-delta
+	 */
+	public boolean surelyInTop(int position, int k)
+	{
+		if(error == 0.0)
+		{
+			return true;
+		}
+		float limit = (float) (estimates[position] + 2 * error);
+		int lo = 0, hi = sorted.length; // count estimates strictly below limit
+		while(lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if(sorted[mid] < limit)
+			{
+				lo = mid + 1;
+			}
+			else
+			{
+				hi = mid;
+			}
+		}
+		return lo <= k;
+	}
+}// end class ApproxCloseness
@@ -0,0 +1,278 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run the Regression, ConnectedComponents and TopRank analyses on every
+ * graph file in a directory, in one JVM, so the startup and JIT warm-up
+ * are paid once. The files are spread over a fixed pool of threads; each
+ * thread reads its file and analyzes it with its own Regression,
+ * ConnectedComponents and TopRank objects, so while one thread is reading
+ * a file another is computing. Each file's results go into its own
+ * buffer and are written to the combined report in file name order as
+ * soon as all the earlier files are done. At most twice as many files as
+ * threads are in progress or waiting to be written at once, which bounds
+ * the memory in use however many files there are.
+ *
+ * A file that cannot be read or analyzed is reported as an error, and
+ * the batch carries on with the rest; the exit status is then 1.
+ * @author Joseph Ville
+ *
+ * Usage: java Batch <directory> [-threads <n>] [-order <order>] [-topk] [-offheap] [-budget <memoryMB>]
+ * 		  <directory> = the directory of graph files to be analyzed; every
+ * 		  		  file in it whose name does not start with "." is read
+ * 		  -threads = the number of files to analyze at once, default 2
+ * 		  		  (each analysis also uses all the cores by itself)
+ * 		  -order = relabel vertices for cache locality before the analysis;
+ * 		  		  <order> = degree, rcm or community (same output)
+ * 		  -topk = compute closeness only as far as needed to find the top 40
+ * 		  -offheap = keep the graphs in direct buffers outside the Java heap
+ * 		  		  (see OffHeapGraph)
+ * 		  -budget = sort each graph into a temporary .csr file on disk, in at
+ * 		  		  most <memoryMB> MB, for graphs larger than memory
+ * 		  		  (see ExternalGraphBuilder)
+ */
+public class Batch
+{
+	private static String order; // vertex order to relabel by, or null
+	private static boolean topK; // whether to use the pruned top-k closeness search
+	private static boolean offHeap; // whether to keep the graphs off the heap
+	private static long memoryMB; // build the graphs on disk within this many MB, or 0 to read into memory
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length < 1)
+		{
+			usage();
+		}
+		int threads = 2;
+		for(int a = 1; a < args.length; a++)
+		{
+			if(args[a].equals("-topk"))
+			{
+				topK = true;
+			}
+			else if(args[a].equals("-order") && a + 1 < args.length && Reordering.isMethod(args[a + 1]))
+			{
+				order = args[++a];
+			}
+			else if(args[a].equals("-offheap"))
+			{
+				offHeap = true;
+			}
+			else if(args[a].equals("-budget") && a + 1 < args.length)
+			{
+				try
+				{
+					memoryMB = Long.parseLong(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(memoryMB < 1)
+				{
+					usage();
+				}
+			}
+			else if(args[a].equals("-threads") && a + 1 < args.length)
+			{
+				try
+				{
+					threads = Integer.parseInt(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(threads < 1)
+				{
+					usage();
+				}
+			}
+			else
+			{
+				usage();
+			}
+		}
+
+		File[] files = new File(args[0]).listFiles();
+		if(files == null)
+		{
+			System.err.println("Not a directory: " + args[0]);
+			System.exit(1);
+		}
+		int n = 0;
+		for(File file : files)
+		{
+			if(file.isFile() && !file.getName().startsWith("."))
+			{
+				files[n++] = file;
+			}
+		}
+		files = Arrays.copyOf(files, n);
+		Arrays.sort(files);
+
+		long t1 = System.currentTimeMillis();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayDeque<Future<Analysis>> pending = new ArrayDeque<Future<Analysis>>();
+		Analysis[] done = new Analysis[files.length];
+		int next = 0; // next file to submit
+		try
+		{
+			for(int i = 0; i < files.length; i++)
+			{
+				while(next < files.length && pending.size() < 2 * threads)
+				{
+					pending.add(pool.submit(new Analysis(files[next++])));
+				}
+				done[i] = pending.poll().get();
+				done[i].print(System.out);
+				done[i].buffer = null; // written; let it go
+				System.err.println("Analyzed " + done[i].file.getName() + " (" + (i + 1) + " of " + files.length +
+						") in " + done[i].msec + " msec");
+			}
+		}
+		catch(ExecutionException ex)
+		{
+			System.err.println("An analysis failed: " + ex.getCause());
+			System.exit(1);
+		}
+		catch(InterruptedException ex)
+		{
+			System.err.println("The batch was interrupted");
+			System.exit(1);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		System.out.println("File\tV\tarcs\tmsec");
+		boolean failed = false;
+		for(Analysis analysis : done)
+		{
+			System.out.println(analysis.file.getName() + "\t" +
+					(analysis.error == null ? analysis.V + "\t" + analysis.arcs : "error\terror") + "\t" + analysis.msec);
+			failed |= analysis.error != null;
+		}
+		System.out.println("total\t\t\t" + (System.currentTimeMillis() - t1));
+		if(failed)
+		{
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * The analysis of one graph file, with its own output buffer
+	 */
+	private static class Analysis implements Callable<Analysis>
+	{
+		private File file;
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private String error; // why the file could not be analyzed, or null
+		private int V; // number of vertices
+		private long arcs; // number of arcs
+		private long msec; // time taken by call(), reading included
+
+		/**
+		 * Construct an object of this class
+		 * @param file - the graph file
+		 */
+		Analysis(File file)
+		{
+			this.file = file;
+		}
+
+		/**
+		 * Read the graph and run the three analyses into the buffer
+		 * @return this analysis
+		 */
+		public Analysis call()
+		{
+			long t1 = System.currentTimeMillis();
+			ResultSink out = ResultSink.open("text", buffer);
+			try
+			{
+				Collaboration collab = new Collaboration();
+				collab.setExitOnError(false);
+				collab.setOffHeap(offHeap);
+				collab.setMemoryBudget(memoryMB << 20);
+				AdjacencyGraph graph = collab.readGraph(file.getPath());
+				if(order != null)
+				{
+					graph = Reordering.apply(graph, order);
+				}
+				V = graph.V();
+				arcs = graph.arcs();
+
+				Regression regression = new Regression();
+				regression.executeRegressions(Regression.degreeOccurrences(graph), graph.V(), out);
+				regression.printRegressions(out);
+
+				ConnectedComponents cc = new ConnectedComponents(out);
+				cc.findComponents(graph);
+				cc.printSizes(graph.V(), out);
+
+				TopRank rank = new TopRank();
+				rank.setTopK(topK);
+				rank.analyze(graph, cc.getLargestComponent(), out);
+			}
+			catch(IllegalArgumentException ex)
+			{
+				error = ex.getMessage(); // a file readGraph() could not read
+			}
+			catch(RuntimeException ex)
+			{
+				error = ex.toString(); // a bug, but the other files can still be analyzed
+			}
+			out.flush();
+			msec = System.currentTimeMillis() - t1;
+			return this;
+		}
+
+		/**
+		 * Write this file's section of the report
+		 * @param out - the report
+		 */
+		void print(PrintStream out)
+		{
+			out.println("== " + file.getName() + " ==");
+			if(error != null)
+			{
+				out.println("Error: " + error);
+			}
+			else
+			{
+				out.write(buffer.toByteArray(), 0, buffer.size());
+			}
+			out.flush();
+		}
+	}// end class Analysis
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java Batch <directory> [-threads <n>] [-order <order>] [-topk] [-offheap] [-budget <memoryMB>]\n" +
+				"<directory> = the directory of graph files to be analyzed\n" +
+				"-threads = the number of files to analyze at once, default 2\n" +
+				"-order = relabel vertices for cache locality; <order> = degree, rcm or community\n" +
+				"-topk = find the top 40 by closeness with BFS cut-offs (same output)\n" +
+				"-offheap = keep the graphs in direct buffers outside the Java heap\n" +
+				"-budget = build the graphs on disk in at most <memoryMB> MB, for one larger than memory");
+		System.exit(0);
+	}
+}// end class Batch
@@ -0,0 +1,414 @@
+import java.util.Arrays;
+
+/**
+ * The shared BFS kernel for the project2 tools: a direction-optimizing
+ * BFS (Beamer et al.) over any AdjacencyGraph. While the frontier is
+ * small the kernel expands it top-down, scanning the frontier's neighbor
+ * lists. When the frontier's edges outnumber the unexplored edges by a
+ * factor of 1/ALPHA it switches to bottom-up steps, in which every
+ * unvisited vertex looks for any parent in a bitset of the frontier and
+ * stops at the first one found. That skips most edge checks in the huge
+ * middle levels of a low-diameter graph. It switches back once the
+ * frontier shrinks below V/BETA vertices.
+ *
+ * A kernel owns its buffers (visited bitset, frontier bitset, BFS order
+ * and distances), so use one kernel per thread. It counts the edges it
+ * examines next to the edges a plain top-down BFS would have examined,
+ * so the savings can be measured.
+ * @author Joseph Ville
+ */
+public class BfsKernel
+{
+	private static final int ALPHA = 14; // go bottom-up when frontier edges > unexplored edges / ALPHA
+	private static final int BETA = 24; // go top-down when frontier vertices < V / BETA
+
+	private AdjacencyGraph graph;
+	private int V; // number of vertices
+	private NeighborIterator it; // this kernel's walker over graph's neighbor lists
+	private long[] visited; // one bit per vertex
+	private long[] frontierBits; // the current frontier, during bottom-up steps
+	private int[] order; // vertices in BFS order, level by level
+	private int[] distances; // valid only for visited vertices
+	private int count; // number of vertices reached by the last search
+	private long unexploredArcs; // sum of degrees of unvisited vertices
+	private long distanceSum; // sum of distances from the last search's source
+
+	private long edgesExamined; // by the last search
+	private long topDownEdges; // a top-down BFS would have examined, in the last search
+	private long totalExamined; // over all searches
+	private long totalTopDown; // over all searches
+	private int searches; // number of searches run
+
+	/**
+	 * Construct an object of this class
+	 * @param graph - the graph to search
+	 */
+	public BfsKernel(AdjacencyGraph graph)
+	{
+		this.graph = graph;
+		this.V = graph.V();
+		this.it = graph.neighborIterator();
+		visited = new long[(V + 63) >>> 6];
+		frontierBits = new long[visited.length];
+		order = new int[V];
+		distances = new int[V];
+		unexploredArcs = graph.arcs();
+	}
+
+	/**
+	 * Forget which vertices have been visited, so the next search covers
+	 * the whole component of its source again
+	 */
+	public void clear()
+	{
+		Arrays.fill(visited, 0L);
+		unexploredArcs = graph.arcs();
+	}
+
+	/**
+	 * @param v - a vertex
+	 * @return true if v has been visited since the last clear()
+	 */
+	public boolean visited(int v)
+	{
+		return (visited[v >>> 6] & (1L << v)) != 0;
+	}
+
+	/**
+	 * Run a BFS from the given vertex over the vertices not yet visited.
+	 * Afterwards vertexAt(0) through vertexAt(count-1) are the reached
+	 * vertices in BFS order and distance(v) is valid for each of them.
+	 * @param source - the vertex to search from; must not be visited
+	 * @return count - the number of vertices reached, including source
+	 */
+	public int search(int source)
+	{
+		run(source, 0, Float.POSITIVE_INFINITY, true);
+		return count;
+	}
+
+	/**
+	 * Find the component of the given vertex, as search() does but only
+	 * top-down. Vertices stay visited until clear(), so calling component()
+	 * on every unvisited vertex in turn finds the connected components;
+	 * bottom-up steps would scan every unvisited vertex of the graph, in
+	 * the components not yet found as well as this one.
+	 * @param source - the vertex to search from; must not be visited
+	 * @return count - the number of vertices reached, including source
+	 */
+	public int component(int source)
+	{
+		run(source, 0, Float.POSITIVE_INFINITY, false);
+		return count;
+	}
+
+	/**
+	 * Compute the average of the distances between the given vertex and
+	 * every vertex reachable from it
+	 * @param source - the vertex to find distances from
+	 * @return the average distance from this vertex to every other vertex
+	 */
+	public float avgDistance(int source)
+	{
+		return avgDistance(source, 0, Float.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Compute the average of the distances between the given vertex and
+	 * every vertex reachable from it, giving up as soon as the average is
+	 * certain to be greater than the cut-off. While level d is expanded
+	 * top-down, every unseen vertex is at distance d+1 or more, and the
+	 * level-d vertices not yet expanded can reach at most the sum of their
+	 * degrees minus one new vertices at d+1; the rest are at d+2 or more.
+	 * After a bottom-up step the next level is complete, so every unseen
+	 * vertex is at d+2 or more.
+	 * @param source - the vertex to find distances from
+	 * @param reachable - the number of vertices reachable from source,
+	 * 		including itself (the size of its component); ignored if
+	 * 		cutOff is infinite
+	 * @param cutOff - the largest average that is still of interest
+	 * @return the average distance from this vertex to every other
+	 * 		vertex, or Float.POSITIVE_INFINITY if it was cut off
+	 */
+	public float avgDistance(int source, int reachable, float cutOff)
+	{
+		clear();
+		if(!run(source, reachable, cutOff, true))
+		{
+			return Float.POSITIVE_INFINITY;
+		}
+		return (float) distanceSum / (count - 1);
+	}
+
+	/**
+	 * @param i - a position in BFS order, less than the count returned by search()
+	 * @return the i-th vertex reached by the last search
+	 */
+	public int vertexAt(int i)
+	{
+		return order[i];
+	}
+
+	/**
+	 * @param v - a vertex reached by the last search
+	 * @return the distance of v from the last search's source
+	 */
+	public int distance(int v)
+	{
+		return distances[v];
+	}
+
+	/**
+	 * @return the number of edges examined by the last search
+	 */
+	public long edgesExamined()
+	{
+		return edgesExamined;
+	}
+
+	/**
+	 * @return the number of edges a top-down BFS would have examined in
+	 * 		the last search, i.e. the sum of the reached vertices' degrees
+	 */
+	public long topDownEdges()
+	{
+		return topDownEdges;
+	}
+
+	/**
+	 * @return the number of edges examined by all searches so far
+	 */
+	public long totalExamined()
+	{
+		return totalExamined;
+	}
+
+	/**
+	 * @return the number of edges a top-down BFS would have examined in
+	 * 		all searches so far
+	 */
+	public long totalTopDown()
+	{
+		return totalTopDown;
+	}
+
+	/**
+	 * @return the number of searches run so far
+	 */
+	public int searches()
+	{
+		return searches;
+	}
+
+	/**
+	 * Format edge counts as a one-line report
+	 * @param searches - the number of searches
+	 * @param examined - edges examined
+	 * @param topDown - edges a top-down BFS would have examined
+	 * @return the report
+	 */
+	public static String report(long searches, long examined, long topDown)
+	{
+		return "BFS examined " + examined + " edges in " + searches + " searches (" +
+				(searches == 0 ? 0 : examined / searches) + " per BFS, " +
+				(topDown == 0 ? 100 : Math.round(100.0 * examined / topDown)) + "% of top-down)";
+	}
+
+	/**
+	 * Run one BFS from source
+	 * @param source - the vertex to search from
+	 * @param reachable - size of source's component, for the cut-off
+	 * @param cutOff - the largest average distance still of interest
+	 * @param directionOptimizing - whether to switch to bottom-up steps
+	 * @return false if the search was cut off, true otherwise
+	 */
+	private boolean run(int source, int reachable, float cutOff, boolean directionOptimizing)
+	{
+		boolean cut = cutOff != Float.POSITIVE_INFINITY;
+		edgesExamined = 0;
+		topDownEdges = 0;
+		distanceSum = 0;
+		searches++;
+
+		visit(source, 0);
+		order[0] = source;
+		count = 1;
+		int levelStart = 0, levelEnd = 1;
+		long frontierArcs = degree(source);
+		boolean bottomUp = false;
+		boolean finished = true;
+
+		for(int d = 0; levelStart < levelEnd; d++)
+		{
+			int frontierSize = levelEnd - levelStart;
+			if(!bottomUp && directionOptimizing && frontierArcs > unexploredArcs / ALPHA)
+			{
+				bottomUp = true;
+			}
+			else if(bottomUp && frontierSize < V / BETA)
+			{
+				bottomUp = false;
+			}
+
+			if(bottomUp)
+			{
+				frontierArcs = bottomUpStep(levelStart, levelEnd, d);
+				if(cut)
+				{
+					long unseen = reachable - count;
+					long lowerBound = distanceSum + unseen * (d + 2);
+					if((float) lowerBound / (reachable - 1) > cutOff)
+					{
+						finished = false;
+						break;
+					}
+				}
+			}
+			else
+			{
+				frontierArcs = topDownStep(levelStart, levelEnd, d, cut, reachable, cutOff);
+				if(frontierArcs < 0)
+				{
+					finished = false;
+					break;
+				}
+			}
+			levelStart = levelEnd;
+			levelEnd = count;
+		}
+
+		totalExamined += edgesExamined;
+		totalTopDown += topDownEdges;
+		return finished;
+	}
+
+	/**
+	 * Expand one level by scanning the neighbor lists of the frontier
+	 * @param levelStart - position in order of the frontier's first vertex
+	 * @param levelEnd - position in order just past the frontier
+	 * @param d - the distance of the frontier
+	 * @param cut - whether to check the cut-off
+	 * @param reachable - size of the source's component, for the cut-off
+	 * @param cutOff - the largest average distance still of interest
+	 * @return the sum of degrees of the next frontier, or -1 if cut off
+	 */
+	private long topDownStep(int levelStart, int levelEnd, int d, boolean cut, int reachable, float cutOff)
+	{
+		long nextArcs = 0;
+		int next = d + 1;
+		long frontierFanOut = 0; // sum of (degree - 1) over unexpanded frontier vertices
+		if(cut)
+		{
+			for(int q = levelStart; q < levelEnd; q++)
+			{
+				frontierFanOut += degree(order[q]) - 1;
+			}
+		}
+
+		for(int q = levelStart; q < levelEnd; q++)
+		{
+			int a = order[q];
+			int degree = degree(a);
+			edgesExamined += degree;
+			topDownEdges += degree;
+			it.start(a);
+			for(int b = it.next(); b >= 0; b = it.next()) // loop through all neighbors of current vertex
+			{
+				if((visited[b >>> 6] & (1L << b)) == 0)
+				{
+					visit(b, next);
+					order[count++] = b;
+					nextArcs += degree(b);
+				}
+			}
+
+			if(cut)
+			{
+				frontierFanOut -= degree - 1;
+				long unseen = reachable - count;
+				long atNext = Math.min(unseen, Math.max(0, frontierFanOut));
+				long lowerBound = distanceSum + atNext * next + (unseen - atNext) * (next + 1);
+				if((float) lowerBound / (reachable - 1) > cutOff)
+				{
+					return -1;
+				}
+			}
+		}
+		return nextArcs;
+	}
+
+	/**
+	 * Expand one level by letting every unvisited vertex look for a parent
+	 * in the frontier
+	 * @param levelStart - position in order of the frontier's first vertex
+	 * @param levelEnd - position in order just past the frontier
+	 * @param d - the distance of the frontier
+	 * @return the sum of degrees of the next frontier
+	 */
+	private long bottomUpStep(int levelStart, int levelEnd, int d)
+	{
+		for(int q = levelStart; q < levelEnd; q++)
+		{
+			int a = order[q];
+			frontierBits[a >>> 6] |= 1L << a;
+			topDownEdges += degree(a);
+		}
+
+		long nextArcs = 0;
+		int next = d + 1;
+		for(int w = 0; w < visited.length; w++)
+		{
+			long unvisited = ~visited[w];
+			if(w == visited.length - 1 && (V & 63) != 0)
+			{
+				unvisited &= (1L << V) - 1; // no vertices past V
+			}
+			while(unvisited != 0)
+			{
+				int v = (w << 6) + Long.numberOfTrailingZeros(unvisited);
+				unvisited &= unvisited - 1;
+				it.start(v);
+				for(int b = it.next(); b >= 0; b = it.next())
+				{
+					edgesExamined++;
+					if((frontierBits[b >>> 6] & (1L << b)) != 0)
+					{
+						visit(v, next);
+						order[count++] = v;
+						nextArcs += degree(v);
+						break;
+					}
+				}
+			}
+		}
+
+		for(int q = levelStart; q < levelEnd; q++)
+		{
+			int a = order[q];
+			frontierBits[a >>> 6] &= ~(1L << a);
+		}
+		return nextArcs;
+	}
+
+	/**
+	 * Mark a vertex visited at the given distance
+	 * @param v - the vertex
+	 * @param d - its distance from the source
+	 */
+	private void visit(int v, int d)
+	{
+		visited[v >>> 6] |= 1L << v;
+		distances[v] = d;
+		distanceSum += d;
+		unexploredArcs -= degree(v);
+	}
+
+	/**
+	 * @param v - a vertex
+	 * @return the degree of v
+	 */
+	private int degree(int v)
+	{
+		return graph.degree(v);
+	}
+}// end class BfsKernel
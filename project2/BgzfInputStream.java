@@ -0,0 +1,322 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read a block-gzip (BGZF) file, as written by bgzip, inflating its blocks
+ * in parallel. A BGZF file is a series of gzip members of at most 64 KB,
+ * each of which records its own compressed size in a "BC" extra field, so
+ * the raw blocks can be split off without inflating them. The reading
+ * thread splits off blocks and hands them to a pool with one thread per
+ * core, keeping a few blocks per thread in flight, and returns the
+ * inflated blocks in file order.
+ * @author Joseph Ville
+ */
+public class BgzfInputStream extends InputStream
+{
+	private static final int HEADER = 12; // gzip header bytes before the extra field
+	private static final int TRAILER = 8; // CRC32 and ISIZE after the deflated data
+	private static final int AHEAD = 4; // blocks in flight per thread
+
+	/**
+	 * The most bytes in a block, raw or inflated
+	 */
+	public static final int MAX_BLOCK = 1 << 16;
+
+	private InputStream in; // the compressed file
+	private ExecutorService pool;
+	private ArrayDeque<Future<byte[]>> pending; // blocks being inflated, in file order
+	private int depth; // the most blocks in flight
+	private boolean endOfInput; // no more raw blocks to read
+	private byte[] block = new byte[0]; // the current inflated block
+	private int pos; // next byte of block to return
+
+	/**
+	 * Construct an object of this class, with the default number of blocks
+	 * in flight
+	 * @param in - the compressed input, positioned at the first block
+	 */
+	public BgzfInputStream(InputStream in)
+	{
+		this(in, defaultDepth());
+	}
+
+	/**
+	 * Construct an object of this class. Each block in flight holds up to
+	 * 2 * MAX_BLOCK bytes, raw and inflated.
+	 * @param in - the compressed input, positioned at the first block
+	 * @param depth - the most blocks in flight, at least 1
+	 */
+	public BgzfInputStream(InputStream in, int depth)
+	{
+		this.in = in;
+		int threads = Math.min(depth, Runtime.getRuntime().availableProcessors());
+		pool = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "bgzf-inflate");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		pending = new ArrayDeque<Future<byte[]>>();
+		this.depth = depth;
+	}
+
+	/**
+	 * @return the number of blocks kept in flight by default, a few per
+	 * 		core
+	 */
+	public static int defaultDepth()
+	{
+		return AHEAD * Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Check whether a gzip file is block-gzipped, from its first bytes
+	 * @param header - the first bytes of the file, at least 16 if there
+	 * 		are that many
+	 * @param n - the number of bytes in header
+	 * @return true if the first gzip member has a BGZF "BC" extra field
+	 */
+	public static boolean isBgzf(byte[] header, int n)
+	{
+		if(n < 16 || (header[0] & 0xFF) != 0x1f || (header[1] & 0xFF) != 0x8b || (header[3] & 4) == 0)
+		{
+			return false;
+		}
+		return header[12] == 'B' && header[13] == 'C' && header[14] == 2 && header[15] == 0;
+	}
+
+	/**
+	 * @return the next byte, or -1 at the end of the file
+	 * @throws IOException if the file cannot be read or is corrupt
+	 */
+	public int read() throws IOException
+	{
+		if(pos == block.length && !nextBlock())
+		{
+			return -1;
+		}
+		return block[pos++] & 0xFF;
+	}
+
+	/**
+	 * Read up to len bytes into b
+	 * @param b - the buffer
+	 * @param off - where in b to start
+	 * @param len - the most bytes to read
+	 * @return the number of bytes read, or -1 at the end of the file
+	 * @throws IOException if the file cannot be read or is corrupt
+	 */
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if(len == 0)
+		{
+			return 0;
+		}
+		if(pos == block.length && !nextBlock())
+		{
+			return -1;
+		}
+		int n = Math.min(len, block.length - pos);
+		System.arraycopy(block, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	/**
+	 * Close the file and stop the inflating threads
+	 * @throws IOException if closing fails
+	 */
+	public void close() throws IOException
+	{
+		pool.shutdownNow();
+		in.close();
+	}
+
+	/**
+	 * Move on to the next non-empty inflated block, topping up the blocks
+	 * in flight first
+	 * @return false at the end of the file
+	 * @throws IOException if the file cannot be read or is corrupt
+	 */
+	private boolean nextBlock() throws IOException
+	{
+		do
+		{
+			while(!endOfInput && pending.size() < depth)
+			{
+				final byte[] raw = readRawBlock();
+				if(raw == null)
+				{
+					endOfInput = true;
+				}
+				else
+				{
+					pending.add(pool.submit(new Callable<byte[]>()
+					{
+						public byte[] call() throws IOException
+						{
+							return inflate(raw);
+						}
+					}));
+				}
+			}
+			if(pending.isEmpty())
+			{
+				return false;
+			}
+			try
+			{
+				block = pending.poll().get();
+			}
+			catch(ExecutionException ex)
+			{
+				throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+			}
+			catch(InterruptedException ex)
+			{
+				throw new IOException("Interrupted while inflating");
+			}
+			pos = 0;
+		}
+		while(block.length == 0); // e.g. the empty end-of-file block
+		return true;
+	}
+
+	/**
+	 * Split off the next whole block, header to trailer
+	 * @return the block, or null at the end of the file
+	 * @throws IOException if the file cannot be read or is not BGZF
+	 */
+	private byte[] readRawBlock() throws IOException
+	{
+		byte[] header = new byte[HEADER];
+		int n = readFully(header, 0, HEADER);
+		if(n == 0)
+		{
+			return null;
+		}
+		if(n < HEADER || (header[0] & 0xFF) != 0x1f || (header[1] & 0xFF) != 0x8b || (header[3] & 4) == 0)
+		{
+			throw new IOException("Not a BGZF block");
+		}
+		int xlen = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+		byte[] extra = new byte[xlen];
+		if(readFully(extra, 0, xlen) < xlen)
+		{
+			throw new EOFException("Truncated BGZF block");
+		}
+		int blockSize = -1;
+		for(int i = 0; i + 4 <= xlen; )
+		{
+			int slen = (extra[i + 2] & 0xFF) | (extra[i + 3] & 0xFF) << 8;
+			if(extra[i] == 'B' && extra[i + 1] == 'C' && slen == 2 && i + 6 <= xlen)
+			{
+				blockSize = ((extra[i + 4] & 0xFF) | (extra[i + 5] & 0xFF) << 8) + 1;
+			}
+			i += 4 + slen;
+		}
+		if(blockSize < HEADER + xlen + TRAILER)
+		{
+			throw new IOException("Not a BGZF block");
+		}
+		byte[] raw = new byte[blockSize];
+		System.arraycopy(header, 0, raw, 0, HEADER);
+		System.arraycopy(extra, 0, raw, HEADER, xlen);
+		int rest = blockSize - HEADER - xlen;
+		if(readFully(raw, HEADER + xlen, rest) < rest)
+		{
+			throw new EOFException("Truncated BGZF block");
+		}
+		return raw;
+	}
+
+	/**
+	 * Inflate one block and check its CRC
+	 * @param raw - the whole block
+	 * @return the inflated data
+	 * @throws IOException if the block is corrupt
+	 */
+	private static byte[] inflate(byte[] raw) throws IOException
+	{
+		int xlen = (raw[10] & 0xFF) | (raw[11] & 0xFF) << 8;
+		int t = raw.length - TRAILER;
+		long crc = (raw[t] & 0xFFL) | (raw[t + 1] & 0xFFL) << 8 | (raw[t + 2] & 0xFFL) << 16 | (raw[t + 3] & 0xFFL) << 24;
+		int size = (raw[t + 4] & 0xFF) | (raw[t + 5] & 0xFF) << 8 | (raw[t + 6] & 0xFF) << 16 | (raw[t + 7] & 0xFF) << 24;
+		if(size < 0 || size > MAX_BLOCK)
+		{
+			throw new IOException("Corrupt BGZF block");
+		}
+		byte[] data = new byte[size];
+		Inflater inflater = new Inflater(true);
+		try
+		{
+			inflater.setInput(raw, HEADER + xlen, t - HEADER - xlen);
+			int n = 0;
+			while(n < size && !inflater.finished())
+			{
+				int k = inflater.inflate(data, n, size - n);
+				if(k == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+				{
+					break;
+				}
+				n += k;
+			}
+			if(n != size)
+			{
+				throw new IOException("Corrupt BGZF block");
+			}
+		}
+		catch(DataFormatException ex)
+		{
+			throw new IOException("Corrupt BGZF block: " + ex.getMessage());
+		}
+		finally
+		{
+			inflater.end();
+		}
+		CRC32 check = new CRC32();
+		check.update(data, 0, size);
+		if(check.getValue() != crc)
+		{
+			throw new IOException("BGZF block failed its CRC check");
+		}
+		return data;
+	}
+
+	/**
+	 * Read up to len bytes, stopping early only at the end of the file
+	 * @param b - the buffer
+	 * @param off - where in b to start
+	 * @param len - the bytes wanted
+	 * @return the number of bytes read
+	 * @throws IOException if the file cannot be read
+	 */
+	private int readFully(byte[] b, int off, int len) throws IOException
+	{
+		int n = 0;
+		while(n < len)
+		{
+			int k = in.read(b, off + n, len - n);
+			if(k < 0)
+			{
+				break;
+			}
+			n += k;
+		}
+		return n;
+	}
+}// end class BgzfInputStream
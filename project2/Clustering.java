@@ -0,0 +1,293 @@
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Count the triangles of a graph and find its clustering coefficients.
+ * Each edge is oriented towards the endpoint of higher degree (ties by
+ * vertex number), which leaves every vertex at most about sqrt(2E) out-
+ * neighbors. The out-neighbor lists are sorted, and each triangle is
+ * found exactly once, by a merge of the lists of the two lower endpoints
+ * of its highest edge. The vertices are spread across all cores, each
+ * thread counting into its own array.
+ *
+ * Duplicate edges and self-loops are ignored here, so the coefficients
+ * are those of the simple graph.
+ * @author Joseph Ville
+ *
+ * Usage: java Clustering <fileName>
+ * 		  <fileName> = the name of the graph file to be analyzed
+ */
+public class Clustering
+{
+	private static String fileName;
+
+	private int V; // number of vertices
+	private int[] rankOf; // position of each vertex in ascending degree order
+	private int[] vertexAt; // vertex at each position
+	private long[] start; // start of each position's out-neighbors in out, V+1 entries
+	private int[] out; // out-neighbors of each position, as sorted positions
+	private int[] simpleDegree; // number of distinct neighbors other than itself
+	private long[] triangles; // number of triangles at each vertex
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length != 1)
+		{
+			usage();
+		}
+		fileName = args[0];
+		AdjacencyGraph graph = new Collaboration().readGraph(fileName);
+
+		long t1 = System.currentTimeMillis();
+		Clustering clustering = new Clustering(graph);
+		long t2 = System.currentTimeMillis();
+		System.err.println("Counted triangles in " + (t2 - t1) + " msec");
+
+		DecimalFormat df = new DecimalFormat("0.#####");
+		System.out.println("Triangles = " + clustering.triangleCount());
+		System.out.println("Global clustering = " + df.format(clustering.globalClustering()));
+		System.out.println("Average local clustering = " + df.format(clustering.averageClustering()));
+
+		// the Regression degree table, with the average local clustering
+		// of the vertices of each degree
+		TreeMap<Integer, Integer> occurrences = Regression.degreeOccurrences(graph);
+		double[] sum = new double[occurrences.isEmpty() ? 1 : occurrences.lastKey() + 1];
+		for(int v = 0; v < graph.V(); v++)
+		{
+			sum[graph.degree(v)] += clustering.localClustering(graph.originalId(v));
+		}
+		DecimalFormat d = new DecimalFormat("#");
+		DecimalFormat d1 = new DecimalFormat("0.00000E00");
+		System.out.println("d\tcount\tpr\tclust");
+		for(Integer key : occurrences.keySet())
+		{
+			int count = occurrences.get(key);
+			double probD = (double)count / graph.V();
+			System.out.println(key + "\t" + d.format(count) + "\t" + Regression.sFormat(d1.format(probD)) + "\t" +
+					df.format(sum[key] / count));
+		}
+	}
+
+	/**
+	 * Construct an object of this class, counting the triangles of a graph
+	 * @param graph - the graph
+	 */
+	public Clustering(AdjacencyGraph graph)
+	{
+		V = graph.V();
+		orient(graph);
+		count();
+	}
+
+	/**
+	 * @return the number of triangles in the graph
+	 */
+	public long triangleCount()
+	{
+		long sum = 0;
+		for(int v = 0; v < V; v++)
+		{
+			sum += triangles[v];
+		}
+		return sum / 3;
+	}
+
+	/**
+	 * @param v - a vertex, by its ID in the graph file
+	 * @return the number of triangles v is in
+	 */
+	public long triangles(int v)
+	{
+		return triangles[v];
+	}
+
+	/**
+	 * @param v - a vertex, by its ID in the graph file
+	 * @return the fraction of pairs of v's neighbors that are adjacent, or
+	 * 		0 if v has fewer than two neighbors
+	 */
+	public double localClustering(int v)
+	{
+		long d = simpleDegree[v];
+		return d < 2 ? 0 : 2.0 * triangles[v] / (d * (d - 1));
+	}
+
+	/**
+	 * @return the average local clustering over all vertices
+	 */
+	public double averageClustering()
+	{
+		double sum = 0;
+		for(int v = 0; v < V; v++)
+		{
+			sum += localClustering(v);
+		}
+		return V == 0 ? 0 : sum / V;
+	}
+
+	/**
+	 * @return the global clustering coefficient (transitivity): three
+	 * 		times the triangles over the paths of length two
+	 */
+	public double globalClustering()
+	{
+		long wedges = 0;
+		for(int v = 0; v < V; v++)
+		{
+			long d = simpleDegree[v];
+			wedges += d * (d - 1) / 2;
+		}
+		return wedges == 0 ? 0 : 3.0 * triangleCount() / wedges;
+	}
+
+	/**
+	 * Build the sorted out-neighbor lists, numbering vertices by ascending
+	 * degree and pointing each edge to its higher-numbered endpoint.
+	 * Vertices are kept by their IDs in the graph file.
+	 * @param graph - the graph
+	 */
+	private void orient(AdjacencyGraph graph)
+	{
+		long[] keys = new long[V];
+		for(int i = 0; i < V; i++)
+		{
+			keys[i] = ((long) graph.degree(graph.vertexOf(i)) << 32) | i;
+		}
+		Arrays.sort(keys);
+		rankOf = new int[V];
+		vertexAt = new int[V];
+		for(int r = 0; r < V; r++)
+		{
+			vertexAt[r] = (int) keys[r];
+			rankOf[vertexAt[r]] = r;
+		}
+
+		NeighborIterator it = graph.neighborIterator();
+		start = new long[V + 1];
+		for(int r = 0; r < V; r++)
+		{
+			int count = 0;
+			it.start(graph.vertexOf(vertexAt[r]));
+			for(int w = it.next(); w >= 0; w = it.next())
+			{
+				if(rankOf[graph.originalId(w)] > r)
+				{
+					count++;
+				}
+			}
+			start[r + 1] = start[r] + count;
+		}
+		if(start[V] > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Too many edges for triangle counting: " + start[V]);
+		}
+
+		// fill, sort and remove duplicates, compacting as we go
+		out = new int[(int) start[V]];
+		simpleDegree = new int[V];
+		int end = 0;
+		for(int r = 0; r < V; r++)
+		{
+			int first = end;
+			int fill = (int) start[r];
+			it.start(graph.vertexOf(vertexAt[r]));
+			for(int w = it.next(); w >= 0; w = it.next())
+			{
+				int q = rankOf[graph.originalId(w)];
+				if(q > r)
+				{
+					out[fill++] = q;
+				}
+			}
+			Arrays.sort(out, (int) start[r], fill);
+			for(int i = (int) start[r]; i < fill; i++)
+			{
+				if(end == first || out[end - 1] != out[i])
+				{
+					out[end++] = out[i];
+					simpleDegree[vertexAt[out[i]]]++;
+				}
+			}
+			simpleDegree[vertexAt[r]] += end - first;
+			start[r] = first;
+		}
+		start[V] = end;
+	}
+
+	/**
+	 * Count the triangles at each vertex, in parallel over positions
+	 */
+	private void count()
+	{
+		triangles = new long[V];
+		new ParallelLoop()
+		{
+			long[] thrTriangles; // per-thread counts, by position
+
+			public void start()
+			{
+				thrTriangles = new long[V];
+			}
+
+			public void run(int u)
+			{
+				int uEnd = (int) start[u + 1];
+				for(int j = (int) start[u]; j < uEnd; j++)
+				{
+					// every triangle u < v < w is found here once, from u and v
+					int v = out[j];
+					int a = j + 1;
+					int b = (int) start[v];
+					int bEnd = (int) start[v + 1];
+					while(a < uEnd && b < bEnd)
+					{
+						int x = out[a];
+						int y = out[b];
+						if(x < y)
+						{
+							a++;
+						}
+						else if(x > y)
+						{
+							b++;
+						}
+						else
+						{
+							thrTriangles[u]++;
+							thrTriangles[v]++;
+							thrTriangles[x]++;
+							a++;
+							b++;
+						}
+					}
+				}
+			}
+
+			public void finish()
+			{
+				synchronized(triangles)
+				{
+					for(int r = 0; r < V; r++)
+					{
+						triangles[vertexAt[r]] += thrTriangles[r];
+					}
+				}
+			}
+		}.chunk(64).exec(0, V - 1);
+	}
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java Clustering <fileName>\n" +
+				"<fileName> = the name of the graph file to be analyzed");
+		System.exit(0);
+	}
+}// end class Clustering
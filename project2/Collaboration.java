@@ -1,5 +1,11 @@
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Analyzes a Collaboration Graph
@@ -11,6 +17,9 @@ public class Collaboration
 	private int V;
 	private int E;
 	private Vertex[] vertices;
+	private boolean offHeap; // copy text graphs into off-heap buffers
+	private long memoryBudget; // build text graphs on disk within this many bytes, if > 0
+	private boolean exitOnError = true; // exit on a bad file, rather than throw
 	
 	/**
 	 * Construct an object of this class
@@ -20,7 +29,8 @@ public class Collaboration
 	}
 
 	/**
-	 * Reads and processes a file in the Graph File Format
+	 * Reads and processes a file in the Graph File Format, which may be
+	 * gzipped (see openGraphFile())
 	 * @param fileName - the file to process
 	 * @return vertices - an array of vertices for the graph
 	 * @throws Exception
@@ -28,96 +38,258 @@ public class Collaboration
 	public Vertex[] readFile(String fileName)
 	{
 		String line = "";
+		boolean gLine = false;
+		boolean eLine = false;
 		
 		try
 		{
-			BufferedReader buff = new BufferedReader(new FileReader(fileName));
-
-			boolean gLine = false;
-			boolean eLine = false;
-			
-			while((line = buff.readLine()) != null)
+			BufferedReader buff = openGraphFile(fileName);
+			try
 			{
-				String[] lineArr;
-
-				// ignore any blank line
-				if(!line.equals(null) && !line.isEmpty())
+				while((line = buff.readLine()) != null)
 				{
-					lineArr = line.split(" ");
-
-					/* Required. Edges of the graph.
-					First field - source vertex #, 0 <= an int <= V-1
-					Second field - destination vertex #, 0 <= an int <= V-1
-					Third field - edge weight, a floating pt #. If 3rd field omitted,
-						assume to be 1 by default.
-					*/
-					if(lineArr[0].equals("e"))
-					{
-						eLine = true;
-						int index = Integer.parseInt(lineArr[1]);
-						int neighbor = Integer.parseInt(lineArr[2]);
-
-						initializeIfNull(vertices, index);
-						initializeIfNull(vertices, neighbor);
-						vertices[index].addNeighbor(neighbor);
-						vertices[neighbor].addNeighbor(index);
-					}
-					/* Required. Occurs once, at beginning of file
-					The parameters of the graph.
-					First field is # of vertices V, an int >= 0
-					Second field is # of edges E, an int >= 0 
-					*/
-					else if(lineArr[0].equals("g"))
-					{
-						gLine = true;
-						int numVertices = Integer.parseInt(lineArr[1]); // V and E are guaranteed to be >= 0
-						int numEdges = Integer.parseInt(lineArr[2]);
-
-						/* ok to do this here, because this will be executed before
-						any of the other if statements on this or any other
-						pass of the while loop */
-						this.V = numVertices;
-						this.E = numEdges;
-						vertices = new Vertex[V];
-					}
-					// ignore any lines beginning with v, c, or d
-					else if(lineArr[0].equals("v"))
-					{
-						continue;
-					}
-					else if(lineArr[0].equals("d"))
-					{
-						continue;
-					}
-					else if(lineArr[0].equals("c"))
+					String[] lineArr;
+
+					// ignore any blank line
+					if(!line.equals(null) && !line.isEmpty())
 					{
-						continue;
-					}
-				}// end if
-			}// end while
-
-			buff.close();
-			
-			// make sure the file contained the required lines
-			if(gLine == false || eLine == false)
+						lineArr = line.split(" ");
+
+						/* Required. Edges of the graph.
+						First field - source vertex #, 0 <= an int <= V-1
+						Second field - destination vertex #, 0 <= an int <= V-1
+						Third field - edge weight, a floating pt #. If 3rd field omitted,
+							assume to be 1 by default.
+						*/
+						if(lineArr[0].equals("e"))
+						{
+							eLine = true;
+							int index = Integer.parseInt(lineArr[1]);
+							int neighbor = Integer.parseInt(lineArr[2]);
+
+							initializeIfNull(vertices, index);
+							initializeIfNull(vertices, neighbor);
+							vertices[index].addNeighbor(neighbor);
+							vertices[neighbor].addNeighbor(index);
+						}
+						/* Required. Occurs once, at beginning of file
+						The parameters of the graph.
+						First field is # of vertices V, an int >= 0
+						Second field is # of edges E, an int >= 0 
+						*/
+						else if(lineArr[0].equals("g"))
+						{
+							gLine = true;
+							int numVertices = Integer.parseInt(lineArr[1]); // V and E are guaranteed to be >= 0
+							int numEdges = Integer.parseInt(lineArr[2]);
+
+							/* ok to do this here, because this will be executed before
+							any of the other if statements on this or any other
+							pass of the while loop */
+							this.V = numVertices;
+							this.E = numEdges;
+							vertices = new Vertex[V];
+						}
+						// ignore any lines beginning with v, c, or d
+						else if(lineArr[0].equals("v"))
+						{
+							continue;
+						}
+						else if(lineArr[0].equals("d"))
+						{
+							continue;
+						}
+						else if(lineArr[0].equals("c"))
+						{
+							continue;
+						}
+					}// end if
+				}// end while
+			}
+			finally
 			{
-				System.err.println("The file is in an invalid format.");
-				System.exit(0);
+				buff.close();
 			}
 		}
 		catch(NumberFormatException nfe)
 		{
-			System.err.println("A number in the file had invalid format");
-			System.exit(0);
+			fail("A number in the file had invalid format");
 		}
 		catch(Exception ex)
 		{
-			System.err.println("There was an error reading the file");
-			System.exit(0);
+			fail("There was an error reading the file");
+		}
+		
+		// make sure the file contained the required lines
+		if(gLine == false || eLine == false)
+		{
+			fail("The file is in an invalid format.");
 		}
 		return vertices;
 	}// end readFile()
 	
+	/**
+	 * Open a text graph file for reading, decompressing it on the fly if it
+	 * is gzipped, so it need not be unpacked to disk first. A block-gzip
+	 * (BGZF) file has its blocks inflated in parallel (see
+	 * BgzfInputStream); any other gzip file is inflated as a stream. The
+	 * format is told from the first bytes, not the file name.
+	 * @param fileName - the file to open
+	 * @return a reader of the file's text
+	 * @throws IOException if the file cannot be opened
+	 */
+	public static BufferedReader openGraphFile(String fileName) throws IOException
+	{
+		return openGraphFile(fileName, 1 << 16, BgzfInputStream.defaultDepth());
+	}
+
+	/**
+	 * Open a text graph file for reading, as openGraphFile(fileName), with
+	 * a given amount of buffering; see openGraphFileMemory() for the bytes
+	 * it takes
+	 * @param fileName - the file to open
+	 * @param bufferSize - the size of each read buffer, in bytes
+	 * @param depth - the most BGZF blocks in flight, at least 1
+	 * @return a reader of the file's text
+	 * @throws IOException if the file cannot be opened
+	 */
+	public static BufferedReader openGraphFile(String fileName, int bufferSize, int depth) throws IOException
+	{
+		BufferedInputStream in = new BufferedInputStream(new FileInputStream(fileName), bufferSize);
+		byte[] header = new byte[16];
+		in.mark(header.length);
+		int n = 0;
+		for(int k = 0; n < header.length && k >= 0; n += Math.max(k, 0))
+		{
+			k = in.read(header, n, header.length - n);
+		}
+		in.reset();
+
+		InputStream stream = in;
+		if(BgzfInputStream.isBgzf(header, n))
+		{
+			stream = new BgzfInputStream(in, depth);
+		}
+		else if(n >= 2 && (header[0] & 0xFF) == 0x1f && (header[1] & 0xFF) == 0x8b)
+		{
+			stream = new GZIPInputStream(in, bufferSize);
+		}
+		return new BufferedReader(new InputStreamReader(stream), bufferSize);
+	}
+
+	/**
+	 * @param bufferSize - the size of each read buffer, in bytes
+	 * @param depth - the most BGZF blocks in flight
+	 * @return the most memory, in bytes, that the buffers of
+	 * 		openGraphFile(fileName, bufferSize, depth) take: the byte
+	 * 		buffers of the file and the inflater, the reader's char buffer
+	 * 		at 2 bytes a char, and each BGZF block in flight raw and
+	 * 		inflated
+	 */
+	public static long openGraphFileMemory(int bufferSize, int depth)
+	{
+		return 4L * bufferSize + 2L * depth * BgzfInputStream.MAX_BLOCK;
+	}
+
+	/**
+	 * Read a graph for analysis. A file whose name ends in .cgraph is read
+	 * as a compressed graph (see CompressedGraph), and one ending in .csr
+	 * is memory-mapped off the heap (see OffHeapGraph). Any other file is
+	 * read in the Graph File Format and copied into CSR arrays, which go
+	 * off-heap too after setOffHeap(true). After setMemoryBudget(), a text
+	 * file is instead sorted into a temporary .csr file on disk and mapped,
+	 * for graphs larger than memory.
+	 * @param fileName - the file to read
+	 * @return the graph
+	 */
+	public AdjacencyGraph readGraph(String fileName)
+	{
+		if(fileName.endsWith(".cgraph") || fileName.endsWith(".csr"))
+		{
+			try
+			{
+				AdjacencyGraph graph = fileName.endsWith(".csr") ?
+						OffHeapGraph.map(fileName) : CompressedGraph.read(fileName);
+				this.V = graph.V();
+				this.E = (int) (graph.arcs() / 2);
+				return graph;
+			}
+			catch(Exception ex)
+			{
+				fail("There was an error reading the file");
+			}
+		}
+		if(memoryBudget > 0)
+		{
+			File csr = null;
+			try
+			{
+				csr = File.createTempFile("graph", ".csr");
+				csr.deleteOnExit();
+				ExternalGraphBuilder builder = new ExternalGraphBuilder(memoryBudget, csr.getParentFile());
+				builder.build(fileName, csr.getPath());
+				this.V = builder.V();
+				this.E = builder.E();
+				return OffHeapGraph.map(csr.getPath());
+			}
+			catch(NumberFormatException nfe)
+			{
+				fail("A number in the file had invalid format");
+			}
+			catch(IOException ex)
+			{
+				fail(ex.getMessage() == null ? "There was an error reading the file" : ex.getMessage());
+			}
+			finally
+			{
+				if(csr != null)
+				{
+					csr.delete(); // a mapped file stays readable until the mapping goes
+				}
+			}
+		}
+		CsrGraph graph = CsrGraph.fromVertices(readFile(fileName));
+		if(offHeap)
+		{
+			vertices = null; // let the heap copy go
+			return OffHeapGraph.copyOf(graph);
+		}
+		return graph;
+	}
+
+	/**
+	 * Choose where readGraph() keeps a graph read from a text file
+	 * @param offHeap - true for direct buffers outside the Java heap,
+	 * 		false for int arrays on the heap (the default)
+	 */
+	public void setOffHeap(boolean offHeap)
+	{
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * Make readGraph() build graphs from text files on disk (see
+	 * ExternalGraphBuilder) rather than in memory
+	 * @param memoryBudget - the most memory the build may use, in bytes;
+	 * 		0 to build in memory (the default)
+	 */
+	public void setMemoryBudget(long memoryBudget)
+	{
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Choose what readFile() and readGraph() do with a file they cannot
+	 * read
+	 * @param exitOnError - true to print a message and exit (the default),
+	 * 		false to throw an IllegalArgumentException with the message, so
+	 * 		that a caller reading many files can carry on with the rest
+	 */
+	public void setExitOnError(boolean exitOnError)
+	{
+		this.exitOnError = exitOnError;
+	}
+
 	/**
 	 * @return the number of vertices
 	 */
@@ -134,6 +306,20 @@ public class Collaboration
 		return E;
 	}
 
+	/**
+	 * Report a file that cannot be read, as chosen by setExitOnError()
+	 * @param message - what went wrong
+	 */
+	private void fail(String message)
+	{
+		if(exitOnError)
+		{
+			System.err.println(message);
+			System.exit(0);
+		}
+		throw new IllegalArgumentException(message);
+	}
+
 	/**
 	 * Check if a vertex is null, and if it is, initialize it.
 	 * @param v - the vertex to check
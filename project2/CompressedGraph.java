@@ -0,0 +1,601 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+
+/**
+ * A graph whose neighbor lists are stored compressed, in the style of
+ * WebGraph, for graphs too big to hold as int arrays. Each vertex's
+ * neighbor list is sorted and written to one bit stream as:
+ * 		degree + 1, as an Elias gamma code
+ * 		first neighbor - vertex, zigzag-mapped to >= 0, plus 1, gamma coded
+ * 		each later gap (neighbor - previous neighbor) + 1, as a zeta-3 code
+ * The zeta-3 code used here writes h in unary, where 8^h <= x < 8^(h+1),
+ * then x in 3(h+1) bits, so gaps under 8 take 4 bits. Duplicate edges
+ * are kept (as gaps of 0), so degrees match the input file.
+ *
+ * The offset index stores a long bit offset for every BLOCK-th vertex
+ * and an int offset relative to it for each vertex.
+ *
+ * Gaps are small when neighbors have nearby numbers, so relabeling the
+ * vertices first (see Reordering) usually shrinks the graph a lot.
+ *
+ * Usage: java CompressedGraph <inFile> <outFile> [<order>]
+ * 		  <inFile> = the name of a graph file to compress
+ * 		  <outFile> = the name of the compressed graph file to write; the
+ * 		  		tools read it when its name ends in .cgraph
+ * 		  <order> = relabel vertices first: degree, rcm or community
+ * @author Joseph Ville
+ */
+public class CompressedGraph implements AdjacencyGraph
+{
+	private static final int BLOCK = 64; // vertices per absolute offset
+	private static final int ZETA_K = 3; // shrinking factor of the gap code
+	private static final int MAGIC = 0x43475231; // "CGR1", start of a .cgraph file
+
+	private int V; // number of vertices
+	private long arcs; // number of neighbor entries
+	private long[] bits; // the bit stream, most significant bit first
+	private long length; // number of bits used
+	private long[] blockOffsets; // bit offset of the record of every BLOCK-th vertex
+	private int[] relOffsets; // bit offset of each record, relative to its block
+	private IdMap ids; // mapping to original IDs, or null if never relabeled
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length < 2 || args.length > 3 || (args.length == 3 && !Reordering.isMethod(args[2])))
+		{
+			usage();
+		}
+		AdjacencyGraph graph = new Collaboration().readGraph(args[0]);
+		if(args.length == 3)
+		{
+			graph = Reordering.apply(graph, args[2]);
+		}
+		CompressedGraph cg = compress(graph);
+		try
+		{
+			cg.write(args[1]);
+		}
+		catch(IOException ex)
+		{
+			System.err.println("There was an error writing to the file.");
+			System.exit(0);
+		}
+		DecimalFormat df = new DecimalFormat("0.##");
+		System.out.println("V = " + cg.V() + ", arcs = " + cg.arcs() + ", bits = " + cg.length);
+		System.out.println("bits per arc = " + df.format(cg.bitsPerArc()) +
+				", bits per edge = " + df.format(2 * cg.bitsPerArc()));
+	}
+
+	/**
+	 * Construct an empty graph; filled in by a Builder or read()
+	 */
+	private CompressedGraph()
+	{
+	}
+
+	/**
+	 * Compress any graph
+	 * @param graph - the graph
+	 * @return the compressed graph, with the same vertex numbering and IDs
+	 */
+	public static CompressedGraph compress(AdjacencyGraph graph)
+	{
+		Builder builder = new Builder(graph.V());
+		NeighborIterator it = graph.neighborIterator();
+		int[] list = new int[16];
+		for(int v = 0; v < graph.V(); v++)
+		{
+			int n = 0;
+			it.start(v);
+			for(int w = it.next(); w >= 0; w = it.next())
+			{
+				if(n == list.length)
+				{
+					list = Arrays.copyOf(list, 2 * n);
+				}
+				list[n++] = w;
+			}
+			Arrays.sort(list, 0, n);
+			builder.add(list, n);
+		}
+		CompressedGraph result = builder.build();
+		result.ids = IdMap.of(graph);
+		return result;
+	}
+
+	/**
+	 * Builds a compressed graph one vertex at a time, in vertex order,
+	 * without holding the uncompressed graph
+	 */
+	public static class Builder
+	{
+		private CompressedGraph graph;
+		private int next; // the next vertex to add
+
+		/**
+		 * Construct an object of this class
+		 * @param V - the number of vertices
+		 */
+		public Builder(int V)
+		{
+			graph = new CompressedGraph();
+			graph.V = V;
+			graph.bits = new long[Math.max(16, V / 8)];
+			graph.blockOffsets = new long[(V + BLOCK - 1) / BLOCK];
+			graph.relOffsets = new int[V];
+		}
+
+		/**
+		 * Add the next vertex's neighbor list
+		 * @param neighbors - the neighbors, sorted in ascending order
+		 * @param n - the number of neighbors used from the array
+		 */
+		public void add(int[] neighbors, int n)
+		{
+			if(next >= graph.V)
+			{
+				throw new IllegalStateException("All " + graph.V + " vertices already added");
+			}
+			int v = next++;
+			if(v % BLOCK == 0)
+			{
+				graph.blockOffsets[v / BLOCK] = graph.length;
+			}
+			long relative = graph.length - graph.blockOffsets[v / BLOCK];
+			if(relative > Integer.MAX_VALUE)
+			{
+				throw new IllegalStateException("Neighbor lists of block " + v / BLOCK + " are too long");
+			}
+			graph.relOffsets[v] = (int) relative;
+
+			graph.writeGamma(n + 1);
+			if(n > 0)
+			{
+				long first = (long) neighbors[0] - v;
+				graph.writeGamma(((first << 1) ^ (first >> 63)) + 1);
+				for(int i = 1; i < n; i++)
+				{
+					graph.writeZeta((long) neighbors[i] - neighbors[i - 1] + 1);
+				}
+			}
+			graph.arcs += n;
+		}
+
+		/**
+		 * @return the compressed graph; every vertex must have been added
+		 */
+		public CompressedGraph build()
+		{
+			if(next != graph.V)
+			{
+				throw new IllegalStateException("Only " + next + " of " + graph.V + " vertices added");
+			}
+			graph.bits = Arrays.copyOf(graph.bits, (int) ((graph.length + 63) >>> 6) + 1);
+			return graph;
+		}
+	}
+
+	/**
+	 * @return the number of vertices
+	 */
+	public int V()
+	{
+		return V;
+	}
+
+	/**
+	 * @return the number of stored neighbor entries (twice the number of
+	 * 		undirected edges)
+	 */
+	public long arcs()
+	{
+		return arcs;
+	}
+
+	/**
+	 * @return the average number of bits per neighbor entry, counting the
+	 * 		offset index
+	 */
+	public double bitsPerArc()
+	{
+		long indexBits = 64L * blockOffsets.length + 32L * relOffsets.length;
+		return arcs == 0 ? 0.0 : (double) (length + indexBits) / arcs;
+	}
+
+	/**
+	 * @param v - the vertex
+	 * @return the degree of v
+	 */
+	public int degree(int v)
+	{
+		// decode the record's leading gamma code without a cursor
+		long pos = offset(v);
+		int n = 0;
+		long w = bits[(int) (pos >>> 6)] << (pos & 63);
+		while(w == 0)
+		{
+			n += 64 - (int) (pos & 63);
+			pos += 64 - (pos & 63);
+			w = bits[(int) (pos >>> 6)];
+		}
+		int lz = Long.numberOfLeadingZeros(w);
+		n += lz;
+		return (int) (((1L << n) | bitsAt(pos + lz + 1, n)) - 1);
+	}
+
+	/**
+	 * @return a new iterator that decodes the neighbor lists
+	 */
+	public NeighborIterator neighborIterator()
+	{
+		return new NeighborIterator()
+		{
+			private long[] pos = new long[1]; // bit position in the stream
+			private int remaining; // neighbors left in this list
+			private boolean first; // whether the next neighbor is the first
+			private int prev; // the previous neighbor, or the vertex itself
+
+			public void start(int v)
+			{
+				pos[0] = offset(v);
+				remaining = (int) readGamma(pos) - 1;
+				first = true;
+				prev = v;
+			}
+
+			public int next()
+			{
+				if(remaining == 0)
+				{
+					return -1;
+				}
+				remaining--;
+				if(first)
+				{
+					first = false;
+					long z = readGamma(pos) - 1;
+					prev += (int) ((z >>> 1) ^ -(z & 1));
+				}
+				else
+				{
+					prev += (int) (readZeta(pos) - 1);
+				}
+				return prev;
+			}
+		};
+	}
+
+	/**
+	 * Relabel the vertices, so that vertex v of this graph becomes vertex
+	 * newId[v] of the result, recompressing the neighbor lists in the new
+	 * order. The mapping back to the IDs in the input file carries over.
+	 * @param newId - a permutation of 0 to V-1
+	 * @return the relabeled graph
+	 */
+	public CompressedGraph relabel(int[] newId)
+	{
+		int[] oldId = new int[V];
+		for(int v = 0; v < V; v++)
+		{
+			oldId[newId[v]] = v;
+		}
+		Builder builder = new Builder(V);
+		NeighborIterator it = neighborIterator();
+		int[] list = new int[16];
+		for(int w = 0; w < V; w++)
+		{
+			int n = 0;
+			it.start(oldId[w]);
+			for(int u = it.next(); u >= 0; u = it.next())
+			{
+				if(n == list.length)
+				{
+					list = Arrays.copyOf(list, 2 * n);
+				}
+				list[n++] = newId[u];
+			}
+			Arrays.sort(list, 0, n);
+			builder.add(list, n);
+		}
+		CompressedGraph result = builder.build();
+		result.ids = IdMap.of(this, oldId);
+		return result;
+	}
+
+	/**
+	 * @param v - a vertex of this graph
+	 * @return v's ID in the input file
+	 */
+	public int originalId(int v)
+	{
+		return ids == null ? v : ids.originalId(v);
+	}
+
+	/**
+	 * @param originalId - a vertex ID in the input file
+	 * @return the vertex of this graph with that ID, or -1 if it is not
+	 * 		in this (sub)graph
+	 */
+	public int vertexOf(int originalId)
+	{
+		return ids == null ? originalId : ids.vertexOf(originalId);
+	}
+
+	/**
+	 * Write this graph to a .cgraph file
+	 * @param fileName - the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(String fileName) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(V);
+		out.writeLong(arcs);
+		out.writeLong(length);
+		int words = (int) ((length + 63) >>> 6);
+		for(int i = 0; i < words; i++)
+		{
+			out.writeLong(bits[i]);
+		}
+		for(long offset : blockOffsets)
+		{
+			out.writeLong(offset);
+		}
+		for(int offset : relOffsets)
+		{
+			out.writeInt(offset);
+		}
+		out.writeBoolean(ids != null);
+		if(ids != null)
+		{
+			for(int v = 0; v < V; v++)
+			{
+				out.writeInt(ids.originalId(v));
+			}
+		}
+		out.close();
+	}
+
+	/**
+	 * Read a graph written by write()
+	 * @param fileName - the .cgraph file to read
+	 * @return the graph
+	 * @throws IOException if the file cannot be read or is not a .cgraph file
+	 */
+	public static CompressedGraph read(String fileName) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+		try
+		{
+			if(in.readInt() != MAGIC)
+			{
+				throw new IOException(fileName + " is not a compressed graph file");
+			}
+			CompressedGraph graph = new CompressedGraph();
+			graph.V = in.readInt();
+			graph.arcs = in.readLong();
+			graph.length = in.readLong();
+			int words = (int) ((graph.length + 63) >>> 6);
+			graph.bits = new long[words + 1];
+			for(int i = 0; i < words; i++)
+			{
+				graph.bits[i] = in.readLong();
+			}
+			graph.blockOffsets = new long[(graph.V + BLOCK - 1) / BLOCK];
+			for(int i = 0; i < graph.blockOffsets.length; i++)
+			{
+				graph.blockOffsets[i] = in.readLong();
+			}
+			graph.relOffsets = new int[graph.V];
+			for(int i = 0; i < graph.V; i++)
+			{
+				graph.relOffsets[i] = in.readInt();
+			}
+			if(in.readBoolean())
+			{
+				int[] originalIds = new int[graph.V];
+				for(int v = 0; v < graph.V; v++)
+				{
+					originalIds[v] = in.readInt();
+				}
+				graph.ids = new IdMap(originalIds);
+			}
+			return graph;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * @param v - a vertex
+	 * @return the bit offset of v's record
+	 */
+	private long offset(int v)
+	{
+		return blockOffsets[v / BLOCK] + relOffsets[v];
+	}
+
+	/**
+	 * Append the low n bits of a value to the stream
+	 * @param value - the value
+	 * @param n - the number of bits, 0 to 64
+	 */
+	private void writeBits(long value, int n)
+	{
+		if(n == 0)
+		{
+			return;
+		}
+		ensureCapacity(length + n);
+		int idx = (int) (length >>> 6);
+		int free = 64 - (int) (length & 63);
+		long v = n == 64 ? value : value & ((1L << n) - 1);
+		if(n <= free)
+		{
+			bits[idx] |= v << (free - n);
+		}
+		else
+		{
+			bits[idx] |= v >>> (n - free);
+			bits[idx + 1] |= v << (64 - (n - free));
+		}
+		length += n;
+	}
+
+	/**
+	 * Append h zeros and a one to the stream
+	 * @param h - the number to write in unary
+	 */
+	private void writeUnary(int h)
+	{
+		ensureCapacity(length + h + 1);
+		length += h;
+		writeBits(1, 1);
+	}
+
+	/**
+	 * Append an Elias gamma code
+	 * @param x - the value, >= 1
+	 */
+	private void writeGamma(long x)
+	{
+		int n = 63 - Long.numberOfLeadingZeros(x);
+		writeUnary(n);
+		writeBits(x, n); // x without its leading 1
+	}
+
+	/**
+	 * Append a zeta-3 code
+	 * @param x - the value, >= 1
+	 */
+	private void writeZeta(long x)
+	{
+		int h = (63 - Long.numberOfLeadingZeros(x)) / ZETA_K;
+		writeUnary(h);
+		writeBits(x, (h + 1) * ZETA_K);
+	}
+
+	/**
+	 * Make sure the stream can hold the given number of bits
+	 * @param nbits - the number of bits
+	 */
+	private void ensureCapacity(long nbits)
+	{
+		long words = (nbits + 63) >>> 6;
+		if(words + 1 > bits.length)
+		{
+			if(words + 1 > Integer.MAX_VALUE - 8)
+			{
+				throw new IllegalStateException("Compressed graph is too large");
+			}
+			bits = Arrays.copyOf(bits, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(words + 1, 2L * bits.length)));
+		}
+	}
+
+	/**
+	 * Read n bits from the stream
+	 * @param pos - the bit position; advanced past the bits read
+	 * @param n - the number of bits, 0 to 64
+	 * @return the bits, as the low bits of a long
+	 */
+	private long readBits(long[] pos, int n)
+	{
+		long result = bitsAt(pos[0], n);
+		pos[0] += n;
+		return result;
+	}
+
+	/**
+	 * Get n bits from the stream
+	 * @param position - the bit position
+	 * @param n - the number of bits, 0 to 64
+	 * @return the bits, as the low bits of a long
+	 */
+	private long bitsAt(long position, int n)
+	{
+		if(n == 0)
+		{
+			return 0;
+		}
+		int idx = (int) (position >>> 6);
+		int bit = (int) (position & 63);
+		long w = bits[idx] << bit;
+		if(bit + n <= 64)
+		{
+			return w >>> (64 - n);
+		}
+		return (w >>> (64 - n)) | (bits[idx + 1] >>> (64 - (n - (64 - bit))));
+	}
+
+	/**
+	 * Read a unary number: zeros up to and including a one
+	 * @param pos - the bit position; advanced past the bits read
+	 * @return the number of zeros
+	 */
+	private int readUnary(long[] pos)
+	{
+		int zeros = 0;
+		while(true)
+		{
+			int idx = (int) (pos[0] >>> 6);
+			int bit = (int) (pos[0] & 63);
+			long w = bits[idx] << bit;
+			if(w != 0)
+			{
+				int lz = Long.numberOfLeadingZeros(w);
+				pos[0] += lz + 1;
+				return zeros + lz;
+			}
+			zeros += 64 - bit;
+			pos[0] += 64 - bit;
+		}
+	}
+
+	/**
+	 * Read an Elias gamma code
+	 * @param pos - the bit position; advanced past the code
+	 * @return the value
+	 */
+	private long readGamma(long[] pos)
+	{
+		int n = readUnary(pos);
+		return (1L << n) | readBits(pos, n);
+	}
+
+	/**
+	 * Read a zeta-3 code
+	 * @param pos - the bit position; advanced past the code
+	 * @return the value
+	 */
+	private long readZeta(long[] pos)
+	{
+		int h = readUnary(pos);
+		return readBits(pos, (h + 1) * ZETA_K);
+	}
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java CompressedGraph <inFile> <outFile> [<order>]\n" +
+				"<inFile> = the name of a graph file to compress\n" +
+				"<outFile> = the compressed graph file to write; the tools read it when its name ends in .cgraph\n" +
+				"<order> = relabel vertices first: degree, rcm or community");
+		System.exit(0);
+	}
+}// end class CompressedGraph
@@ -1,25 +1,37 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.TreeMap;
 
 /**
- * Find the connected components of a graph
+ * Find the connected components of a graph. The components found are
+ * kept in the object, so several graphs can be analyzed at once, each
+ * with its own ConnectedComponents.
  * @author Joseph Ville
  * 
- * Usage: java ConnectedComponents <fileName>
+ * Usage: java ConnectedComponents <fileName> [-order <order>] [-format <format>] [-offheap] [-budget <memoryMB>]
  * 		  <fileName> the name of the graph file to be analyzed
+ * 		  -order = relabel vertices for cache locality before the analysis;
+ * 		  		  <order> = degree, rcm or community (same output)
+ * 		  -format = how to write the results: text (the default), csv or
+ * 		  		  binary (see ResultSink)
+ * 		  -offheap = keep the graph in direct buffers outside the Java heap
+ * 		  		  (see OffHeapGraph)
+ * 		  -budget = sort the graph into a temporary .csr file on disk, in at
+ * 		  		  most <memoryMB> MB, for a graph larger than memory
+ * 		  		  (see ExternalGraphBuilder)
  *
  */
 public class ConnectedComponents
 {
-	private static String fileName;
-	private static int smallestCCSize;
-	private static int largestCCSize;
-	private static int largestCC;
+	private int smallestCCSize;
+	private int largestCCSize;
+	private int largestCC;
 	private boolean printData;
-	private static TreeMap<Integer, ArrayList<Integer>> ccIndexes;
+	private ResultSink sink; // where printData goes, or null for text on standard output
+	private TreeMap<Integer, ArrayList<Integer>> ccIndexes;
 	
 	/**
 	 * Default constructor
@@ -40,6 +52,17 @@ public class ConnectedComponents
 		smallestCCSize = Integer.MAX_VALUE;
 		largestCCSize = Integer.MIN_VALUE;
 	}
+
+	/**
+	 * Construct an object of this class that writes the components it
+	 * finds to the given sink
+	 * @param sink - where to write the components
+	 */
+	public ConnectedComponents(ResultSink sink)
+	{
+		this(true);
+		this.sink = sink;
+	}
 	
 	/**
 	 * Main method for this class
@@ -47,21 +70,77 @@ public class ConnectedComponents
 	 */
 	public static void main(String[] args)
 	{
-		if(args.length != 1)
+		if(args.length < 1)
 		{
 			usage();
 		}
-		fileName = args[0];
+		String fileName = args[0];
+		String order = null;
+		String format = "text";
+		boolean offHeap = false;
+		long memoryMB = 0;
+		for(int a = 1; a < args.length; a++)
+		{
+			if(args[a].equals("-order") && a + 1 < args.length && Reordering.isMethod(args[a + 1]))
+			{
+				order = args[++a];
+			}
+			else if(args[a].equals("-format") && a + 1 < args.length && ResultSink.isFormat(args[a + 1]))
+			{
+				format = args[++a];
+			}
+			else if(args[a].equals("-offheap"))
+			{
+				offHeap = true;
+			}
+			else if(args[a].equals("-budget") && a + 1 < args.length)
+			{
+				try
+				{
+					memoryMB = Long.parseLong(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(memoryMB < 1)
+				{
+					usage();
+				}
+			}
+			else
+			{
+				usage();
+			}
+		}
 		
 		Collaboration collab = new Collaboration();
-		Vertex[] vertices = collab.readFile(fileName);
-		ConnectedComponents cc = new ConnectedComponents(true);
+		collab.setOffHeap(offHeap);
+		collab.setMemoryBudget(memoryMB << 20);
+		AdjacencyGraph graph = collab.readGraph(fileName);
+		if(order != null)
+		{
+			graph = Reordering.apply(graph, order);
+		}
+		ResultSink sink = ResultSink.open(format, new FileOutputStream(FileDescriptor.out));
+		ConnectedComponents cc = new ConnectedComponents(sink);
 		
-		cc.findComponents(vertices);
+		cc.findComponents(graph);
+		cc.printSizes(collab.V(), sink);
+		sink.flush();
+	}
+
+	/**
+	 * Print the sizes of the smallest and largest components found
+	 * @param V - the number of vertices in the graph
+	 * @param sink - where to print
+	 */
+	public void printSizes(int V, ResultSink sink)
+	{
 		DecimalFormat df = new DecimalFormat("0.#####");
-		System.out.println("Size of smallest CC = " + smallestCCSize);
-		System.out.println("Size of largest CC = " + largestCCSize);
-		System.out.println(largestCCSize + "/" + collab.V() + " = " + df.format((double)largestCCSize / collab.V()));
+		sink.text("Size of smallest CC = " + smallestCCSize);
+		sink.text("Size of largest CC = " + largestCCSize);
+		sink.text(largestCCSize + "/" + V + " = " + df.format((double)largestCCSize / V));
 	}
 	
 	/**
@@ -71,38 +150,38 @@ public class ConnectedComponents
 	 */
 	public int findComponents(Vertex[] vertices)
 	{
-		LinkedList<Integer> unvisited = new LinkedList<Integer>();
-		LinkedList<Integer> queue = new LinkedList<Integer>();
+		return findComponents(CsrGraph.fromVertices(vertices));
+	}
+
+	/**
+	 * Find all connected components of a graph
+	 * @param graph - the graph
+	 * @return the total number of connected components in the graph
+	 */
+	public int findComponents(AdjacencyGraph graph)
+	{
+		BfsKernel bfs = new BfsKernel(graph);
 		ccIndexes = new TreeMap<Integer, ArrayList<Integer>>();
+		smallestCCSize = Integer.MAX_VALUE;
+		largestCCSize = Integer.MIN_VALUE;
 		ArrayList<Integer> components;
-		
-		for(int a = 0; a < vertices.length; a++)
-		{
-			unvisited.add(a);
-		}
 
-		String outString = "connected components\nComp\tSize\n";
-		int i = -1, m = -1, n = 0;
-		while(unvisited.size() > 0)
+		int n = 0;
+		for(int i = 0; i < graph.V(); i++)
 		{
-			i = unvisited.poll();
-			queue.add(i);
-			
-			components = new ArrayList<Integer>();
-			components.add(i);
-			while(queue.size() > 0)
+			// components are numbered and listed by original vertex ID,
+			// even if the graph has been relabeled
+			int v = graph.vertexOf(i);
+			if(bfs.visited(v))
 			{
-				m = queue.poll();
-				
-				for(Integer neighbor : vertices[m].getNeighbors())
-				{
-					if(unvisited.contains(neighbor))
-					{
-						unvisited.remove(neighbor);
-						queue.add(neighbor);
-						components.add(neighbor);
-					}
-				}
+				continue;
+			}
+			// i is the smallest vertex not yet in a component
+			int count = bfs.component(v);
+			components = new ArrayList<Integer>(count);
+			for(int q = 0; q < count; q++)
+			{
+				components.add(graph.originalId(bfs.vertexAt(q)));
 			}
 			
 			if(components.size() > largestCCSize)
@@ -114,15 +193,27 @@ public class ConnectedComponents
 			{
 				smallestCCSize = components.size();
 			}
-			outString = outString.concat(n + "\t" + components.size() + "\n");
 			Collections.sort(components);
 			ccIndexes.put(n++, components);
 		}
 		
 		if(printData)
 		{
-			System.out.print(n + " " + outString);
-			printFormat(ccIndexes);
+			ResultSink to = sink == null ? ResultSink.open("text", System.out) : sink;
+			to.text(n + " connected components");
+			to.startTable("component sizes", "Comp", "Size");
+			for(int c = 0; c < n; c++)
+			{
+				to.cell(c);
+				to.cell(ccIndexes.get(c).size());
+				to.endRow();
+			}
+			to.endTable();
+			printFormat(ccIndexes, to);
+			if(sink == null)
+			{
+				to.flush();
+			}
 		}
 		return n;
 	}
@@ -133,15 +224,35 @@ public class ConnectedComponents
 	 */
 	public static void printFormat(TreeMap<Integer, ArrayList<Integer>> ccIndexes)
 	{
+		ResultSink sink = ResultSink.open("text", System.out);
+		printFormat(ccIndexes, sink);
+		sink.flush();
+	}
+
+	/**
+	 * Write the CCs and their associated indexes, one list of vertices
+	 * per component
+	 * @param ccIndexes - a map of indexes to their CCs
+	 * @param sink - where to write
+	 */
+	public static void printFormat(TreeMap<Integer, ArrayList<Integer>> ccIndexes, ResultSink sink)
+	{
+		int[] members = new int[0];
+		sink.startList("component members", "Comp", "Vertex");
 		for(int i = 0; i < ccIndexes.size(); i++)
 		{
-			System.out.printf("Comp %d = ", i);
-			for(int j = 0; j < ccIndexes.get(i).size(); j++)
+			ArrayList<Integer> cc = ccIndexes.get(i);
+			if(members.length < cc.size())
+			{
+				members = new int[cc.size()];
+			}
+			for(int j = 0; j < cc.size(); j++)
 			{
-				System.out.printf("%d ", ccIndexes.get(i).get(j));
+				members[j] = cc.get(j);
 			}
-			System.out.println();
+			sink.list(i, members, cc.size());
 		}
+		sink.endTable();
 	}
 	
 	/**
@@ -157,8 +268,12 @@ public class ConnectedComponents
 	 */
 	public static void usage()
 	{
-		System.err.println("Usage: java ConnectedComponents <fileName>\n" +
-				"<fileName> = the name of the graph file to be analyzed");
+		System.err.println("Usage: java ConnectedComponents <fileName> [-order <order>] [-format <format>] [-offheap] [-budget <memoryMB>]\n" +
+				"<fileName> = the name of the graph file to be analyzed\n" +
+				"-order = relabel vertices for cache locality; <order> = degree, rcm or community\n" +
+				"-format = how to write the results: text (the default), csv or binary\n" +
+				"-offheap = keep the graph in direct buffers outside the Java heap\n" +
+				"-budget = build the graph on disk in at most <memoryMB> MB, for one larger than memory");
 		System.exit(0);
 	}
 }// end class ConnectedComponents
\ No newline at end of file
@@ -0,0 +1,256 @@
+import java.util.Arrays;
+
+/**
+ * A compressed sparse row (CSR) copy of a graph's adjacency lists. The
+ * neighbors of vertex v are stored in neighbors[offsets[v]] through
+ * neighbors[offsets[v+1]-1], so traversals read plain int arrays instead
+ * of boxed ArrayList<Integer> elements.
+ * @author Joseph Ville
+ */
+public class CsrGraph implements AdjacencyGraph
+{
+	private int V; // number of vertices
+	private int[] offsets; // start of each vertex's neighbor list, length V+1
+	private int[] neighbors; // all neighbor lists, back to back
+	private IdMap ids; // mapping to original IDs, or null if never relabeled
+
+	/**
+	 * Construct an object of this class
+	 * @param offsets - the offset array, length V+1
+	 * @param neighbors - the concatenated neighbor lists
+	 */
+	public CsrGraph(int[] offsets, int[] neighbors)
+	{
+		this.V = offsets.length - 1;
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+	}
+
+	/**
+	 * Build a CSR graph from the vertices read by Collaboration.readFile().
+	 * A null vertex (one that appears in no edge line) has no neighbors.
+	 * @param vertices - the array of vertices
+	 * @return the CSR graph
+	 */
+	public static CsrGraph fromVertices(Vertex[] vertices)
+	{
+		int[] offsets = new int[vertices.length + 1];
+		for(int v = 0; v < vertices.length; v++)
+		{
+			offsets[v + 1] = offsets[v] + (vertices[v] == null ? 0 : vertices[v].degree());
+		}
+
+		int[] neighbors = new int[offsets[vertices.length]];
+		for(int v = 0; v < vertices.length; v++)
+		{
+			if(vertices[v] != null)
+			{
+				int i = offsets[v];
+				for(int n : vertices[v].getNeighbors())
+				{
+					neighbors[i++] = n;
+				}
+			}
+		}
+		return new CsrGraph(offsets, neighbors);
+	}
+
+	/**
+	 * Copy any graph into CSR arrays, keeping its mapping to original IDs
+	 * @param graph - the graph
+	 * @return the CSR graph
+	 */
+	public static CsrGraph copyOf(AdjacencyGraph graph)
+	{
+		if(graph instanceof CsrGraph)
+		{
+			return (CsrGraph) graph;
+		}
+		int V = graph.V();
+		int[] offsets = new int[V + 1];
+		int[] neighbors = new int[(int) graph.arcs()];
+		NeighborIterator it = graph.neighborIterator();
+		int i = 0;
+		for(int v = 0; v < V; v++)
+		{
+			it.start(v);
+			for(int w = it.next(); w >= 0; w = it.next())
+			{
+				neighbors[i++] = w;
+			}
+			offsets[v + 1] = i;
+		}
+		CsrGraph result = new CsrGraph(offsets, neighbors);
+		result.ids = IdMap.of(graph);
+		return result;
+	}
+
+	/**
+	 * Extract the subgraph induced by some of a graph's vertices into
+	 * compact CSR arrays, numbered 0 to n-1 in the order given. Neighbors
+	 * outside the subgraph are dropped; for a whole connected component
+	 * there are none, and each neighbor list keeps its order. The mapping
+	 * to original IDs carries over, and vertexOf() gives -1 for an
+	 * original ID outside the subgraph.
+	 * @param graph - the graph
+	 * @param vertices - vertices of graph, each at most once
+	 * @return the subgraph
+	 */
+	public static CsrGraph inducedSubgraph(AdjacencyGraph graph, int[] vertices)
+	{
+		IdMap ids = IdMap.of(graph, vertices);
+
+		NeighborIterator it = graph.neighborIterator();
+		int[] offsets = new int[vertices.length + 1];
+		for(int i = 0; i < vertices.length; i++)
+		{
+			int count = 0;
+			it.start(vertices[i]);
+			for(int w = it.next(); w >= 0; w = it.next())
+			{
+				if(ids.vertexOf(graph.originalId(w)) >= 0)
+				{
+					count++;
+				}
+			}
+			offsets[i + 1] = offsets[i] + count;
+		}
+		int[] neighbors = new int[offsets[vertices.length]];
+		int j = 0;
+		for(int i = 0; i < vertices.length; i++)
+		{
+			it.start(vertices[i]);
+			for(int w = it.next(); w >= 0; w = it.next())
+			{
+				int local = ids.vertexOf(graph.originalId(w));
+				if(local >= 0)
+				{
+					neighbors[j++] = local;
+				}
+			}
+		}
+
+		CsrGraph result = new CsrGraph(offsets, neighbors);
+		result.ids = ids;
+		return result;
+	}
+
+	/**
+	 * Relabel the vertices, so that vertex v of this graph becomes vertex
+	 * newId[v] of the result, with each neighbor list sorted. The mapping
+	 * back to the IDs in the input file carries over, so originalId() of
+	 * the result still gives those IDs.
+	 * @param newId - a permutation of 0 to V-1
+	 * @return the relabeled graph
+	 */
+	public CsrGraph relabel(int[] newId)
+	{
+		int[] oldId = new int[V];
+		for(int v = 0; v < V; v++)
+		{
+			oldId[newId[v]] = v;
+		}
+
+		int[] newOffsets = new int[V + 1];
+		int[] newNeighbors = new int[neighbors.length];
+		for(int w = 0; w < V; w++)
+		{
+			int v = oldId[w];
+			int i = newOffsets[w];
+			for(int j = offsets[v]; j < offsets[v + 1]; j++)
+			{
+				newNeighbors[i++] = newId[neighbors[j]];
+			}
+			Arrays.sort(newNeighbors, newOffsets[w], i); // neighbors in memory order
+			newOffsets[w + 1] = i;
+		}
+
+		CsrGraph result = new CsrGraph(newOffsets, newNeighbors);
+		result.ids = IdMap.of(this, oldId);
+		return result;
+	}
+
+	/**
+	 * @param v - a vertex of this graph
+	 * @return v's ID in the input file
+	 */
+	public int originalId(int v)
+	{
+		return ids == null ? v : ids.originalId(v);
+	}
+
+	/**
+	 * @param originalId - a vertex ID in the input file
+	 * @return the vertex of this graph with that ID, or -1 if it is not
+	 * 		in this (sub)graph
+	 */
+	public int vertexOf(int originalId)
+	{
+		return ids == null ? originalId : ids.vertexOf(originalId);
+	}
+
+	/**
+	 * @return the number of vertices
+	 */
+	public int V()
+	{
+		return V;
+	}
+
+	/**
+	 * @return the number of stored neighbor entries (twice the number of
+	 * 		undirected edges)
+	 */
+	public long arcs()
+	{
+		return neighbors.length;
+	}
+
+	/**
+	 * @return a new iterator over the neighbor lists
+	 */
+	public NeighborIterator neighborIterator()
+	{
+		return new NeighborIterator()
+		{
+			private int i; // position of the next neighbor
+			private int end; // position just past the list
+
+			public void start(int v)
+			{
+				i = offsets[v];
+				end = offsets[v + 1];
+			}
+
+			public int next()
+			{
+				return i < end ? neighbors[i++] : -1;
+			}
+		};
+	}
+
+	/**
+	 * @param v - the vertex
+	 * @return the degree of v
+	 */
+	public int degree(int v)
+	{
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/**
+	 * @return the offset array, length V+1. Not copied; do not modify.
+	 */
+	public int[] offsets()
+	{
+		return offsets;
+	}
+
+	/**
+	 * @return the concatenated neighbor lists. Not copied; do not modify.
+	 */
+	public int[] neighbors()
+	{
+		return neighbors;
+	}
+}// end class CsrGraph
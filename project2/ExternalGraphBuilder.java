@@ -0,0 +1,687 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Build a .csr graph file (see OffHeapGraph) from a file in the Graph File
+ * Format, possibly gzipped, that may be larger than memory. Edges are
+ * parsed into runs of arcs packed as (source << 32 | target), each run
+ * sorted in memory and written to a temporary file. The runs are then
+ * merged k ways, in as many passes as the memory budget requires, and the
+ * last pass writes the offsets and neighbor lists of the CSR file
+ * sequentially. The graph is never held in memory; the run buffer with
+ * the input's read buffers and BGZF blocks in flight, and the merge's
+ * read and write buffers, stay within the budget.
+ *
+ * Duplicate edges and self-loops are kept, as readFile() keeps them, and
+ * each neighbor list comes out sorted.
+ *
+ * Usage: java ExternalGraphBuilder <inFile> <outFile> [<memoryMB> [<tmpDir>]]
+ * 		  <inFile> = the name of a file in Graph File Format
+ * 		  <outFile> = the name of the .csr file to write
+ * 		  <memoryMB> = the memory budget for the build, default 256
+ * 		  <tmpDir> = where to put the sorted runs, default java.io.tmpdir
+ * @author Joseph Ville
+ */
+public class ExternalGraphBuilder
+{
+	private static final long MIN_BUDGET = 1L << 20; // smallest usable memory budget
+	private static final int MIN_IO_BUFFER = 1 << 16; // smallest buffer per open file
+
+	private long memoryBudget; // bytes
+	private File tmpDir; // where runs are written
+	private int ioBuffer; // bytes per file buffer
+	private int V; // number of vertices, from the g line
+	private int E; // number of edges, from the g line
+	private long arcs; // number of arcs written
+	private int runs; // number of runs written by the first pass
+	private int passes; // number of merge passes
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length < 2 || args.length > 4)
+		{
+			usage();
+		}
+		long memoryMB = 256;
+		File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+		try
+		{
+			if(args.length > 2)
+			{
+				memoryMB = Long.parseLong(args[2]);
+			}
+		}
+		catch(NumberFormatException nfe)
+		{
+			usage();
+		}
+		if(args.length > 3)
+		{
+			tmpDir = new File(args[3]);
+		}
+		ExternalGraphBuilder builder = new ExternalGraphBuilder(memoryMB << 20, tmpDir);
+		builder.buildOrExit(args[0], args[1]);
+	}
+
+	/**
+	 * Construct an object of this class
+	 * @param memoryBudget - the most memory the build may use for its
+	 * 		buffers, in bytes; at least 1 MB is used
+	 * @param tmpDir - the directory for temporary run files
+	 */
+	public ExternalGraphBuilder(long memoryBudget, File tmpDir)
+	{
+		this.memoryBudget = Math.max(MIN_BUDGET, memoryBudget);
+		this.tmpDir = tmpDir;
+		// 1 MB buffers keep the disk streaming; smaller budgets trade them
+		// for a higher fan-in
+		ioBuffer = (int) Math.max(MIN_IO_BUFFER, Math.min(1 << 20, this.memoryBudget / 64));
+	}
+
+	/**
+	 * Build a .csr file, printing the build statistics on stderr, or print
+	 * an error message and exit if the input cannot be read
+	 * @param inFile - a file in the Graph File Format
+	 * @param outFile - the .csr file to write
+	 */
+	public void buildOrExit(String inFile, String outFile)
+	{
+		long t1 = System.currentTimeMillis();
+		try
+		{
+			build(inFile, outFile);
+		}
+		catch(NumberFormatException nfe)
+		{
+			System.err.println("A number in the file had invalid format");
+			System.exit(0);
+		}
+		catch(IOException ex)
+		{
+			System.err.println(ex.getMessage() == null ? "There was an error reading the file" : ex.getMessage());
+			System.exit(0);
+		}
+		long t2 = System.currentTimeMillis();
+		System.err.println("Built " + outFile + ": V = " + V + ", arcs = " + arcs + ", " + runs + " runs, " +
+				passes + " merge passes, " + (t2 - t1) + " msec");
+	}
+
+	/**
+	 * Build a .csr file from a file in the Graph File Format
+	 * @param inFile - a file in the Graph File Format
+	 * @param outFile - the .csr file to write
+	 * @throws IOException if a file cannot be read or written, or the
+	 * 		input is not in the Graph File Format
+	 */
+	public void build(String inFile, String outFile) throws IOException
+	{
+		ArrayList<File> runFiles = writeRuns(inFile);
+		try
+		{
+			passes = 0;
+			int fanIn = (int) Math.max(2, memoryBudget / ioBuffer - 2);
+			while(runFiles.size() > fanIn)
+			{
+				ArrayList<File> merged = new ArrayList<File>();
+				for(int i = 0; i < runFiles.size(); i += fanIn)
+				{
+					ArrayList<File> group = new ArrayList<File>(runFiles.subList(i, Math.min(i + fanIn, runFiles.size())));
+					File run = File.createTempFile("edges", ".run", tmpDir);
+					merged.add(run);
+					RunWriter out = new RunWriter(run, ioBuffer);
+					merge(group, out);
+					out.close();
+					delete(group);
+				}
+				runFiles = merged;
+				passes++;
+			}
+			CsrWriter out = new CsrWriter(outFile, V, ioBuffer);
+			merge(runFiles, out);
+			out.close();
+			passes++;
+		}
+		finally
+		{
+			delete(runFiles);
+		}
+	}
+
+	/**
+	 * @return the number of vertices in the last graph built
+	 */
+	public int V()
+	{
+		return V;
+	}
+
+	/**
+	 * @return the number of edges in the last graph built
+	 */
+	public int E()
+	{
+		return E;
+	}
+
+	/**
+	 * Parse the input into sorted runs of arcs on disk
+	 * @param inFile - a file in the Graph File Format
+	 * @return the run files
+	 * @throws IOException if the input cannot be read or is invalid
+	 */
+	private ArrayList<File> writeRuns(String inFile) throws IOException
+	{
+		ArrayList<File> runFiles = new ArrayList<File>();
+		// up to an eighth of the budget for BGZF blocks in flight, the rest
+		// after the input and run file buffers for the run
+		int depth = (int) Math.max(1, Math.min(BgzfInputStream.defaultDepth(),
+				memoryBudget / 8 / (2 * BgzfInputStream.MAX_BLOCK)));
+		long runBytes = memoryBudget - ioBuffer - Collaboration.openGraphFileMemory(ioBuffer, depth);
+		long[] run = new long[(int) Math.min(Integer.MAX_VALUE - 8, runBytes / 8)];
+		int n = 0;
+		boolean gLine = false;
+		boolean eLine = false;
+		arcs = 0;
+		runs = 0;
+
+		BufferedReader buff = Collaboration.openGraphFile(inFile, ioBuffer, depth);
+		try
+		{
+			String line;
+			while((line = buff.readLine()) != null)
+			{
+				if(line.isEmpty())
+				{
+					continue;
+				}
+				// the first field, if it is one letter, as readFile() matches whole fields
+				char kind = line.length() == 1 || line.charAt(1) == ' ' ? line.charAt(0) : ' ';
+				if(kind == 'e')
+				{
+					if(!gLine)
+					{
+						throw new IOException("The file is in an invalid format.");
+					}
+					eLine = true;
+					int next = skipSpaces(line, 1);
+					int end = fieldEnd(line, next);
+					int a = Integer.parseInt(line.substring(next, end));
+					next = skipSpaces(line, end);
+					int b = Integer.parseInt(line.substring(next, fieldEnd(line, next)));
+					if(a < 0 || a >= V || b < 0 || b >= V)
+					{
+						throw new IOException("There was an error reading the file");
+					}
+					if(n + 2 > run.length)
+					{
+						runFiles.add(writeRun(run, n));
+						n = 0;
+					}
+					run[n++] = ((long) a << 32) | b;
+					run[n++] = ((long) b << 32) | a;
+					arcs += 2;
+				}
+				else if(kind == 'g')
+				{
+					gLine = true;
+					String[] lineArr = line.split(" ");
+					if(lineArr.length < 3)
+					{
+						throw new IOException("There was an error reading the file");
+					}
+					V = Integer.parseInt(lineArr[1]);
+					E = Integer.parseInt(lineArr[2]);
+				}
+			}
+		}
+		catch(IOException ex)
+		{
+			delete(runFiles);
+			throw ex;
+		}
+		finally
+		{
+			buff.close();
+		}
+		if(!gLine || !eLine)
+		{
+			delete(runFiles);
+			throw new IOException("The file is in an invalid format.");
+		}
+		runFiles.add(writeRun(run, n));
+		return runFiles;
+	}
+
+	/**
+	 * Sort a run in memory and write it to a temporary file
+	 * @param run - the run buffer
+	 * @param n - the number of arcs in it
+	 * @return the run file
+	 * @throws IOException if the file cannot be written
+	 */
+	private File writeRun(long[] run, int n) throws IOException
+	{
+		Arrays.sort(run, 0, n); // in place, unlike parallelSort, so the budget holds
+		File file = File.createTempFile("edges", ".run", tmpDir);
+		RunWriter out = new RunWriter(file, ioBuffer);
+		for(int i = 0; i < n; i++)
+		{
+			out.put(run[i]);
+		}
+		out.close();
+		runs++;
+		return file;
+	}
+
+	/**
+	 * Merge sorted runs into one sorted stream, with a binary heap of the
+	 * runs ordered by their next arc
+	 * @param group - the run files
+	 * @param out - where the merged arcs go
+	 * @throws IOException if a file cannot be read or written
+	 */
+	private void merge(ArrayList<File> group, ArcSink out) throws IOException
+	{
+		int k = group.size();
+		RunReader[] readers = new RunReader[k];
+		int[] heap = new int[k]; // reader indexes, smallest head first
+		long[] head = new long[k]; // next arc of each reader
+		int size = 0;
+		try
+		{
+			for(int r = 0; r < k; r++)
+			{
+				readers[r] = new RunReader(group.get(r), ioBuffer);
+				if(readers[r].hasNext())
+				{
+					head[r] = readers[r].next();
+					heap[size] = r;
+					siftUp(heap, head, size++);
+				}
+			}
+			while(size > 0)
+			{
+				int r = heap[0];
+				out.put(head[r]);
+				if(readers[r].hasNext())
+				{
+					head[r] = readers[r].next();
+				}
+				else
+				{
+					heap[0] = heap[--size];
+				}
+				siftDown(heap, head, size);
+			}
+		}
+		finally
+		{
+			for(int r = 0; r < k; r++)
+			{
+				if(readers[r] != null)
+				{
+					readers[r].close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Restore the heap after adding an entry at position i
+	 * @param heap - the reader indexes
+	 * @param head - the next arc of each reader
+	 * @param i - the position of the new entry
+	 */
+	private static void siftUp(int[] heap, long[] head, int i)
+	{
+		int r = heap[i];
+		while(i > 0 && head[heap[(i - 1) / 2]] > head[r])
+		{
+			heap[i] = heap[(i - 1) / 2];
+			i = (i - 1) / 2;
+		}
+		heap[i] = r;
+	}
+
+	/**
+	 * Restore the heap after the entry at the root changed
+	 * @param heap - the reader indexes
+	 * @param head - the next arc of each reader
+	 * @param size - the number of entries in the heap
+	 */
+	private static void siftDown(int[] heap, long[] head, int size)
+	{
+		if(size == 0)
+		{
+			return;
+		}
+		int r = heap[0];
+		int i = 0;
+		while(2 * i + 1 < size)
+		{
+			int c = 2 * i + 1;
+			if(c + 1 < size && head[heap[c + 1]] < head[heap[c]])
+			{
+				c++;
+			}
+			if(head[heap[c]] >= head[r])
+			{
+				break;
+			}
+			heap[i] = heap[c];
+			i = c;
+		}
+		heap[i] = r;
+	}
+
+	/**
+	 * @param line - a line of the input
+	 * @param i - a position in the line
+	 * @return the first position at or after i that is not a space
+	 */
+	private static int skipSpaces(String line, int i)
+	{
+		while(i < line.length() && line.charAt(i) == ' ')
+		{
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @param line - a line of the input
+	 * @param i - the start of a field
+	 * @return the position just past the field
+	 */
+	private static int fieldEnd(String line, int i)
+	{
+		while(i < line.length() && line.charAt(i) != ' ')
+		{
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Delete temporary files
+	 * @param files - the files
+	 */
+	private static void delete(ArrayList<File> files)
+	{
+		for(File file : files)
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java ExternalGraphBuilder <inFile> <outFile> [<memoryMB> [<tmpDir>]]\n" +
+				"<inFile> = the name of a file in Graph File Format\n" +
+				"<outFile> = the name of the .csr file to write\n" +
+				"<memoryMB> = the memory budget for the build, default 256\n" +
+				"<tmpDir> = where to put the sorted runs, default java.io.tmpdir");
+		System.exit(0);
+	}
+
+	/**
+	 * Sequential reader of a run file
+	 */
+	private static class RunReader
+	{
+		private RandomAccessFile file;
+		private FileChannel channel;
+		private ByteBuffer buf;
+		private long remaining; // longs not yet returned
+
+		/**
+		 * Open a run file
+		 * @param run - the file
+		 * @param bufferSize - bytes to read at a time
+		 * @throws IOException if the file cannot be opened
+		 */
+		public RunReader(File run, int bufferSize) throws IOException
+		{
+			file = new RandomAccessFile(run, "r");
+			channel = file.getChannel();
+			remaining = channel.size() / 8;
+			buf = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.nativeOrder());
+			buf.flip();
+		}
+
+		/**
+		 * @return true if the run has more arcs
+		 */
+		public boolean hasNext()
+		{
+			return remaining > 0;
+		}
+
+		/**
+		 * @return the next arc
+		 * @throws IOException if the file cannot be read
+		 */
+		public long next() throws IOException
+		{
+			if(buf.remaining() < 8)
+			{
+				buf.compact();
+				while(buf.position() < 8 && channel.read(buf) >= 0)
+				{
+				}
+				buf.flip();
+			}
+			remaining--;
+			return buf.getLong();
+		}
+
+		/**
+		 * Close the file
+		 * @throws IOException if closing fails
+		 */
+		public void close() throws IOException
+		{
+			file.close();
+		}
+	}// end class RunReader
+
+	/**
+	 * Where a merge writes its sorted stream of arcs
+	 */
+	private interface ArcSink
+	{
+		/**
+		 * @param arc - the next arc of the sorted stream
+		 * @throws IOException if the arc cannot be written
+		 */
+		public void put(long arc) throws IOException;
+	}// end interface ArcSink
+
+	/**
+	 * Sequential writer of a run file
+	 */
+	private static class RunWriter implements ArcSink
+	{
+		private RandomAccessFile file;
+		private FileChannel channel;
+		private ByteBuffer buf;
+
+		/**
+		 * Create a run file, or open an existing file for writing
+		 * @param run - the file
+		 * @param bufferSize - bytes to write at a time
+		 * @throws IOException if the file cannot be opened
+		 */
+		public RunWriter(File run, int bufferSize) throws IOException
+		{
+			file = new RandomAccessFile(run, "rw");
+			file.setLength(0);
+			channel = file.getChannel();
+			buf = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.nativeOrder());
+		}
+
+		/**
+		 * @param arc - the next arc of the sorted stream
+		 * @throws IOException if the file cannot be written
+		 */
+		public void put(long arc) throws IOException
+		{
+			if(buf.remaining() < 8)
+			{
+				flush();
+			}
+			buf.putLong(arc);
+		}
+
+		/**
+		 * Write out the buffer
+		 * @throws IOException if the file cannot be written
+		 */
+		private void flush() throws IOException
+		{
+			buf.flip();
+			while(buf.hasRemaining())
+			{
+				channel.write(buf);
+			}
+			buf.clear();
+		}
+
+		/**
+		 * Write out the buffer and close the file
+		 * @throws IOException if the file cannot be written
+		 */
+		public void close() throws IOException
+		{
+			flush();
+			file.close();
+		}
+	}// end class RunWriter
+
+	/**
+	 * Writer of a .csr file from the fully merged, sorted arcs. The
+	 * offsets and the neighbors are two sequential streams into the
+	 * same file, each with its own buffer.
+	 */
+	private static class CsrWriter implements ArcSink
+	{
+		private RandomAccessFile file;
+		private FileChannel channel;
+		private int V; // number of vertices
+		private ByteBuffer offsetBuf; // offsets not yet written
+		private long offsetPos; // file position of offsetBuf's contents
+		private ByteBuffer neighborBuf; // neighbors not yet written
+		private long neighborPos; // file position of neighborBuf's contents
+		private int vertex; // vertices before this have their offsets written
+		private long arcs; // arcs written so far
+
+		/**
+		 * Create a .csr file
+		 * @param fileName - the file
+		 * @param V - the number of vertices
+		 * @param bufferSize - bytes to write at a time, per stream
+		 * @throws IOException if the file cannot be opened
+		 */
+		public CsrWriter(String fileName, int V, int bufferSize) throws IOException
+		{
+			file = new RandomAccessFile(fileName, "rw");
+			file.setLength(0);
+			channel = file.getChannel();
+			this.V = V;
+			offsetBuf = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+			neighborBuf = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+			offsetPos = OffHeapGraph.HEADER;
+			neighborPos = OffHeapGraph.HEADER + 8L * (V + 1);
+		}
+
+		/**
+		 * @param arc - the next arc, in sorted order
+		 * @throws IOException if the file cannot be written
+		 */
+		public void put(long arc) throws IOException
+		{
+			int source = (int) (arc >>> 32);
+			while(vertex <= source)
+			{
+				putOffset();
+			}
+			if(neighborBuf.remaining() < 4)
+			{
+				neighborPos = drain(neighborBuf, neighborPos);
+			}
+			neighborBuf.putInt((int) arc);
+			arcs++;
+		}
+
+		/**
+		 * Write the offsets of the remaining vertices and the header, and
+		 * close the file
+		 * @throws IOException if the file cannot be written
+		 */
+		public void close() throws IOException
+		{
+			while(vertex <= V)
+			{
+				putOffset();
+			}
+			drain(offsetBuf, offsetPos);
+			drain(neighborBuf, neighborPos);
+			ByteBuffer header = ByteBuffer.allocate(OffHeapGraph.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(OffHeapGraph.MAGIC).putInt(V).putLong(arcs).putInt(0).putInt(0);
+			header.flip();
+			long pos = 0;
+			while(header.hasRemaining())
+			{
+				pos += channel.write(header, pos);
+			}
+			file.close();
+		}
+
+		/**
+		 * Write the offset of the next vertex, which is the number of arcs
+		 * so far
+		 * @throws IOException if the file cannot be written
+		 */
+		private void putOffset() throws IOException
+		{
+			if(offsetBuf.remaining() < 8)
+			{
+				offsetPos = drain(offsetBuf, offsetPos);
+			}
+			offsetBuf.putLong(arcs);
+			vertex++;
+		}
+
+		/**
+		 * Write out one stream's buffer at its file position
+		 * @param buf - the buffer
+		 * @param pos - the file position of its contents
+		 * @return the file position after them
+		 * @throws IOException if the file cannot be written
+		 */
+		private long drain(ByteBuffer buf, long pos) throws IOException
+		{
+			buf.flip();
+			while(buf.hasRemaining())
+			{
+				pos += channel.write(buf, pos);
+			}
+			buf.clear();
+			return pos;
+		}
+	}// end class CsrWriter
+}// end class ExternalGraphBuilder
@@ -0,0 +1,384 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Load a graph once and answer queries about it over a socket on the
+ * local host, so that each question does not pay for parsing the graph
+ * file. Connections are served by a pool of one thread per core, each
+ * thread with its own BFS kernel, and any more connections than that wait
+ * for one to close; queries are one per line, and each answer is followed
+ * by an empty line:
+ * 		degree <v> - the degree of vertex v
+ * 		component <v> - the component of v (numbered as by
+ * 			ConnectedComponents) and its size
+ * 		closeness <v> - the average distance from v to the rest of its
+ * 			component, as ranked by TopRank, or 0 if v is alone in it
+ * 		topdegree <k> - the k vertices of highest degree, as Rank, Vertex
+ * 			and DegCen lines
+ * 		stats - the graph's size and the closeness cache's hit rate
+ * 		quit - close the connection
+ * Vertices are numbered as in the graph file. Closeness costs a BFS, so
+ * the answers are kept in a least-recently-used cache; the other queries
+ * are answered from tables built at start-up.
+ * @author Joseph Ville
+ *
+ * Usage: java GraphServer <fileName> [-port <port>] [-cache <entries>] [-order <order>]
+ * 		  <fileName> = the name of the graph file to serve
+ * 		  -port = the local port to listen on, default 7351
+ * 		  -cache = the most closeness values to cache, default 100000
+ * 		  -order = relabel vertices for cache locality before serving;
+ * 		  		  <order> = degree, rcm or community
+ */
+public class GraphServer
+{
+	private static String fileName;
+	private static int port = 7351;
+	private static int cacheSize = 100000;
+	private static String order; // vertex order to relabel by, or null
+	private static AdjacencyGraph graph; // never modified once loaded
+	private static int[] component; // component number of each vertex, by original ID
+	private static int[] componentSize; // size of each component
+	private static int[] byDegree; // original IDs in descending degree, ties by ID
+	private static ClosenessCache cache;
+	private static ThreadLocal<BfsKernel> kernels; // one BFS kernel per pool thread
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length < 1)
+		{
+			usage();
+		}
+		fileName = args[0];
+		try
+		{
+			for(int a = 1; a < args.length; a++)
+			{
+				if(args[a].equals("-port") && a + 1 < args.length)
+				{
+					port = Integer.parseInt(args[++a]);
+				}
+				else if(args[a].equals("-cache") && a + 1 < args.length)
+				{
+					cacheSize = Integer.parseInt(args[++a]);
+				}
+				else if(args[a].equals("-order") && a + 1 < args.length && Reordering.isMethod(args[a + 1]))
+				{
+					order = args[++a];
+				}
+				else
+				{
+					usage();
+				}
+			}
+		}
+		catch(NumberFormatException nfe)
+		{
+			usage();
+		}
+
+		long t1 = System.currentTimeMillis();
+		graph = new Collaboration().readGraph(fileName);
+		if(order != null)
+		{
+			graph = Reordering.apply(graph, order);
+		}
+		buildTables();
+		cache = new ClosenessCache(cacheSize);
+		kernels = new ThreadLocal<BfsKernel>()
+		{
+			protected BfsKernel initialValue()
+			{
+				return new BfsKernel(graph);
+			}
+		};
+		long t2 = System.currentTimeMillis();
+
+		// a fixed pool bounds the kernels, each O(V), to one per core
+		ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try
+		{
+			ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+			System.err.println("Serving " + fileName + " (V = " + graph.V() + ", loaded in " + (t2 - t1) +
+					" msec) on " + server.getLocalSocketAddress());
+			while(true)
+			{
+				final Socket socket = server.accept();
+				pool.execute(new Runnable()
+				{
+					public void run()
+					{
+						serve(socket);
+					}
+				});
+			}
+		}
+		catch(IOException ex)
+		{
+			System.err.println("There was an error listening on port " + port + ": " + ex.getMessage());
+			pool.shutdown();
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Find the components and the degree ranking
+	 */
+	private static void buildTables()
+	{
+		int V = graph.V();
+		component = new int[V];
+		int[] sizes = new int[V];
+		int n = 0;
+		BfsKernel bfs = new BfsKernel(graph);
+		for(int i = 0; i < V; i++)
+		{
+			// numbered by smallest original ID, as in ConnectedComponents
+			int v = graph.vertexOf(i);
+			if(bfs.visited(v))
+			{
+				continue;
+			}
+			int count = bfs.component(v);
+			for(int q = 0; q < count; q++)
+			{
+				component[graph.originalId(bfs.vertexAt(q))] = n;
+			}
+			sizes[n++] = count;
+		}
+		componentSize = new int[n];
+		System.arraycopy(sizes, 0, componentSize, 0, n);
+
+		float[] degrees = new float[V];
+		for(int i = 0; i < V; i++)
+		{
+			degrees[i] = graph.degree(graph.vertexOf(i));
+		}
+		byDegree = TopRank.rankDescending(degrees);
+	}
+
+	/**
+	 * Answer the queries on one connection until the client quits or
+	 * disconnects
+	 * @param socket - the connection
+	 */
+	private static void serve(Socket socket)
+	{
+		try
+		{
+			socket.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			PrintWriter out = new PrintWriter(socket.getOutputStream());
+			String line;
+			while((line = in.readLine()) != null)
+			{
+				line = line.trim();
+				if(line.equals("quit"))
+				{
+					break;
+				}
+				if(!line.isEmpty())
+				{
+					answer(line, out);
+					out.print('\n');
+					out.flush();
+				}
+			}
+			socket.close();
+		}
+		catch(IOException ex)
+		{
+			// the client went away; nothing to clean up but the socket
+			try
+			{
+				socket.close();
+			}
+			catch(IOException ex2)
+			{
+			}
+		}
+	}
+
+	/**
+	 * Answer one query
+	 * @param query - the query line
+	 * @param out - where to write the answer
+	 */
+	private static void answer(String query, PrintWriter out)
+	{
+		String[] words = query.split("\\s+");
+		try
+		{
+			if(words[0].equals("stats") && words.length == 1)
+			{
+				out.print("V = " + graph.V() + ", E = " + graph.arcs() / 2 + ", components = " + componentSize.length +
+						", cached = " + cache.size() + ", hits = " + cache.hits() + ", misses = " + cache.misses() + "\n");
+				return;
+			}
+			if(words.length != 2)
+			{
+				out.print("error: unknown query: " + query + "\n");
+				return;
+			}
+			int arg = Integer.parseInt(words[1]);
+			if(words[0].equals("topdegree"))
+			{
+				int k = Math.min(Math.max(arg, 0), byDegree.length);
+				out.print("Rank\tVertex\tDegCen\n");
+				for(int i = 0; i < k; i++)
+				{
+					out.print((i+1) + "\t" + byDegree[i] + "\t" + graph.degree(graph.vertexOf(byDegree[i])) + "\n");
+				}
+				return;
+			}
+			if(arg < 0 || arg >= graph.V())
+			{
+				out.print("error: no vertex " + arg + "\n");
+			}
+			else if(words[0].equals("degree"))
+			{
+				out.print(graph.degree(graph.vertexOf(arg)) + "\n");
+			}
+			else if(words[0].equals("component"))
+			{
+				out.print(component[arg] + "\t" + componentSize[component[arg]] + "\n");
+			}
+			else if(words[0].equals("closeness"))
+			{
+				out.print(closeness(arg) + "\n");
+			}
+			else
+			{
+				out.print("error: unknown query: " + query + "\n");
+			}
+		}
+		catch(NumberFormatException nfe)
+		{
+			out.print("error: not a number: " + words[1] + "\n");
+		}
+	}
+
+	/**
+	 * @param v - a vertex, by original ID
+	 * @return the average distance from v to the rest of its component,
+	 * 		or 0 if there is no rest, from the cache if possible
+	 */
+	private static float closeness(int v)
+	{
+		if(componentSize[component[v]] == 1)
+		{
+			return 0;
+		}
+		Float cached = cache.lookUp(v);
+		if(cached != null)
+		{
+			return cached;
+		}
+		float avg = kernels.get().avgDistance(graph.vertexOf(v));
+		cache.store(v, avg);
+		return avg;
+	}
+
+	/**
+	 * A least-recently-used cache of closeness values, shared by all the
+	 * connection threads. Two threads missing on the same vertex at once
+	 * both run the BFS; the results are the same.
+	 */
+	private static class ClosenessCache
+	{
+		private LinkedHashMap<Integer, Float> map;
+		private long hits;
+		private long misses;
+
+		/**
+		 * Construct an object of this class
+		 * @param capacity - the most entries to keep
+		 */
+		ClosenessCache(final int capacity)
+		{
+			map = new LinkedHashMap<Integer, Float>(16, 0.75f, true)
+			{
+				protected boolean removeEldestEntry(Map.Entry<Integer, Float> eldest)
+				{
+					return size() > capacity;
+				}
+			};
+		}
+
+		/**
+		 * @param v - a vertex
+		 * @return v's cached closeness, or null if not cached
+		 */
+		synchronized Float lookUp(int v)
+		{
+			Float value = map.get(v);
+			if(value == null)
+			{
+				misses++;
+			}
+			else
+			{
+				hits++;
+			}
+			return value;
+		}
+
+		/**
+		 * @param v - a vertex
+		 * @param value - v's closeness
+		 */
+		synchronized void store(int v, float value)
+		{
+			map.put(v, value);
+		}
+
+		/**
+		 * @return the number of cached values
+		 */
+		synchronized int size()
+		{
+			return map.size();
+		}
+
+		/**
+		 * @return the number of lookups that found a value
+		 */
+		synchronized long hits()
+		{
+			return hits;
+		}
+
+		/**
+		 * @return the number of lookups that found nothing
+		 */
+		synchronized long misses()
+		{
+			return misses;
+		}
+	}// end class ClosenessCache
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java GraphServer <fileName> [-port <port>] [-cache <entries>] [-order <order>]\n" +
+				"<fileName> = the name of the graph file to serve\n" +
+				"-port = the local port to listen on, default 7351\n" +
+				"-cache = the most closeness values to cache, default 100000\n" +
+				"-order = relabel vertices for cache locality; <order> = degree, rcm or community");
+		System.exit(0);
+	}
+}// end class GraphServer
@@ -0,0 +1,374 @@
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+/**
+ * Approximate all-vertex distance statistics of a graph with HyperBall
+ * (Boldi and Vigna's HyperANF). Every vertex keeps a HyperLogLog counter
+ * estimating the size of its ball B(v, t), the set of vertices within
+ * distance t. Since B(v, t+1) is the union of B(v, t) and the B(w, t) of
+ * its neighbors w, one pass of register-wise maximums along the edges
+ * advances every ball by one step, and the passes stop when no counter
+ * changes -- about diameter x E work in total. From the ball sizes come
+ * the neighbourhood function, the effective diameter and each vertex's
+ * closeness and harmonic centrality.
+ *
+ * Memory is two counters of 2^log2m one-byte registers per vertex plus
+ * three doubles per vertex. The relative standard error of each counter
+ * is about 1.04 / sqrt(2^log2m).
+ * @author Joseph Ville
+ *
+ * Usage: java HyperBall <fileName> <log2m> <seed>
+ * 		  <fileName> = the name of the graph file to be analyzed
+ * 		  <log2m> = log2 of the number of registers per counter, 4 to 16
+ * 		  <seed> = seed for the hash function
+ */
+public class HyperBall
+{
+	private AdjacencyGraph graph;
+	private int log2m; // log2 of the registers per counter
+	private int m; // registers per counter
+	private long seed; // hash seed
+	private double alpha; // HyperLogLog bias correction constant for m
+
+	private ArrayList<Double> neighbourhood; // N(t) = sum over v of |B(v, t)|
+	private double[] farness; // estimated sum of distances from each vertex
+	private double[] harmonic; // estimated sum of 1/distance from each vertex
+	private double[] ballSize; // estimated |B(v, t)| after the last pass
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length != 3)
+		{
+			usage();
+		}
+		int log2m = 0;
+		long seed = 0;
+		try
+		{
+			log2m = Integer.parseInt(args[1]);
+			seed = Long.parseLong(args[2]);
+		}
+		catch(NumberFormatException nfe)
+		{
+			usage();
+		}
+		if(log2m < 4 || log2m > 16)
+		{
+			usage();
+		}
+
+		Collaboration collab = new Collaboration();
+		AdjacencyGraph graph = collab.readGraph(args[0]);
+		HyperBall hb = new HyperBall(graph, log2m, seed);
+		hb.run();
+
+		DecimalFormat df = new DecimalFormat("0.#####");
+		System.out.println("t\tN(t)");
+		for(int t = 0; t < hb.neighbourhood.size(); t++)
+		{
+			System.out.println(t + "\t" + df.format(hb.neighbourhood.get(t)));
+		}
+		System.out.println("Effective diameter (90%) = " + df.format(hb.effectiveDiameter(0.9)));
+		System.out.println("Avg distance = " + df.format(hb.averageDistance()));
+
+		// closeness is ranked within the largest component, as in TopRank;
+		// harmonic centrality is meaningful across components
+		ConnectedComponents cc = new ConnectedComponents(false);
+		cc.findComponents(graph);
+		ArrayList<Integer> largestCC = cc.getLargestComponent();
+		int top = Math.min(40, largestCC.size());
+		float[] closeness = new float[largestCC.size()];
+		for(int i = 0; i < closeness.length; i++)
+		{
+			closeness[i] = (float) hb.avgDistance(graph.vertexOf(largestCC.get(i)));
+		}
+		float[] harmonicCent = new float[graph.V()];
+		for(int v = 0; v < graph.V(); v++)
+		{
+			harmonicCent[v] = (float) hb.harmonic[v];
+		}
+		int[] ranking = TopRank.rankAscending(closeness);
+		System.out.println("Rank\tVertex\tCloCen");
+		for(int i = 0; i < top; i++)
+		{
+			System.out.println((i+1) + "\t" + largestCC.get(ranking[i]) + "\t" + df.format(closeness[ranking[i]]));
+		}
+		ranking = TopRank.rankDescending(harmonicCent);
+		System.out.println("Rank\tVertex\tHarCen");
+		for(int i = 0; i < Math.min(40, graph.V()); i++)
+		{
+			System.out.println((i+1) + "\t" + graph.originalId(ranking[i]) + "\t" + df.format(harmonicCent[ranking[i]]));
+		}
+	}
+
+	/**
+	 * Construct an object of this class
+	 * @param graph - the graph
+	 * @param log2m - log2 of the number of registers per counter, 4 to 16
+	 * @param seed - seed for the hash function
+	 */
+	public HyperBall(AdjacencyGraph graph, int log2m, long seed)
+	{
+		if(log2m < 4 || log2m > 16)
+		{
+			throw new IllegalArgumentException("log2m must be between 4 and 16");
+		}
+		this.graph = graph;
+		this.log2m = log2m;
+		this.m = 1 << log2m;
+		this.seed = seed;
+		switch(m)
+		{
+			case 16: alpha = 0.673; break;
+			case 32: alpha = 0.697; break;
+			case 64: alpha = 0.709; break;
+			default: alpha = 0.7213 / (1 + 1.079 / m);
+		}
+	}
+
+	/**
+	 * Run HyperBall until every counter has stopped changing
+	 */
+	public void run()
+	{
+		final int V = graph.V();
+		if((long) V * m > Integer.MAX_VALUE - 8)
+		{
+			throw new IllegalArgumentException("Too many registers for " + V + " vertices; use a smaller log2m");
+		}
+		byte[] current = new byte[V * m];
+		byte[] next = new byte[V * m];
+		farness = new double[V];
+		harmonic = new double[V];
+		ballSize = new double[V];
+		neighbourhood = new ArrayList<Double>();
+
+		// t = 0: every ball holds just its own vertex
+		double n0 = 0;
+		for(int v = 0; v < V; v++)
+		{
+			add(current, v, v);
+			ballSize[v] = size(current, v);
+			n0 += ballSize[v];
+		}
+		neighbourhood.add(n0);
+
+		final boolean[] changed = new boolean[1];
+		final double[] total = new double[1];
+		for(int t = 1; ; t++)
+		{
+			final int dist = t;
+			final byte[] cur = current;
+			final byte[] nxt = next;
+			changed[0] = false;
+			total[0] = 0;
+			new ParallelLoop()
+			{
+				NeighborIterator it; // per-thread neighbor walker
+				boolean thrChanged;
+				double thrTotal;
+
+				public void start()
+				{
+					it = graph.neighborIterator();
+				}
+
+				public void run(int v)
+				{
+					int base = v * m;
+					System.arraycopy(cur, base, nxt, base, m);
+					boolean grew = false;
+					it.start(v);
+					for(int w = it.next(); w >= 0; w = it.next())
+					{
+						int nbase = w * m;
+						for(int j = 0; j < m; j++)
+						{
+							if(cur[nbase + j] > nxt[base + j])
+							{
+								nxt[base + j] = cur[nbase + j];
+								grew = true;
+							}
+						}
+					}
+					double size = ballSize[v];
+					if(grew)
+					{
+						size = size(nxt, v);
+						double newlyReached = Math.max(0, size - ballSize[v]);
+						farness[v] += dist * newlyReached;
+						harmonic[v] += newlyReached / dist;
+						ballSize[v] = size;
+						thrChanged = true;
+					}
+					thrTotal += size;
+				}
+
+				public void finish()
+				{
+					synchronized(changed)
+					{
+						changed[0] |= thrChanged;
+						total[0] += thrTotal;
+					}
+				}
+			}.chunk(1024).exec(0, V - 1);
+
+			if(!changed[0])
+			{
+				break;
+			}
+			neighbourhood.add(total[0]);
+			current = nxt;
+			next = cur;
+		}
+	}
+
+	/**
+	 * Add an element to a vertex's counter
+	 * @param counters - the counter array
+	 * @param v - the vertex owning the counter
+	 * @param element - the element to add
+	 */
+	private void add(byte[] counters, int v, int element)
+	{
+		long h = mix(element ^ seed);
+		int register = (int) (h & (m - 1));
+		long rest = h >>> log2m;
+		int rho = Long.numberOfTrailingZeros(rest) + 1; // position of the first 1 bit
+		rho = Math.min(rho, 64 - log2m + 1);
+		int index = v * m + register;
+		if(rho > counters[index])
+		{
+			counters[index] = (byte) rho;
+		}
+	}
+
+	/**
+	 * Estimate the number of elements in a vertex's counter
+	 * @param counters - the counter array
+	 * @param v - the vertex owning the counter
+	 * @return the estimated cardinality
+	 */
+	private double size(byte[] counters, int v)
+	{
+		int base = v * m;
+		double sum = 0;
+		int zeros = 0;
+		for(int j = 0; j < m; j++)
+		{
+			int r = counters[base + j];
+			sum += Double.longBitsToDouble((1023L - r) << 52); // 2^-r
+			if(r == 0)
+			{
+				zeros++;
+			}
+		}
+		double estimate = alpha * m * m / sum;
+		if(estimate <= 2.5 * m && zeros > 0) // small range correction
+		{
+			estimate = m * Math.log((double) m / zeros);
+		}
+		return estimate;
+	}
+
+	/**
+	 * A 64-bit finalizing hash (from MurmurHash3)
+	 * @param x - the value to hash
+	 * @return the hash
+	 */
+	private static long mix(long x)
+	{
+		x ^= x >>> 33;
+		x *= 0xff51afd7ed558ccdL;
+		x ^= x >>> 33;
+		x *= 0xc4ceb9fe1a85ec53L;
+		x ^= x >>> 33;
+		return x;
+	}
+
+	/**
+	 * @return the neighbourhood function N(t), for t = 0 up to the last
+	 * 		step in which some ball grew
+	 */
+	public ArrayList<Double> neighbourhoodFunction()
+	{
+		return neighbourhood;
+	}
+
+	/**
+	 * Find the effective diameter: the (interpolated) smallest t such that
+	 * N(t) covers the given fraction of all reachable pairs
+	 * @param fraction - the fraction, e.g. 0.9
+	 * @return the effective diameter
+	 */
+	public double effectiveDiameter(double fraction)
+	{
+		double target = fraction * neighbourhood.get(neighbourhood.size() - 1);
+		for(int t = 0; t < neighbourhood.size(); t++)
+		{
+			if(neighbourhood.get(t) >= target)
+			{
+				if(t == 0)
+				{
+					return 0;
+				}
+				double below = neighbourhood.get(t - 1);
+				return (t - 1) + (target - below) / (neighbourhood.get(t) - below);
+			}
+		}
+		return neighbourhood.size() - 1;
+	}
+
+	/**
+	 * @return the average distance between two distinct vertices that are
+	 * 		connected, from the neighbourhood function
+	 */
+	public double averageDistance()
+	{
+		double pairs = 0, sum = 0;
+		for(int t = 1; t < neighbourhood.size(); t++)
+		{
+			double atT = neighbourhood.get(t) - neighbourhood.get(t - 1);
+			pairs += atT;
+			sum += t * atT;
+		}
+		return pairs > 0 ? sum / pairs : 0;
+	}
+
+	/**
+	 * @param v - a vertex
+	 * @return the estimated average distance from v to the other vertices
+	 * 		it can reach
+	 */
+	public double avgDistance(int v)
+	{
+		return farness[v] / Math.max(1, ballSize[v] - 1);
+	}
+
+	/**
+	 * @param v - a vertex
+	 * @return the estimated harmonic centrality of v, the sum of
+	 * 		1/distance to every other vertex
+	 */
+	public double harmonicCentrality(int v)
+	{
+		return harmonic[v];
+	}
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java HyperBall <fileName> <log2m> <seed>\n" +
+				"<fileName> = the name of the graph file to be analyzed\n" +
+				"<log2m> = log2 of the number of registers per counter, 4 to 16\n" +
+				"<seed> = seed for the hash function");
+		System.exit(0);
+	}
+}// end class HyperBall
@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+/**
+ * The mapping between the vertices of a graph and their IDs in the input
+ * file, for a graph whose vertices have been renumbered or are only some
+ * of the file's. The IDs need not be contiguous: vertexOf() gives -1 for
+ * an ID that is not in the graph.
+ * @author Joseph Ville
+ */
+public class IdMap
+{
+	private int[] originalIds; // original ID of each vertex
+	private int[] vertexIds; // vertex of each original ID, or -1 if not in the graph
+
+	/**
+	 * Construct an object of this class
+	 * @param originalIds - the original ID of each vertex, all different and >= 0
+	 */
+	public IdMap(int[] originalIds)
+	{
+		int range = 0;
+		for(int id : originalIds)
+		{
+			range = Math.max(range, id + 1);
+		}
+		this.originalIds = originalIds;
+		vertexIds = new int[range];
+		Arrays.fill(vertexIds, -1);
+		for(int v = 0; v < originalIds.length; v++)
+		{
+			vertexIds[originalIds[v]] = v;
+		}
+	}
+
+	/**
+	 * The mapping of a graph, for a copy of it with the same vertex numbering
+	 * @param graph - the graph copied
+	 * @return the mapping, or null if every vertex has its original ID
+	 */
+	public static IdMap of(AdjacencyGraph graph)
+	{
+		boolean identity = true;
+		for(int v = 0; v < graph.V() && identity; v++)
+		{
+			identity = graph.originalId(v) == v;
+		}
+		if(identity)
+		{
+			return null;
+		}
+		int[] originalIds = new int[graph.V()];
+		for(int v = 0; v < originalIds.length; v++)
+		{
+			originalIds[v] = graph.originalId(v);
+		}
+		return new IdMap(originalIds);
+	}
+
+	/**
+	 * The mapping for a graph made of some of another graph's vertices,
+	 * renumbered, such as a relabeled copy or a subgraph
+	 * @param graph - the other graph
+	 * @param vertices - the vertex of graph that each new vertex was
+	 * @return the mapping
+	 */
+	public static IdMap of(AdjacencyGraph graph, int[] vertices)
+	{
+		int[] originalIds = new int[vertices.length];
+		for(int v = 0; v < vertices.length; v++)
+		{
+			originalIds[v] = graph.originalId(vertices[v]);
+		}
+		return new IdMap(originalIds);
+	}
+
+	/**
+	 * @param v - a vertex of the graph
+	 * @return v's ID in the input file
+	 */
+	public int originalId(int v)
+	{
+		return originalIds[v];
+	}
+
+	/**
+	 * @param originalId - a vertex ID in the input file
+	 * @return the vertex of the graph with that ID, or -1 if it is not in
+	 * 		the graph
+	 */
+	public int vertexOf(int originalId)
+	{
+		return originalId < vertexIds.length ? vertexIds[originalId] : -1;
+	}
+}// end class IdMap
@@ -0,0 +1,310 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Keep the connected components and the degree distribution of a graph up
+ * to date as edges are added, instead of recomputing them from scratch.
+ * Components are kept in a union-find structure (union by size, path
+ * halving), so an edge costs amortized near-constant time. The number of
+ * components of each size and the number of vertices of each degree are
+ * kept as histograms, from which the smallest and largest component and
+ * the degree regression are read off at any point.
+ *
+ * The graph file is read first, then edge lines ("e <v> <w>", as in the
+ * graph file) are read from standard input as they arrive. A line "p"
+ * prints the current statistics, which are also printed at the end of
+ * the input. For example, tail -f on a growing file of edges can be
+ * piped in.
+ * @author Joseph Ville
+ *
+ * Usage: java IncrementalAnalysis <fileName>
+ * 		  <fileName> = the name of the graph file to start from
+ */
+public class IncrementalAnalysis
+{
+	private int V; // number of vertices
+	private long E; // number of edges added
+	private int[] parent; // union-find parent of each vertex; roots are their own parent
+	private int[] size; // size of each root's component
+	private int[] sizeCount; // number of components of each size
+	private int components; // number of components
+	private int smallest; // smallest component size
+	private int largest; // largest component size
+	private int[] degree; // degree of each vertex
+	private int[] degreeCount; // number of vertices of each degree
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length != 1)
+		{
+			usage();
+		}
+		IncrementalAnalysis analysis = null;
+		boolean eLine = false;
+		String line = "";
+		try
+		{
+			BufferedReader buff = Collaboration.openGraphFile(args[0]);
+			while((line = buff.readLine()) != null)
+			{
+				if(line.startsWith("g "))
+				{
+					String[] lineArr = line.split(" ");
+					if(lineArr.length < 3)
+					{
+						throw new IllegalArgumentException("There was an error reading the file");
+					}
+					analysis = new IncrementalAnalysis(Integer.parseInt(lineArr[1]));
+				}
+				else if(line.startsWith("e "))
+				{
+					// as readFile() requires, the g line comes before any edge
+					if(analysis == null)
+					{
+						throw new IllegalArgumentException("The file is in an invalid format.");
+					}
+					eLine = true;
+					analysis.addEdge(line);
+				}
+			}
+			buff.close();
+			if(analysis == null || !eLine)
+			{
+				System.err.println("The file is in an invalid format.");
+				System.exit(0);
+			}
+
+			ResultSink sink = ResultSink.open("text", System.out);
+			BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+			while((line = in.readLine()) != null)
+			{
+				if(line.startsWith("e "))
+				{
+					analysis.addEdge(line);
+				}
+				else if(line.equals("p"))
+				{
+					analysis.print(sink);
+					sink.flush();
+				}
+			}
+			analysis.print(sink);
+			sink.flush();
+		}
+		catch(NumberFormatException nfe)
+		{
+			System.err.println("A number in the file had invalid format: " + line);
+			System.exit(0);
+		}
+		catch(IllegalArgumentException ex)
+		{
+			System.err.println(ex.getMessage());
+			System.exit(0);
+		}
+		catch(IOException ex)
+		{
+			System.err.println("There was an error reading the file");
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Construct an object of this class for a graph with no edges yet
+	 * @param V - the number of vertices
+	 */
+	public IncrementalAnalysis(int V)
+	{
+		this.V = V;
+		parent = new int[V];
+		size = new int[V];
+		for(int v = 0; v < V; v++)
+		{
+			parent[v] = v;
+			size[v] = 1;
+		}
+		sizeCount = new int[V + 1];
+		sizeCount[1] = V;
+		components = V;
+		smallest = V == 0 ? 0 : 1;
+		largest = V == 0 ? 0 : 1;
+		degree = new int[V];
+		degreeCount = new int[16];
+		degreeCount[0] = V;
+	}
+
+	/**
+	 * Add the edge on an "e" line
+	 * @param line - the line, "e <v> <w>" with an optional weight
+	 */
+	public void addEdge(String line)
+	{
+		String[] lineArr = line.split(" ");
+		addEdge(Integer.parseInt(lineArr[1]), Integer.parseInt(lineArr[2]));
+	}
+
+	/**
+	 * Add an edge, updating the components and degree histogram
+	 * @param v - one end
+	 * @param w - the other end
+	 */
+	public void addEdge(int v, int w)
+	{
+		if(v < 0 || v >= V || w < 0 || w >= V)
+		{
+			throw new IllegalArgumentException("No such vertex in edge " + v + " " + w);
+		}
+		E++;
+		addDegree(v);
+		addDegree(w); // a self-loop counts twice, as in readFile()
+		union(v, w);
+	}
+
+	/**
+	 * @param v - a vertex
+	 * @return the representative of v's component
+	 */
+	public int find(int v)
+	{
+		while(parent[v] != v)
+		{
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/**
+	 * @param v - a vertex
+	 * @return the size of v's component
+	 */
+	public int componentSize(int v)
+	{
+		return size[find(v)];
+	}
+
+	/**
+	 * @return the number of components
+	 */
+	public int components()
+	{
+		return components;
+	}
+
+	/**
+	 * @return the size of the smallest component
+	 */
+	public int smallest()
+	{
+		return smallest;
+	}
+
+	/**
+	 * @return the size of the largest component
+	 */
+	public int largest()
+	{
+		return largest;
+	}
+
+	/**
+	 * Find the number of occurrences of each degree, leaving out vertices
+	 * with no edges, as Regression.degreeOccurrences() does
+	 * @return map of degrees to the number of occurrences
+	 */
+	public TreeMap<Integer, Integer> degreeOccurrences()
+	{
+		TreeMap<Integer, Integer> occurrences = new TreeMap<Integer, Integer>();
+		for(int d = 1; d < degreeCount.length; d++)
+		{
+			if(degreeCount[d] > 0)
+			{
+				occurrences.put(d, degreeCount[d]);
+			}
+		}
+		return occurrences;
+	}
+
+	/**
+	 * Print the current component sizes, degree distribution and regression
+	 * @param out - where to print
+	 */
+	public void print(ResultSink out)
+	{
+		DecimalFormat df = new DecimalFormat("0.#####");
+		out.text("Edges = " + E + ", components = " + components);
+		out.text("Size of smallest CC = " + smallest);
+		out.text("Size of largest CC = " + largest);
+		out.text(largest + "/" + V + " = " + df.format((double)largest / V));
+		Regression regression = new Regression();
+		regression.executeRegressions(degreeOccurrences(), V, out);
+		regression.printRegressions(out);
+	}
+
+	/**
+	 * Merge the components of two vertices, the smaller into the larger
+	 * @param v - a vertex
+	 * @param w - another vertex
+	 */
+	private void union(int v, int w)
+	{
+		int a = find(v);
+		int b = find(w);
+		if(a == b)
+		{
+			return;
+		}
+		if(size[a] < size[b])
+		{
+			int t = a;
+			a = b;
+			b = t;
+		}
+		sizeCount[size[a]]--;
+		sizeCount[size[b]]--;
+		parent[b] = a;
+		size[a] += size[b];
+		sizeCount[size[a]]++;
+		components--;
+		largest = Math.max(largest, size[a]);
+		// merging never makes a component smaller, so the smallest size
+		// only moves up, and the scan is amortized over all the unions
+		while(sizeCount[smallest] == 0)
+		{
+			smallest++;
+		}
+	}
+
+	/**
+	 * Move a vertex up one place in the degree histogram
+	 * @param v - the vertex
+	 */
+	private void addDegree(int v)
+	{
+		int d = degree[v]++;
+		if(d + 1 == degreeCount.length)
+		{
+			degreeCount = Arrays.copyOf(degreeCount, 2 * degreeCount.length);
+		}
+		degreeCount[d]--;
+		degreeCount[d + 1]++;
+	}
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java IncrementalAnalysis <fileName>\n" +
+				"<fileName> = the name of the graph file to start from; further \"e <v> <w>\" lines\n" +
+				"are read from standard input, and a line \"p\" prints the current statistics");
+		System.exit(0);
+	}
+}// end class IncrementalAnalysis
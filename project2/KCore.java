@@ -0,0 +1,148 @@
+/**
+ * Find the k-core decomposition of a graph: the core number of a vertex is
+ * the largest k such that the vertex belongs to a subgraph in which every
+ * vertex has degree at least k. Uses the Batagelj-Zaversnik algorithm,
+ * which peels vertices in increasing order of remaining degree, kept in
+ * bins by a bucket sort, in O(V+E) time.
+ * @author Joseph Ville
+ *
+ * Usage: java KCore <fileName> [-all]
+ * 		  <fileName> = the name of the graph file to be analyzed
+ * 		  -all = also print the core number of every vertex
+ */
+public class KCore
+{
+	private static String fileName;
+	private static boolean all; // whether to print every vertex's core number
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equals("-all")))
+		{
+			usage();
+		}
+		fileName = args[0];
+		all = args.length == 2;
+
+		AdjacencyGraph graph = new Collaboration().readGraph(fileName);
+		int[] core = coreNumbers(graph);
+		int degeneracy = 0;
+		for(int v = 0; v < core.length; v++)
+		{
+			degeneracy = Math.max(degeneracy, core[v]);
+		}
+		int[] count = new int[degeneracy + 1];
+		for(int v = 0; v < core.length; v++)
+		{
+			count[core[v]]++;
+		}
+
+		System.out.println("Degeneracy = " + degeneracy);
+		System.out.println("Core\tCount\tCoreSize");
+		int coreSize = 0; // vertices with core number >= k
+		for(int k = degeneracy; k >= 0; k--)
+		{
+			coreSize += count[k];
+			if(count[k] > 0)
+			{
+				System.out.println(k + "\t" + count[k] + "\t" + coreSize);
+			}
+		}
+		if(all)
+		{
+			System.out.println("Vertex\tCore");
+			for(int i = 0; i < core.length; i++)
+			{
+				System.out.println(i + "\t" + core[graph.vertexOf(i)]);
+			}
+		}
+	}
+
+	/**
+	 * Compute the core number of every vertex
+	 * @param graph - the graph
+	 * @return the core number of each vertex of graph
+	 */
+	public static int[] coreNumbers(AdjacencyGraph graph)
+	{
+		int V = graph.V();
+		int[] deg = new int[V]; // remaining degree; the core number once peeled
+		int maxDegree = 0;
+		for(int v = 0; v < V; v++)
+		{
+			deg[v] = graph.degree(v);
+			maxDegree = Math.max(maxDegree, deg[v]);
+		}
+
+		// bucket sort the vertices by degree: bin[d] is where vertices of
+		// remaining degree d start in vert, and pos[v] is v's place in vert
+		int[] bin = new int[maxDegree + 1];
+		for(int v = 0; v < V; v++)
+		{
+			bin[deg[v]]++;
+		}
+		int start = 0;
+		for(int d = 0; d <= maxDegree; d++)
+		{
+			int n = bin[d];
+			bin[d] = start;
+			start += n;
+		}
+		int[] vert = new int[V];
+		int[] pos = new int[V];
+		for(int v = 0; v < V; v++)
+		{
+			pos[v] = bin[deg[v]]++;
+			vert[pos[v]] = v;
+		}
+		for(int d = maxDegree; d > 0; d--)
+		{
+			bin[d] = bin[d - 1];
+		}
+		bin[0] = 0;
+
+		// peel in order; each neighbor with a larger remaining degree moves
+		// to the front of its bin and then down one bin
+		NeighborIterator it = graph.neighborIterator();
+		for(int i = 0; i < V; i++)
+		{
+			int v = vert[i];
+			it.start(v);
+			for(int u = it.next(); u >= 0; u = it.next())
+			{
+				if(deg[u] > deg[v])
+				{
+					int du = deg[u];
+					int pu = pos[u];
+					int pw = bin[du];
+					int w = vert[pw];
+					if(u != w)
+					{
+						pos[u] = pw;
+						vert[pu] = w;
+						pos[w] = pu;
+						vert[pw] = u;
+					}
+					bin[du]++;
+					deg[u]--;
+				}
+			}
+		}
+		return deg;
+	}
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java KCore <fileName> [-all]\n" +
+				"<fileName> = the name of the graph file to be analyzed\n" +
+				"-all = also print the core number of every vertex");
+		System.exit(0);
+	}
+}// end class KCore
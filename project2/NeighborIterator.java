@@ -0,0 +1,22 @@
+/**
+ * Walks through the neighbor list of one vertex at a time. Usage:
+ * 	it.start(v);
+ * 	for(int w = it.next(); w >= 0; w = it.next())
+ * 	{
+ * 		...
+ * 	}
+ * @author Joseph Ville
+ */
+public interface NeighborIterator
+{
+	/**
+	 * Start walking the neighbor list of a vertex
+	 * @param v - the vertex
+	 */
+	public void start(int v);
+
+	/**
+	 * @return the next neighbor, or -1 if there are no more
+	 */
+	public int next();
+}// end interface NeighborIterator
@@ -0,0 +1,457 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+
+/**
+ * A CSR graph kept outside the Java heap, so that a multi-GB graph needs
+ * only a small -Xmx and the garbage collector never has to scan or copy
+ * it. The offsets (longs, so a graph may have more than 2^31 arcs) and
+ * neighbors live in direct or memory-mapped NIO buffers, split into
+ * chunks of at most 2^CHUNK_SHIFT elements because one buffer is limited
+ * to 2 GB. Buffer reads are bounds-checked, and the JIT compiles them to
+ * plain loads.
+ *
+ * A graph can be allocated off-heap from another graph (copyOf()), or
+ * mapped read-only from a .csr file written by write(). Collaboration
+ * reads any file whose name ends in .csr this way.
+ *
+ * File layout, little-endian: int magic, int V, long arcs, int hasIds,
+ * int padding, long offsets[V+1], int neighbors[arcs], and if hasIds is
+ * 1, int originalIds[V].
+ *
+ * Usage: java OffHeapGraph <inFile> <outFile>
+ * 		  <inFile> = the name of a graph file to convert
+ * 		  <outFile> = the name of the .csr file to write
+ * @author Joseph Ville
+ */
+public class OffHeapGraph implements AdjacencyGraph
+{
+	static final int MAGIC = 0x43535231; // "CSR1", start of a .csr file
+	static final int HEADER = 24; // bytes before the offsets
+	private static final int CHUNK_SHIFT = 27; // elements per buffer = 2^27
+	private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+	private int V; // number of vertices
+	private long arcs; // number of neighbor entries
+	private LongBuffer[] offsets; // start of each neighbor list, V+1 entries
+	private IntBuffer[] neighbors; // all neighbor lists, back to back
+	private IdMap ids; // mapping to original IDs, or null if never relabeled
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length != 2)
+		{
+			usage();
+		}
+		AdjacencyGraph graph = new Collaboration().readGraph(args[0]);
+		try
+		{
+			write(graph, args[1]);
+		}
+		catch(IOException ex)
+		{
+			System.err.println("There was an error writing to the file.");
+			System.exit(0);
+		}
+		DecimalFormat df = new DecimalFormat("0.##");
+		System.out.println("V = " + graph.V() + ", arcs = " + graph.arcs() + ", file = " +
+				df.format((HEADER + 8.0 * (graph.V() + 1) + 4.0 * graph.arcs()) / (1 << 20)) + " MB");
+	}
+
+	/**
+	 * Construct an empty graph; filled in by copyOf() or map()
+	 */
+	private OffHeapGraph()
+	{
+	}
+
+	/**
+	 * Copy any graph into freshly allocated off-heap buffers
+	 * @param graph - the graph
+	 * @return the off-heap graph, with the same vertex numbering and IDs
+	 */
+	public static OffHeapGraph copyOf(AdjacencyGraph graph)
+	{
+		OffHeapGraph result = new OffHeapGraph();
+		result.V = graph.V();
+		result.arcs = graph.arcs();
+		result.offsets = allocateLongs(result.V + 1L);
+		result.neighbors = allocateInts(result.arcs);
+		NeighborIterator it = graph.neighborIterator();
+		long i = 0;
+		for(int v = 0; v < result.V; v++)
+		{
+			result.setOffset(v, i);
+			it.start(v);
+			for(int w = it.next(); w >= 0; w = it.next())
+			{
+				result.setNeighbor(i++, w);
+			}
+		}
+		result.setOffset(result.V, i);
+		result.ids = IdMap.of(graph);
+		return result;
+	}
+
+	/**
+	 * Write any graph to a .csr file, streaming, without holding a copy
+	 * @param graph - the graph
+	 * @param fileName - the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(AdjacencyGraph graph, String fileName) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+		try
+		{
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+			int V = graph.V();
+			boolean hasIds = false;
+			for(int v = 0; v < V && !hasIds; v++)
+			{
+				hasIds = graph.originalId(v) != v;
+			}
+
+			buf.putInt(MAGIC).putInt(V).putLong(graph.arcs()).putInt(hasIds ? 1 : 0).putInt(0);
+			long offset = 0;
+			for(int v = 0; v <= V; v++)
+			{
+				buf = drainIfFull(channel, buf, 8);
+				buf.putLong(offset);
+				if(v < V)
+				{
+					offset += graph.degree(v);
+				}
+			}
+			NeighborIterator it = graph.neighborIterator();
+			for(int v = 0; v < V; v++)
+			{
+				it.start(v);
+				for(int w = it.next(); w >= 0; w = it.next())
+				{
+					buf = drainIfFull(channel, buf, 4);
+					buf.putInt(w);
+				}
+			}
+			if(hasIds)
+			{
+				for(int v = 0; v < V; v++)
+				{
+					buf = drainIfFull(channel, buf, 4);
+					buf.putInt(graph.originalId(v));
+				}
+			}
+			buf.flip();
+			while(buf.hasRemaining())
+			{
+				channel.write(buf);
+			}
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Map a .csr file read-only. Only the vertex ID mapping, if any, is
+	 * read onto the heap; the offsets and neighbors stay in the file's
+	 * pages, which the OS loads on demand.
+	 * @param fileName - the file written by write()
+	 * @return the graph
+	 * @throws IOException if the file cannot be read or is not a .csr file
+	 */
+	public static OffHeapGraph map(String fileName) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try
+		{
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			while(header.hasRemaining() && channel.read(header, header.position()) > 0)
+			{
+			}
+			header.flip();
+			if(header.remaining() < HEADER || header.getInt() != MAGIC)
+			{
+				throw new IOException(fileName + " is not a CSR graph file");
+			}
+			OffHeapGraph graph = new OffHeapGraph();
+			graph.V = header.getInt();
+			graph.arcs = header.getLong();
+			boolean hasIds = header.getInt() == 1;
+
+			long offsetsStart = HEADER;
+			long neighborsStart = offsetsStart + 8L * (graph.V + 1);
+			long idsStart = neighborsStart + 4L * graph.arcs;
+			if(channel.size() < idsStart + (hasIds ? 4L * graph.V : 0))
+			{
+				throw new IOException(fileName + " is truncated");
+			}
+
+			graph.offsets = new LongBuffer[chunks(graph.V + 1L)];
+			for(int c = 0; c < graph.offsets.length; c++)
+			{
+				long count = Math.min(1L << CHUNK_SHIFT, graph.V + 1L - ((long) c << CHUNK_SHIFT));
+				graph.offsets[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+						offsetsStart + 8L * ((long) c << CHUNK_SHIFT), 8 * count)
+						.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+			}
+			graph.neighbors = new IntBuffer[chunks(graph.arcs)];
+			for(int c = 0; c < graph.neighbors.length; c++)
+			{
+				long count = Math.min(1L << CHUNK_SHIFT, graph.arcs - ((long) c << CHUNK_SHIFT));
+				graph.neighbors[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+						neighborsStart + 4L * ((long) c << CHUNK_SHIFT), 4 * count)
+						.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			}
+			if(hasIds)
+			{
+				IntBuffer ids = channel.map(FileChannel.MapMode.READ_ONLY, idsStart, 4L * graph.V)
+						.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+				int[] originalIds = new int[graph.V];
+				ids.get(originalIds);
+				graph.ids = new IdMap(originalIds);
+			}
+			return graph; // the mappings stay valid after the file is closed
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * @return the number of vertices
+	 */
+	public int V()
+	{
+		return V;
+	}
+
+	/**
+	 * @return the number of stored neighbor entries (twice the number of
+	 * 		undirected edges)
+	 */
+	public long arcs()
+	{
+		return arcs;
+	}
+
+	/**
+	 * @param v - the vertex
+	 * @return the degree of v
+	 */
+	public int degree(int v)
+	{
+		return (int) (offset(v + 1) - offset(v));
+	}
+
+	/**
+	 * @return a new iterator over the neighbor lists
+	 */
+	public NeighborIterator neighborIterator()
+	{
+		return new NeighborIterator()
+		{
+			private long i; // position of the next neighbor
+			private long end; // position just past the list
+
+			public void start(int v)
+			{
+				i = offset(v);
+				end = offset(v + 1);
+			}
+
+			public int next()
+			{
+				if(i >= end)
+				{
+					return -1;
+				}
+				int w = neighbors[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK));
+				i++;
+				return w;
+			}
+		};
+	}
+
+	/**
+	 * Relabel the vertices, so that vertex v of this graph becomes vertex
+	 * newId[v] of the result, with each neighbor list sorted. The result
+	 * is allocated off-heap. The mapping back to the IDs in the input file
+	 * carries over.
+	 * @param newId - a permutation of 0 to V-1
+	 * @return the relabeled graph
+	 */
+	public OffHeapGraph relabel(int[] newId)
+	{
+		int[] oldId = new int[V];
+		for(int v = 0; v < V; v++)
+		{
+			oldId[newId[v]] = v;
+		}
+		OffHeapGraph result = new OffHeapGraph();
+		result.V = V;
+		result.arcs = arcs;
+		result.offsets = allocateLongs(V + 1L);
+		result.neighbors = allocateInts(arcs);
+		NeighborIterator it = neighborIterator();
+		int[] list = new int[16];
+		long i = 0;
+		for(int w = 0; w < V; w++)
+		{
+			result.setOffset(w, i);
+			int n = 0;
+			it.start(oldId[w]);
+			for(int u = it.next(); u >= 0; u = it.next())
+			{
+				if(n == list.length)
+				{
+					list = Arrays.copyOf(list, 2 * n);
+				}
+				list[n++] = newId[u];
+			}
+			Arrays.sort(list, 0, n);
+			for(int k = 0; k < n; k++)
+			{
+				result.setNeighbor(i++, list[k]);
+			}
+		}
+		result.setOffset(V, i);
+		result.ids = IdMap.of(this, oldId);
+		return result;
+	}
+
+	/**
+	 * @param v - a vertex of this graph
+	 * @return v's ID in the input file
+	 */
+	public int originalId(int v)
+	{
+		return ids == null ? v : ids.originalId(v);
+	}
+
+	/**
+	 * @param originalId - a vertex ID in the input file
+	 * @return the vertex of this graph with that ID, or -1 if it is not
+	 * 		in this (sub)graph
+	 */
+	public int vertexOf(int originalId)
+	{
+		return ids == null ? originalId : ids.vertexOf(originalId);
+	}
+
+	/**
+	 * @param v - a vertex, or V
+	 * @return the position of v's first neighbor
+	 */
+	private long offset(int v)
+	{
+		return offsets[v >>> CHUNK_SHIFT].get(v & CHUNK_MASK);
+	}
+
+	/**
+	 * @param v - a vertex, or V
+	 * @param offset - the position of v's first neighbor
+	 */
+	private void setOffset(int v, long offset)
+	{
+		offsets[v >>> CHUNK_SHIFT].put(v & CHUNK_MASK, offset);
+	}
+
+	/**
+	 * @param i - a position in the neighbor lists
+	 * @param w - the neighbor to store there
+	 */
+	private void setNeighbor(long i, int w)
+	{
+		neighbors[(int) (i >>> CHUNK_SHIFT)].put((int) (i & CHUNK_MASK), w);
+	}
+
+	/**
+	 * @param n - a number of elements
+	 * @return the number of chunks needed to hold them (at least 1)
+	 */
+	private static int chunks(long n)
+	{
+		return (int) Math.max(1, (n + CHUNK_MASK) >>> CHUNK_SHIFT);
+	}
+
+	/**
+	 * Allocate a chunked off-heap long array
+	 * @param n - the number of elements
+	 * @return the chunks
+	 */
+	private static LongBuffer[] allocateLongs(long n)
+	{
+		LongBuffer[] result = new LongBuffer[chunks(n)];
+		for(int c = 0; c < result.length; c++)
+		{
+			long count = Math.max(0, Math.min(1L << CHUNK_SHIFT, n - ((long) c << CHUNK_SHIFT)));
+			result[c] = ByteBuffer.allocateDirect((int) (8 * count)).order(ByteOrder.nativeOrder()).asLongBuffer();
+		}
+		return result;
+	}
+
+	/**
+	 * Allocate a chunked off-heap int array
+	 * @param n - the number of elements
+	 * @return the chunks
+	 */
+	private static IntBuffer[] allocateInts(long n)
+	{
+		IntBuffer[] result = new IntBuffer[chunks(n)];
+		for(int c = 0; c < result.length; c++)
+		{
+			long count = Math.max(0, Math.min(1L << CHUNK_SHIFT, n - ((long) c << CHUNK_SHIFT)));
+			result[c] = ByteBuffer.allocateDirect((int) (4 * count)).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		return result;
+	}
+
+	/**
+	 * Write out a buffer if it has no room for the next value
+	 * @param channel - where to write
+	 * @param buf - the buffer
+	 * @param needed - the bytes needed for the next value
+	 * @return the buffer, ready for more puts
+	 * @throws IOException if the write fails
+	 */
+	private static ByteBuffer drainIfFull(FileChannel channel, ByteBuffer buf, int needed) throws IOException
+	{
+		if(buf.remaining() < needed)
+		{
+			buf.flip();
+			while(buf.hasRemaining())
+			{
+				channel.write(buf);
+			}
+			buf.clear();
+		}
+		return buf;
+	}
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java OffHeapGraph <inFile> <outFile>\n" +
+				"<inFile> = the name of a graph file to convert\n" +
+				"<outFile> = the name of the .csr file to write; the tools map it when its name ends in .csr");
+		System.exit(0);
+	}
+}// end class OffHeapGraph
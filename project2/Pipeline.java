@@ -0,0 +1,243 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run the Regression, ConnectedComponents and TopRank analyses on one
+ * graph with a single load. The graph is read once and shared, read-only,
+ * by all the stages:
+ * 		regression - the degree distribution and its fits
+ * 		components - the connected components
+ * 		degree - the degree centrality ranking of the largest component
+ * 		closeness - the closeness centrality ranking of the largest component
+ * The regression runs alongside the components; the two rankings start
+ * once the components are known, on a compact copy of the largest one,
+ * and run alongside each other. Each stage prints into its own buffer, so
+ * the output is the three tools' output in the usual order, followed by
+ * the time each stage took.
+ * @author Joseph Ville
+ *
+ * Usage: java Pipeline <fileName> [-order <order>] [-topk] [-offheap] [-budget <memoryMB>]
+ * 		  <fileName> = the name of the graph file to be analyzed
+ * 		  -order = relabel vertices for cache locality before the analysis;
+ * 		  		  <order> = degree, rcm or community (same output)
+ * 		  -topk = compute closeness only as far as needed to find the top 40
+ * 		  -offheap = keep the graph in direct buffers outside the Java heap
+ * 		  		  (see OffHeapGraph)
+ * 		  -budget = sort the graph into a temporary .csr file on disk, in at
+ * 		  		  most <memoryMB> MB, for a graph larger than memory
+ * 		  		  (see ExternalGraphBuilder)
+ */
+public class Pipeline
+{
+	private static String fileName;
+	private static String order; // vertex order to relabel by, or null
+	private static boolean topK; // whether to use the pruned top-k closeness search
+	private static boolean offHeap; // whether to keep the graph off the heap
+	private static long memoryMB; // build the graph on disk within this many MB, or 0 to read into memory
+	private static AdjacencyGraph graph; // shared by all stages, never modified
+	private static ConnectedComponents cc; // filled in by the components stage
+	private static TopRank rank = new TopRank(); // shared by the two ranking stages
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length < 1)
+		{
+			usage();
+		}
+		fileName = args[0];
+		for(int a = 1; a < args.length; a++)
+		{
+			if(args[a].equals("-topk"))
+			{
+				topK = true;
+			}
+			else if(args[a].equals("-order") && a + 1 < args.length && Reordering.isMethod(args[a + 1]))
+			{
+				order = args[++a];
+			}
+			else if(args[a].equals("-offheap"))
+			{
+				offHeap = true;
+			}
+			else if(args[a].equals("-budget") && a + 1 < args.length)
+			{
+				try
+				{
+					memoryMB = Long.parseLong(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(memoryMB < 1)
+				{
+					usage();
+				}
+			}
+			else
+			{
+				usage();
+			}
+		}
+
+		long t1 = System.currentTimeMillis();
+		Collaboration collab = new Collaboration();
+		collab.setOffHeap(offHeap);
+		collab.setMemoryBudget(memoryMB << 20);
+		graph = collab.readGraph(fileName);
+		if(order != null)
+		{
+			graph = Reordering.apply(graph, order);
+		}
+		long loadMsec = System.currentTimeMillis() - t1;
+
+		Stage regression = new Stage("regression")
+		{
+			void run(ResultSink out)
+			{
+				Regression regression = new Regression();
+				regression.executeRegressions(Regression.degreeOccurrences(graph), graph.V(), out);
+				regression.printRegressions(out);
+			}
+		};
+		Stage components = new Stage("components")
+		{
+			void run(ResultSink out)
+			{
+				cc = new ConnectedComponents(out);
+				cc.findComponents(graph);
+				cc.printSizes(graph.V(), out);
+				rank.useGraph(TopRank.extractComponent(graph, cc.getLargestComponent()));
+			}
+		};
+		Stage degree = new Stage("degree")
+		{
+			void run(ResultSink out)
+			{
+				ArrayList<Integer> largestCC = cc.getLargestComponent();
+				rank.printDegreeCent(largestCC, Math.min(40, largestCC.size()), out);
+			}
+		};
+		Stage closeness = new Stage("closeness")
+		{
+			void run(ResultSink out)
+			{
+				ArrayList<Integer> largestCC = cc.getLargestComponent();
+				rank.printClosenessCent(largestCC, Math.min(40, largestCC.size()), topK, out);
+			}
+		};
+
+		ExecutorService pool = Executors.newFixedThreadPool(3);
+		try
+		{
+			Future<Stage> regressionDone = pool.submit(regression);
+			pool.submit(components).get();
+			Future<Stage> degreeDone = pool.submit(degree);
+			Future<Stage> closenessDone = pool.submit(closeness);
+			regressionDone.get();
+			degreeDone.get();
+			closenessDone.get();
+		}
+		catch(ExecutionException ex)
+		{
+			System.err.println("A stage failed: " + ex.getCause());
+			System.exit(0);
+		}
+		catch(InterruptedException ex)
+		{
+			System.err.println("The pipeline was interrupted");
+			System.exit(0);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		Stage[] stages = {regression, components, degree, closeness};
+		for(Stage stage : stages)
+		{
+			stage.print(System.out);
+		}
+		System.out.println("Stage\tmsec");
+		System.out.println("load\t" + loadMsec);
+		for(Stage stage : stages)
+		{
+			System.out.println(stage.name + "\t" + stage.msec);
+		}
+		System.out.println("total\t" + (System.currentTimeMillis() - t1));
+	}
+
+	/**
+	 * One analysis over the shared graph, with its own output buffer and
+	 * timing
+	 */
+	private static abstract class Stage implements Callable<Stage>
+	{
+		private String name;
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private long msec; // time taken by run()
+
+		/**
+		 * Construct an object of this class
+		 * @param name - the stage's name in the timing report
+		 */
+		Stage(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Run the analysis
+		 * @param out - where to write its results
+		 */
+		abstract void run(ResultSink out);
+
+		/**
+		 * Run the analysis into this stage's buffer, timing it
+		 * @return this stage
+		 */
+		public Stage call()
+		{
+			long t1 = System.currentTimeMillis();
+			ResultSink out = ResultSink.open("text", buffer);
+			run(out);
+			out.flush();
+			msec = System.currentTimeMillis() - t1;
+			return this;
+		}
+
+		/**
+		 * Copy the stage's results to a stream
+		 * @param out - the stream
+		 */
+		void print(PrintStream out)
+		{
+			out.write(buffer.toByteArray(), 0, buffer.size());
+			out.flush();
+		}
+	}// end class Stage
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java Pipeline <fileName> [-order <order>] [-topk] [-offheap] [-budget <memoryMB>]\n" +
+				"<fileName> = the name of the graph file to be analyzed\n" +
+				"-order = relabel vertices for cache locality; <order> = degree, rcm or community\n" +
+				"-topk = find the top 40 by closeness with BFS cut-offs (same output)\n" +
+				"-offheap = keep the graph in direct buffers outside the Java heap\n" +
+				"-budget = build the graph on disk in at most <memoryMB> MB, for one larger than memory");
+		System.exit(0);
+	}
+}// end class Pipeline
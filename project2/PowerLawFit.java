@@ -0,0 +1,329 @@
+import java.util.Arrays;
+import java.util.TreeMap;
+
+import edu.rit.util.Random;
+
+/**
+ * Fit a discrete power law to a degree distribution by maximum likelihood,
+ * after Clauset, Shalizi and Newman. For every candidate x_min (every
+ * distinct degree but the largest), alpha is estimated from the degrees
+ * at or above x_min with CSN's approximation
+ * 		alpha = 1 + n / sum ln(x / (x_min - 1/2)),
+ * which needs only suffix sums of the counts and the log-degrees, so all
+ * the candidates are had in one pass. The candidate whose fitted tail has
+ * the smallest Kolmogorov-Smirnov distance from the data is chosen; the
+ * KS distances are computed in parallel over the candidates, with the
+ * model's tail from the Hurwitz zeta function.
+ *
+ * Goodness of fit is judged by CSN's semi-parametric bootstrap: each
+ * replicate draws a synthetic data set of the same size, below x_min from
+ * the data and above it from the fitted power law, refits it in full, and
+ * the p-value is the fraction of replicates fitting worse than the data.
+ * The replicates are spread across all cores.
+ * @author Joseph Ville
+ */
+public class PowerLawFit
+{
+	private int[] values; // distinct degrees, ascending
+	private long[] counts; // number of vertices with each degree
+	private long n; // number of vertices
+	private int xMinIndex = -1; // index in values of the fitted x_min, or -1 if no fit
+	private double alpha; // fitted exponent
+	private double ks; // KS distance of the fitted tail from the data
+
+	/**
+	 * Construct an object of this class, fitting the power law
+	 * @param occurrences - map of degrees (at least 1) to the number of
+	 * 		vertices of that degree, as from Regression.degreeOccurrences()
+	 */
+	public PowerLawFit(TreeMap<Integer, Integer> occurrences)
+	{
+		values = new int[occurrences.size()];
+		counts = new long[values.length];
+		int i = 0;
+		for(Integer key : occurrences.keySet())
+		{
+			values[i] = key;
+			counts[i] = occurrences.get(key);
+			n += counts[i];
+			i++;
+		}
+		fit(true);
+	}
+
+	/**
+	 * Construct an object of this class from sorted samples, fitting the
+	 * power law without starting any threads
+	 * @param samples - the degrees, ascending
+	 * @param size - the number of samples
+	 */
+	private PowerLawFit(int[] samples, int size)
+	{
+		int distinct = 0;
+		for(int i = 0; i < size; i++)
+		{
+			if(i == 0 || samples[i] != samples[i - 1])
+			{
+				distinct++;
+			}
+		}
+		values = new int[distinct];
+		counts = new long[distinct];
+		int j = -1;
+		for(int i = 0; i < size; i++)
+		{
+			if(i == 0 || samples[i] != samples[i - 1])
+			{
+				values[++j] = samples[i];
+			}
+			counts[j]++;
+		}
+		n = size;
+		fit(false);
+	}
+
+	/**
+	 * @return true if there were enough distinct degrees to fit
+	 */
+	public boolean hasFit()
+	{
+		return xMinIndex >= 0;
+	}
+
+	/**
+	 * @return the fitted exponent alpha, for pr(d) proportional to d^-alpha
+	 */
+	public double alpha()
+	{
+		return alpha;
+	}
+
+	/**
+	 * @return the standard error of alpha, (alpha - 1) / sqrt(tail size)
+	 */
+	public double alphaError()
+	{
+		return (alpha - 1) / Math.sqrt(tailSize());
+	}
+
+	/**
+	 * @return the fitted lower bound of power-law behaviour
+	 */
+	public int xMin()
+	{
+		return values[xMinIndex];
+	}
+
+	/**
+	 * @return the number of vertices with degree at least x_min
+	 */
+	public long tailSize()
+	{
+		long tail = 0;
+		for(int i = xMinIndex; i < values.length; i++)
+		{
+			tail += counts[i];
+		}
+		return tail;
+	}
+
+	/**
+	 * @return the KS distance between the data and the fitted tail
+	 */
+	public double ks()
+	{
+		return ks;
+	}
+
+	/**
+	 * Estimate the goodness of fit by bootstrap
+	 * @param replicates - the number of synthetic data sets
+	 * @param seed - seed for the random number generators; replicate r
+	 * 		uses seed + r, so the result does not depend on the threads
+	 * @return the fraction of replicates whose KS distance is at least the
+	 * 		data's; the power law is plausible if this is not small
+	 */
+	public double goodnessOfFit(int replicates, final long seed)
+	{
+		if(!hasFit() || replicates <= 0)
+		{
+			return Double.NaN;
+		}
+		final long tail = tailSize();
+		final long below = n - tail;
+		final int xMin = xMin();
+		final double exponent = -1 / (alpha - 1);
+		final long[] cumulative = new long[xMinIndex]; // counts below x_min, summed
+		long sum = 0;
+		for(int i = 0; i < xMinIndex; i++)
+		{
+			sum += counts[i];
+			cumulative[i] = sum;
+		}
+		final int[] worse = new int[1];
+
+		new ParallelLoop()
+		{
+			int[] samples; // per-thread synthetic data set
+			int thrWorse;
+
+			public void start()
+			{
+				samples = new int[(int) n];
+			}
+
+			public void run(int r)
+			{
+				Random prng = new Random(seed + r);
+				for(int i = 0; i < n; i++)
+				{
+					if(prng.nextDouble() * n < tail)
+					{
+						double x = Math.floor((xMin - 0.5) * Math.pow(1 - prng.nextDouble(), exponent) + 0.5);
+						samples[i] = (int) Math.min(x, Integer.MAX_VALUE);
+					}
+					else
+					{
+						long pick = (long) (prng.nextDouble() * below);
+						int k = Arrays.binarySearch(cumulative, pick + 1);
+						samples[i] = values[k >= 0 ? k : -k - 1];
+					}
+				}
+				Arrays.sort(samples);
+				PowerLawFit synthetic = new PowerLawFit(samples, samples.length);
+				if(!synthetic.hasFit() || synthetic.ks >= ks)
+				{
+					thrWorse++;
+				}
+			}
+
+			public void finish()
+			{
+				synchronized(worse)
+				{
+					worse[0] += thrWorse;
+				}
+			}
+		}.exec(0, replicates - 1);
+
+		return (double) worse[0] / replicates;
+	}
+
+	/**
+	 * Fit alpha for every candidate x_min and keep the best
+	 * @param parallel - whether to spread the candidates across cores
+	 */
+	private void fit(boolean parallel)
+	{
+		final int candidates = values.length - 1;
+		if(candidates < 1)
+		{
+			return;
+		}
+
+		// suffix sums: tail size and sum of ln(x) from each distinct degree up
+		long[] tailCount = new long[values.length + 1];
+		double[] tailLog = new double[values.length + 1];
+		for(int i = values.length - 1; i >= 0; i--)
+		{
+			tailCount[i] = tailCount[i + 1] + counts[i];
+			tailLog[i] = tailLog[i + 1] + counts[i] * Math.log(values[i]);
+		}
+		final double[] alphas = new double[candidates];
+		final double[] distances = new double[candidates];
+		for(int j = 0; j < candidates; j++)
+		{
+			double denominator = tailLog[j] - tailCount[j] * Math.log(values[j] - 0.5);
+			alphas[j] = 1 + tailCount[j] / denominator;
+		}
+		final long[] tails = tailCount;
+
+		if(parallel)
+		{
+			new ParallelLoop()
+			{
+				public void run(int j)
+				{
+					distances[j] = ksDistance(j, alphas[j], tails[j]);
+				}
+			}.chunk(4).exec(0, candidates - 1);
+		}
+		else
+		{
+			for(int j = 0; j < candidates; j++)
+			{
+				distances[j] = ksDistance(j, alphas[j], tails[j]);
+			}
+		}
+
+		xMinIndex = 0;
+		for(int j = 1; j < candidates; j++)
+		{
+			if(distances[j] < distances[xMinIndex])
+			{
+				xMinIndex = j;
+			}
+		}
+		alpha = alphas[xMinIndex];
+		ks = distances[xMinIndex];
+	}
+
+	/**
+	 * Find the KS distance between the data at or above a candidate x_min
+	 * and a discrete power law fitted there. Both CDFs are step functions
+	 * on the integers and the data's only steps at its distinct degrees,
+	 * so the largest gap is just before or at one of them.
+	 * @param j - the index in values of x_min
+	 * @param a - the exponent
+	 * @param tail - the number of vertices with degree at least x_min
+	 * @return the KS distance
+	 */
+	private double ksDistance(int j, double a, long tail)
+	{
+		double zMin = hurwitzZeta(a, values[j]);
+		long cum = 0;
+		double distance = 0;
+		double modelBefore = 0; // model CDF just below values[i]
+		for(int i = j; i < values.length; i++)
+		{
+			if(i > j)
+			{
+				modelBefore = values[i] - 1 == values[i - 1] ? modelBefore : 1 - hurwitzZeta(a, values[i]) / zMin;
+			}
+			distance = Math.max(distance, Math.abs((double) cum / tail - modelBefore));
+			cum += counts[i];
+			double modelAt = 1 - hurwitzZeta(a, values[i] + 1.0) / zMin;
+			distance = Math.max(distance, Math.abs((double) cum / tail - modelAt));
+			modelBefore = modelAt;
+		}
+		return distance;
+	}
+
+	/**
+	 * Compute the Hurwitz zeta function, the sum over k >= 0 of (q+k)^-s,
+	 * by summing terms until q+k >= 10 and then using the Euler-Maclaurin
+	 * tail with three Bernoulli terms, good to about 1e-10
+	 * @param s - the exponent, > 1
+	 * @param q - the offset, > 0
+	 * @return zeta(s, q)
+	 */
+	public static double hurwitzZeta(double s, double q)
+	{
+		double sum = 0;
+		while(q < 10)
+		{
+			sum += Math.pow(q, -s);
+			q++;
+		}
+		double qs = Math.pow(q, -s);
+		double q2 = 1 / (q * q);
+		double tail = q * qs / (s - 1) + qs / 2;
+		double term = s * qs / q; // s q^(-s-1)
+		tail += term / 12; // B2 / 2!
+		term *= (s + 1) * (s + 2) * q2;
+		tail -= term / 720; // B4 / 4!
+		term *= (s + 3) * (s + 4) * q2;
+		tail += term / 30240; // B6 / 6!
+		return sum + tail;
+	}
+}// end class PowerLawFit
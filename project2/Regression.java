@@ -1,3 +1,5 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.text.DecimalFormat;
@@ -7,20 +9,29 @@ import edu.rit.numeric.ListXYSeries;
 import edu.rit.numeric.XYSeries;
 
 /**
- * Perform regressions on a graph, and analyze the results
+ * Perform regressions on a graph, and analyze the results. The fits are
+ * kept in the object, so several graphs can be analyzed at once, each
+ * with its own Regression.
  * @author Joseph Ville
  * 
- * Usage: java Regression <fileName>
+ * Usage: java Regression <fileName> [-mle <replicates> <seed>] [-format <format>] [-offheap] [-budget <memoryMB>]
  *		  <fileName> = the name of the graph file to be analyzed
+ *		  -mle = also fit a power law by maximum likelihood (see PowerLawFit)
+ *		  		  <replicates> = bootstrap replicates for its goodness of fit
+ *		  		  <seed> = random seed for the bootstrap
+ *		  -format = how to write the results: text (the default), csv or
+ *		  		  binary (see ResultSink)
+ *		  -offheap = keep the graph in direct buffers outside the Java heap
+ *		  		  (see OffHeapGraph)
+ *		  -budget = sort the graph into a temporary .csr file on disk, in at
+ *		  		  most <memoryMB> MB, for a graph larger than memory
+ *		  		  (see ExternalGraphBuilder)
  *
  */
 public class Regression
 {
-	private static Collaboration collab;
-	private static String fileName;
-	private static Vertex[] vertices;
-	private static XYSeries.Regression expReg;
-	private static XYSeries.Regression powReg;
+	private XYSeries.Regression expReg;
+	private XYSeries.Regression powReg;
 	
 	/**
 	 * Main method for this program
@@ -28,51 +39,157 @@ public class Regression
 	 */
 	public static void main(String[] args)
 	{
-		if(args.length != 1)
+		if(args.length < 1)
 		{
 			usage();
 		}
-		fileName = args[0];
-		collab = new Collaboration();
-		vertices = collab.readFile(fileName);
-		TreeMap<Integer, Integer> occurrences = degreeOccurrences(vertices);
+		String fileName = args[0];
+		int replicates = -1; // bootstrap replicates for the MLE fit, or -1 for no MLE fit
+		long seed = 0; // random seed for the bootstrap
+		String format = "text";
+		boolean offHeap = false;
+		long memoryMB = 0;
+		for(int a = 1; a < args.length; a++)
+		{
+			if(args[a].equals("-mle") && a + 2 < args.length)
+			{
+				try
+				{
+					replicates = Integer.parseInt(args[++a]);
+					seed = Long.parseLong(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(replicates < 0)
+				{
+					usage();
+				}
+			}
+			else if(args[a].equals("-format") && a + 1 < args.length && ResultSink.isFormat(args[a + 1]))
+			{
+				format = args[++a];
+			}
+			else if(args[a].equals("-offheap"))
+			{
+				offHeap = true;
+			}
+			else if(args[a].equals("-budget") && a + 1 < args.length)
+			{
+				try
+				{
+					memoryMB = Long.parseLong(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(memoryMB < 1)
+				{
+					usage();
+				}
+			}
+			else
+			{
+				usage();
+			}
+		}
+		Collaboration collab = new Collaboration();
+		collab.setOffHeap(offHeap);
+		collab.setMemoryBudget(memoryMB << 20);
+		AdjacencyGraph graph = collab.readGraph(fileName);
+		TreeMap<Integer, Integer> occurrences = degreeOccurrences(graph);
 		
-		executeRegressions(occurrences);
+		ResultSink sink = ResultSink.open(format, new FileOutputStream(FileDescriptor.out));
+		Regression regression = new Regression();
+		regression.executeRegressions(occurrences, collab.V(), sink);
+		regression.printRegressions(sink);
+		if(replicates >= 0)
+		{
+			printPowerLawFit(occurrences, replicates, seed, sink);
+		}
+		sink.flush();
+	}
 
+	/**
+	 * Fit a power law by maximum likelihood and print the fit, with its
+	 * bootstrap goodness of fit; the time taken goes to stderr
+	 * @param degreeCounts - map of degrees to the number of occurrences
+	 * @param replicates - the number of bootstrap replicates, 0 for none
+	 * @param seed - random seed for the bootstrap
+	 * @param out - where to print
+	 */
+	public static void printPowerLawFit(TreeMap<Integer, Integer> degreeCounts, int replicates, long seed, ResultSink out)
+	{
+		long t1 = System.currentTimeMillis();
+		PowerLawFit fit = new PowerLawFit(degreeCounts);
+		if(!fit.hasFit())
+		{
+			out.text("Power-law MLE: too few distinct degrees to fit");
+			return;
+		}
+		long t2 = System.currentTimeMillis();
+		MathContext mathContext = new MathContext(5);
+		out.text("Power-law MLE: pr(d) ~ d^-" + new BigDecimal(fit.alpha(), mathContext) +
+				" +/- " + new BigDecimal(fit.alphaError(), mathContext) + " for d >= " + fit.xMin() +
+				" (" + fit.tailSize() + " vertices), KS D = " + new BigDecimal(fit.ks(), mathContext));
+		if(replicates > 0)
+		{
+			double p = fit.goodnessOfFit(replicates, seed);
+			out.text("Goodness of fit: p = " + new BigDecimal(p, mathContext) + " from " + replicates +
+					" bootstrap replicates");
+		}
+		long t3 = System.currentTimeMillis();
+		System.err.println("MLE fit in " + (t2 - t1) + " msec, bootstrap in " + (t3 - t2) + " msec");
+	}
+
+	/**
+	 * Print the fitted power and exponential functions
+	 * @param out - where to print
+	 */
+	public void printRegressions(ResultSink out)
+	{
 		MathContext mathContext = new MathContext(5);
 
 		// power
 		double cP = Math.exp(powReg.a);
-		System.out.print("log pr(d) = " + new BigDecimal(Math.log(cP), mathContext) + " + " + new BigDecimal(powReg.b, mathContext) + " log d");
-		System.out.println(", corr = " + new BigDecimal(powReg.corr, mathContext));
-		System.out.println("pr(d) = " + new BigDecimal(cP, mathContext) + " d^" + new BigDecimal(powReg.b, mathContext));
+		out.text("log pr(d) = " + new BigDecimal(Math.log(cP), mathContext) + " + " + new BigDecimal(powReg.b, mathContext) + " log d" +
+				", corr = " + new BigDecimal(powReg.corr, mathContext));
+		out.text("pr(d) = " + new BigDecimal(cP, mathContext) + " d^" + new BigDecimal(powReg.b, mathContext));
 		
 		// exponential
 		double cE = Math.exp(expReg.a);	
 		double d = Math.exp(expReg.b);
-		System.out.print("log pr(d) = " + new BigDecimal(Math.log(cE), mathContext) + " + " + new BigDecimal(Math.log(d), mathContext) + " d");
-		System.out.println(", corr = " + new BigDecimal(expReg.corr, mathContext));
-		System.out.println("pr(d) = " + new BigDecimal(cE, mathContext) + " * " + new BigDecimal(d, mathContext) + "^d");
+		out.text("log pr(d) = " + new BigDecimal(Math.log(cE), mathContext) + " + " + new BigDecimal(Math.log(d), mathContext) + " d" +
+				", corr = " + new BigDecimal(expReg.corr, mathContext));
+		out.text("pr(d) = " + new BigDecimal(cE, mathContext) + " * " + new BigDecimal(d, mathContext) + "^d");
 	}
 
 	/**
-	 * Performs linear regressions on an exponential function and a power function
+	 * Performs linear regressions on an exponential function and a power
+	 * function, printing the degree distribution
 	 * @param degreeCounts - map of degrees to the number of occurrences
+	 * @param V - the number of vertices in the graph
+	 * @param out - where to print the degree distribution
 	 */
-	public static void executeRegressions(TreeMap<Integer, Integer> degreeCounts)
+	public void executeRegressions(TreeMap<Integer, Integer> degreeCounts, int V, ResultSink out)
 	{
 		ListXYSeries expXYSeries = new ListXYSeries();
 		ListXYSeries powXYSeries = new ListXYSeries();
-		DecimalFormat d = new DecimalFormat("#");
 		DecimalFormat d1 = new DecimalFormat("0.00000E00");
-		System.out.println("d\tcount\tpr");
+		out.startTable("degree distribution", "d", "count", "pr");
 		for(Integer key : degreeCounts.keySet())
 		{
-			double probD = (double)degreeCounts.get(key) / collab.V();
-			System.out.println(key + "\t" + d.format(degreeCounts.get(key)) + "\t" + sFormat(d1.format(probD).toString()));
+			double probD = (double)degreeCounts.get(key) / V;
+			out.cell(key);
+			out.cell(degreeCounts.get(key));
+			out.cell(probD, sFormat(d1.format(probD)));
+			out.endRow();
 			expXYSeries.add(key, Math.log(probD));
 			powXYSeries.add(Math.log(key), Math.log(probD));
 		}
+		out.endTable();
 		expReg = expXYSeries.linearRegression();
 		powReg = powXYSeries.linearRegression();
 	}
@@ -102,6 +219,26 @@ public class Regression
 		return occurrences;
 	}
 	
+	/**
+	 * Find the number of occurrences of each degree in a graph. Vertices
+	 * with no edges are left out, since log 0 is undefined in the fits.
+	 * @param graph
+	 */
+	public static TreeMap<Integer, Integer> degreeOccurrences(AdjacencyGraph graph)
+	{
+		TreeMap<Integer, Integer> occurrences = new TreeMap<Integer, Integer>();
+		for(int v = 0; v < graph.V(); v++)
+		{
+			int degree = graph.degree(v);
+			if(degree > 0)
+			{
+				Integer count = occurrences.get(degree);
+				occurrences.put(degree, count == null ? 1 : count + 1);
+			}
+		}
+		return occurrences;
+	}
+	
 	/**
 	 * Format the given string so that "E"s are "e"s
 	 * @param input - the given string
@@ -117,8 +254,14 @@ public class Regression
 	 */
 	public static void usage()
 	{
-		System.err.println("Usage: java Regression <fileName>\n" +
-				"<fileName> = the name of the graph file to be analyzed");
+		System.err.println("Usage: java Regression <fileName> [-mle <replicates> <seed>] [-format <format>] [-offheap] [-budget <memoryMB>]\n" +
+				"<fileName> = the name of the graph file to be analyzed\n" +
+				"-mle = also fit a power law by maximum likelihood\n" +
+				"<replicates> = bootstrap replicates for its goodness of fit, 0 for none\n" +
+				"<seed> = random seed for the bootstrap\n" +
+				"-format = how to write the results: text (the default), csv or binary\n" +
+				"-offheap = keep the graph in direct buffers outside the Java heap\n" +
+				"-budget = build the graph on disk in at most <memoryMB> MB, for one larger than memory");
 		System.exit(0);
 	}
 }
@@ -0,0 +1,254 @@
+import java.util.Arrays;
+
+/**
+ * Relabel the vertices of a graph so that vertices used together sit
+ * together in memory. Vertex IDs in a graph file come from wherever the
+ * data came from, so a BFS over the original labels jumps randomly
+ * through the neighbor lists. The orders available are:
+ * 		degree - highest degree first, so the hubs share cache lines
+ * 		rcm - reverse Cuthill-McKee, a BFS order that keeps neighbors close
+ * 		community - label propagation communities laid out one after
+ * 			another, in the spirit of Rabbit Order and Gorder
+ * The relabeled graph keeps a mapping back to the original IDs, which the
+ * tools use for their output.
+ * @author Joseph Ville
+ */
+public class Reordering
+{
+	private static final int LP_ROUNDS = 10; // label propagation rounds for community order
+
+	/**
+	 * Relabel a graph by the given method, and report the time taken on stderr
+	 * @param graph - the graph
+	 * @param method - "degree", "rcm" or "community"
+	 * @return the relabeled graph
+	 */
+	public static AdjacencyGraph apply(AdjacencyGraph graph, String method)
+	{
+		long t1 = System.currentTimeMillis();
+		int[] newId;
+		if(method.equals("degree"))
+		{
+			newId = degreeOrder(graph);
+		}
+		else if(method.equals("rcm"))
+		{
+			newId = rcmOrder(graph);
+		}
+		else if(method.equals("community"))
+		{
+			newId = communityOrder(graph);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown vertex order: " + method);
+		}
+		AdjacencyGraph result = graph.relabel(newId);
+		long t2 = System.currentTimeMillis();
+		System.err.println("Reordered " + graph.V() + " vertices by " + method + " in " + (t2 - t1) + " msec");
+		return result;
+	}
+
+	/**
+	 * @param method - the name of an order
+	 * @return true if apply() knows the order
+	 */
+	public static boolean isMethod(String method)
+	{
+		return method.equals("degree") || method.equals("rcm") || method.equals("community");
+	}
+
+	/**
+	 * Order vertices by descending degree, ties by vertex number
+	 * @param graph - the graph
+	 * @return the new ID of each vertex
+	 */
+	public static int[] degreeOrder(AdjacencyGraph graph)
+	{
+		int V = graph.V();
+		long[] keys = new long[V];
+		for(int v = 0; v < V; v++)
+		{
+			keys[v] = ((long) (Integer.MAX_VALUE - graph.degree(v)) << 32) | v;
+		}
+		return idsInKeyOrder(keys);
+	}
+
+	/**
+	 * Order vertices by reverse Cuthill-McKee: a BFS from a lowest-degree
+	 * vertex of each component, visiting each vertex's new neighbors in
+	 * increasing degree, and the whole order reversed
+	 * @param graph - the graph
+	 * @return the new ID of each vertex
+	 */
+	public static int[] rcmOrder(AdjacencyGraph graph)
+	{
+		int V = graph.V();
+		NeighborIterator it = graph.neighborIterator();
+
+		// start each component from its lowest-degree vertex
+		long[] keys = new long[V];
+		for(int v = 0; v < V; v++)
+		{
+			keys[v] = ((long) graph.degree(v) << 32) | v;
+		}
+		Arrays.sort(keys);
+
+		boolean[] seen = new boolean[V];
+		int[] queue = new int[V];
+		long[] batch = new long[V]; // new neighbors of one vertex, keyed by degree
+		int tail = 0;
+		for(int k = 0; k < V; k++)
+		{
+			int start = (int) keys[k];
+			if(seen[start])
+			{
+				continue;
+			}
+			seen[start] = true;
+			int head = tail;
+			queue[tail++] = start;
+			while(head < tail)
+			{
+				int a = queue[head++];
+				int n = 0;
+				it.start(a);
+				for(int b = it.next(); b >= 0; b = it.next())
+				{
+					if(!seen[b])
+					{
+						seen[b] = true;
+						batch[n++] = ((long) graph.degree(b) << 32) | b;
+					}
+				}
+				Arrays.sort(batch, 0, n);
+				for(int i = 0; i < n; i++)
+				{
+					queue[tail++] = (int) batch[i];
+				}
+			}
+		}
+
+		int[] newId = new int[V];
+		for(int i = 0; i < V; i++)
+		{
+			newId[queue[i]] = V - 1 - i;
+		}
+		return newId;
+	}
+
+	/**
+	 * Order vertices by community: after a few rounds of label propagation,
+	 * in which each vertex takes the label most common among its neighbors,
+	 * vertices with the same label are grouped together. Larger communities come first,
+	 * and within a community vertices are in descending degree.
+	 * @param graph - the graph
+	 * @return the new ID of each vertex
+	 */
+	public static int[] communityOrder(AdjacencyGraph graph)
+	{
+		int V = graph.V();
+		NeighborIterator it = graph.neighborIterator();
+		int[] label = new int[V];
+		for(int v = 0; v < V; v++)
+		{
+			label[v] = v;
+		}
+
+		int[] votes = new int[V]; // votes per label, for one vertex at a time
+		int[] touched = new int[V]; // labels with nonzero votes
+		for(int round = 0; round < LP_ROUNDS; round++)
+		{
+			boolean changed = false;
+			for(int v = 0; v < V; v++)
+			{
+				int n = 0;
+				it.start(v);
+				for(int w = it.next(); w >= 0; w = it.next())
+				{
+					int l = label[w];
+					if(votes[l]++ == 0)
+					{
+						touched[n++] = l;
+					}
+				}
+				int best = label[v];
+				int bestVotes = 0;
+				for(int i = 0; i < n; i++)
+				{
+					int l = touched[i];
+					if(votes[l] > bestVotes || (votes[l] == bestVotes && l < best))
+					{
+						best = l;
+						bestVotes = votes[l];
+					}
+					votes[l] = 0;
+				}
+				if(best != label[v])
+				{
+					label[v] = best;
+					changed = true;
+				}
+			}
+			if(!changed)
+			{
+				break;
+			}
+		}
+
+		int[] size = new int[V];
+		for(int v = 0; v < V; v++)
+		{
+			size[label[v]]++;
+		}
+		// rank communities by descending size, ties by label
+		long[] communityKeys = new long[V];
+		for(int l = 0; l < V; l++)
+		{
+			communityKeys[l] = ((long) (Integer.MAX_VALUE - size[l]) << 32) | l;
+		}
+		int[] communityRank = idsInKeyOrder(communityKeys);
+
+		// counting sort by community rank, taking vertices in descending
+		// degree order so that order holds within each community
+		int[] byDegree = degreeOrder(graph);
+		int[] inDegreeOrder = new int[V];
+		for(int v = 0; v < V; v++)
+		{
+			inDegreeOrder[byDegree[v]] = v;
+		}
+		int[] start = new int[V + 1];
+		for(int v = 0; v < V; v++)
+		{
+			start[communityRank[label[v]] + 1]++;
+		}
+		for(int r = 0; r < V; r++)
+		{
+			start[r + 1] += start[r];
+		}
+		int[] newId = new int[V];
+		for(int i = 0; i < V; i++)
+		{
+			int v = inDegreeOrder[i];
+			newId[v] = start[communityRank[label[v]]]++;
+		}
+		return newId;
+	}
+
+	/**
+	 * Sort keys of the form (key << 32 | index) and number the indexes in
+	 * sorted order
+	 * @param keys - the packed keys; sorted in place
+	 * @return for each index, its position in sorted order
+	 */
+	private static int[] idsInKeyOrder(long[] keys)
+	{
+		Arrays.sort(keys);
+		int[] newId = new int[keys.length];
+		for(int i = 0; i < keys.length; i++)
+		{
+			newId[(int) keys[i]] = i;
+		}
+		return newId;
+	}
+}// end class Reordering
@@ -0,0 +1,678 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Where the analysis tools write their results: free-form lines of text,
+ * and tables written a row at a time, cell by cell. Numbers are encoded
+ * straight into one large direct buffer, which goes to the output channel
+ * only when it fills up or on flush(), so writing millions of rows costs
+ * no String building and few system calls. Three formats:
+ * 		text - the tools' usual tab-separated output
+ * 		csv - comma-separated tables, each under a "# title" comment line,
+ * 			with the free-form lines as comments too
+ * 		binary - little-endian and columnar: each table is written in
+ * 			groups of up to GROUP rows, each group one column after another
+ *
+ * The binary layout is an int magic (MAGIC), then records, each starting
+ * with one type byte; a string is an int byte count and its UTF-8 bytes:
+ * 		'T' string - a line of text
+ * 		'H' string title, int columns, column name strings - a table header
+ * 		'G' int rows, then for each column a type byte and the column:
+ * 			'I' int32s, 'F' float32s, 'D' float64s or 'S' strings
+ * 		'E' - the end of a table
+ * @author Joseph Ville
+ */
+public abstract class ResultSink
+{
+	public static final int MAGIC = 0x31534552; // "RES1" little-endian
+	public static final int GROUP = 1 << 16; // rows per binary row group
+	private static final int BUFFER = 1 << 20; // bytes buffered before each write
+
+	private OutputStream out;
+	private WritableByteChannel channel;
+	private ByteBuffer buffer;
+
+	/**
+	 * Construct an object of this class
+	 * @param out - where the results go
+	 */
+	protected ResultSink(OutputStream out)
+	{
+		this.out = out;
+		channel = Channels.newChannel(out); // a FileOutputStream's own channel
+		buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * @param format - a format name
+	 * @return true if it is text, csv or binary
+	 */
+	public static boolean isFormat(String format)
+	{
+		return format.equals("text") || format.equals("csv") || format.equals("binary");
+	}
+
+	/**
+	 * Open a sink
+	 * @param format - text, csv or binary
+	 * @param out - where the results go
+	 * @return the sink
+	 */
+	public static ResultSink open(String format, OutputStream out)
+	{
+		if(format.equals("text"))
+		{
+			return new TextSink(out);
+		}
+		if(format.equals("csv"))
+		{
+			return new CsvSink(out);
+		}
+		if(format.equals("binary"))
+		{
+			return new BinarySink(out);
+		}
+		throw new IllegalArgumentException("Unknown result format: " + format);
+	}
+
+	/**
+	 * Write a line of text
+	 * @param line - the line, without a line end
+	 */
+	public abstract void text(String line);
+
+	/**
+	 * Start a table
+	 * @param title - what the table holds
+	 * @param columns - the column names
+	 */
+	public abstract void startTable(String title, String... columns);
+
+	/**
+	 * Start a table of groups and their members, to be written by list()
+	 * @param title - what the table holds
+	 * @param keyColumn - the name of the groups' key, e.g. "Comp"
+	 * @param valueColumn - the name of the members, e.g. "Vertex"
+	 */
+	public void startList(String title, String keyColumn, String valueColumn)
+	{
+		startTable(title, keyColumn, valueColumn);
+	}
+
+	/**
+	 * Write an int cell of the current row
+	 * @param value - the value
+	 */
+	public abstract void cell(int value);
+
+	/**
+	 * Write a float cell of the current row
+	 * @param value - the value
+	 */
+	public abstract void cell(float value);
+
+	/**
+	 * Write a double cell of the current row, which the text format shows
+	 * as given
+	 * @param value - the value
+	 * @param text - the value as the text format shows it
+	 */
+	public abstract void cell(double value, String text);
+
+	/**
+	 * Write a string cell of the current row
+	 * @param value - the value
+	 */
+	public abstract void cell(String value);
+
+	/**
+	 * End the current row
+	 */
+	public abstract void endRow();
+
+	/**
+	 * End the current table
+	 */
+	public abstract void endTable();
+
+	/**
+	 * Write the members of one group, e.g. the vertices of a component,
+	 * as rows (key, value) of the table started by startList(). The text
+	 * format shows them as one line, "<keyColumn> <key> = <value> ... ".
+	 * @param key - the group's key
+	 * @param values - the members
+	 * @param n - the number of members
+	 */
+	public void list(int key, int[] values, int n)
+	{
+		for(int i = 0; i < n; i++)
+		{
+			cell(key);
+			cell(values[i]);
+			endRow();
+		}
+	}
+
+	/**
+	 * Write out everything buffered so far
+	 */
+	public void flush()
+	{
+		drain();
+		try
+		{
+			out.flush();
+		}
+		catch(IOException ex)
+		{
+			throw new UncheckedIOException("Could not write the results", ex);
+		}
+	}
+
+	/**
+	 * Append a byte
+	 * @param b - the byte
+	 */
+	protected void put(byte b)
+	{
+		if(!buffer.hasRemaining())
+		{
+			drain();
+		}
+		buffer.put(b);
+	}
+
+	/**
+	 * Append an int in binary
+	 * @param value - the int
+	 */
+	protected void putInt(int value)
+	{
+		if(buffer.remaining() < 4)
+		{
+			drain();
+		}
+		buffer.putInt(value);
+	}
+
+	/**
+	 * Append a float in binary
+	 * @param value - the float
+	 */
+	protected void putFloat(float value)
+	{
+		if(buffer.remaining() < 4)
+		{
+			drain();
+		}
+		buffer.putFloat(value);
+	}
+
+	/**
+	 * Append a double in binary
+	 * @param value - the double
+	 */
+	protected void putDouble(double value)
+	{
+		if(buffer.remaining() < 8)
+		{
+			drain();
+		}
+		buffer.putDouble(value);
+	}
+
+	/**
+	 * Append the characters of a string, in UTF-8
+	 * @param s - the string
+	 */
+	protected void putChars(String s)
+	{
+		int n = s.length();
+		for(int i = 0; i < n; i++)
+		{
+			char c = s.charAt(i);
+			if(c >= 128)
+			{
+				putBytes(s.substring(i).getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			put((byte) c);
+		}
+	}
+
+	/**
+	 * Append an int in decimal, without making a String
+	 * @param value - the int
+	 */
+	protected void putDecimal(int value)
+	{
+		if(buffer.remaining() < 11)
+		{
+			drain();
+		}
+		long v = value;
+		if(v < 0)
+		{
+			buffer.put((byte) '-');
+			v = -v;
+		}
+		int digits = 1;
+		for(long p = 10; p <= v; p *= 10)
+		{
+			digits++;
+		}
+		int end = buffer.position() + digits;
+		for(int i = end - 1; i >= end - digits; i--)
+		{
+			buffer.put(i, (byte) ('0' + v % 10));
+			v /= 10;
+		}
+		buffer.position(end);
+	}
+
+	/**
+	 * Append a string in binary, as its UTF-8 byte count and bytes
+	 * @param s - the string
+	 */
+	protected void putString(String s)
+	{
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		putInt(bytes.length);
+		putBytes(bytes);
+	}
+
+	/**
+	 * Append bytes
+	 * @param bytes - the bytes
+	 */
+	private void putBytes(byte[] bytes)
+	{
+		int i = 0;
+		while(i < bytes.length)
+		{
+			if(!buffer.hasRemaining())
+			{
+				drain();
+			}
+			int n = Math.min(buffer.remaining(), bytes.length - i);
+			buffer.put(bytes, i, n);
+			i += n;
+		}
+	}
+
+	/**
+	 * Write the buffer to the channel and empty it
+	 */
+	private void drain()
+	{
+		buffer.flip();
+		try
+		{
+			while(buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+		}
+		catch(IOException ex)
+		{
+			throw new UncheckedIOException("Could not write the results", ex);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * The tools' usual output: tab-separated cells, one row per line
+	 */
+	private static class TextSink extends ResultSink
+	{
+		private boolean firstCell = true; // no tab before the next cell
+		private String listLabel; // key column name of the list being written
+
+		/**
+		 * Construct an object of this class
+		 * @param out - where the results go
+		 */
+		TextSink(OutputStream out)
+		{
+			super(out);
+		}
+
+		public void text(String line)
+		{
+			putChars(line);
+			put((byte) '\n');
+		}
+
+		public void startTable(String title, String... columns)
+		{
+			for(int c = 0; c < columns.length; c++)
+			{
+				cell(columns[c]);
+			}
+			endRow();
+		}
+
+		public void startList(String title, String keyColumn, String valueColumn)
+		{
+			listLabel = keyColumn;
+		}
+
+		public void cell(int value)
+		{
+			separate();
+			putDecimal(value);
+		}
+
+		public void cell(float value)
+		{
+			separate();
+			putChars(Float.toString(value));
+		}
+
+		public void cell(double value, String text)
+		{
+			separate();
+			putChars(text);
+		}
+
+		public void cell(String value)
+		{
+			separate();
+			putChars(value);
+		}
+
+		public void endRow()
+		{
+			put((byte) '\n');
+			firstCell = true;
+		}
+
+		public void endTable()
+		{
+		}
+
+		public void list(int key, int[] values, int n)
+		{
+			putChars(listLabel);
+			put((byte) ' ');
+			putDecimal(key);
+			putChars(" = ");
+			for(int i = 0; i < n; i++)
+			{
+				putDecimal(values[i]);
+				put((byte) ' ');
+			}
+			put((byte) '\n');
+		}
+
+		/**
+		 * Put a tab before every cell but the first of its row
+		 */
+		private void separate()
+		{
+			if(!firstCell)
+			{
+				put((byte) '\t');
+			}
+			firstCell = false;
+		}
+	}// end class TextSink
+
+	/**
+	 * Comma-separated tables, each under a "# title" line, with the free-
+	 * form lines as "# " comments. Doubles are written in full, not as
+	 * the text format shows them.
+	 */
+	private static class CsvSink extends ResultSink
+	{
+		private boolean firstCell = true; // no comma before the next cell
+
+		/**
+		 * Construct an object of this class
+		 * @param out - where the results go
+		 */
+		CsvSink(OutputStream out)
+		{
+			super(out);
+		}
+
+		public void text(String line)
+		{
+			putChars("# ");
+			putChars(line);
+			put((byte) '\n');
+		}
+
+		public void startTable(String title, String... columns)
+		{
+			text(title);
+			for(int c = 0; c < columns.length; c++)
+			{
+				cell(columns[c]);
+			}
+			endRow();
+		}
+
+		public void cell(int value)
+		{
+			separate();
+			putDecimal(value);
+		}
+
+		public void cell(float value)
+		{
+			separate();
+			putChars(Float.toString(value));
+		}
+
+		public void cell(double value, String text)
+		{
+			separate();
+			putChars(Double.toString(value));
+		}
+
+		public void cell(String value)
+		{
+			separate();
+			if(value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0)
+			{
+				putChars("\"" + value.replace("\"", "\"\"") + "\"");
+			}
+			else
+			{
+				putChars(value);
+			}
+		}
+
+		public void endRow()
+		{
+			put((byte) '\n');
+			firstCell = true;
+		}
+
+		public void endTable()
+		{
+		}
+
+		/**
+		 * Put a comma before every cell but the first of its row
+		 */
+		private void separate()
+		{
+			if(!firstCell)
+			{
+				put((byte) ',');
+			}
+			firstCell = false;
+		}
+	}// end class CsvSink
+
+	/**
+	 * The binary columnar format. Each table's rows are kept column by
+	 * column, GROUP rows at a time, and each full group is written as one
+	 * 'G' record; a column's type is set by its first cell in the group.
+	 */
+	private static class BinarySink extends ResultSink
+	{
+		private Column[] columns; // the current table's columns, or null
+		private int rows; // rows held in the current group
+		private int c; // column of the next cell
+
+		/**
+		 * Construct an object of this class
+		 * @param out - where the results go
+		 */
+		BinarySink(OutputStream out)
+		{
+			super(out);
+			putInt(MAGIC);
+		}
+
+		public void text(String line)
+		{
+			put((byte) 'T');
+			putString(line);
+		}
+
+		public void startTable(String title, String... names)
+		{
+			put((byte) 'H');
+			putString(title);
+			putInt(names.length);
+			for(String name : names)
+			{
+				putString(name);
+			}
+			columns = new Column[names.length];
+			for(int i = 0; i < names.length; i++)
+			{
+				columns[i] = new Column();
+			}
+			rows = 0;
+			c = 0;
+		}
+
+		public void cell(int value)
+		{
+			next('I').ints[rows] = value;
+		}
+
+		public void cell(float value)
+		{
+			next('F').floats[rows] = value;
+		}
+
+		public void cell(double value, String text)
+		{
+			next('D').doubles[rows] = value;
+		}
+
+		public void cell(String value)
+		{
+			next('S').strings[rows] = value;
+		}
+
+		public void endRow()
+		{
+			if(c != columns.length)
+			{
+				throw new IllegalStateException("Row has " + c + " cells, table has " + columns.length + " columns");
+			}
+			c = 0;
+			if(++rows == GROUP)
+			{
+				writeGroup();
+			}
+		}
+
+		public void endTable()
+		{
+			if(rows > 0)
+			{
+				writeGroup();
+			}
+			put((byte) 'E');
+			columns = null;
+		}
+
+		/**
+		 * @param type - the type of the next cell
+		 * @return the column it goes in, with room for it
+		 */
+		private Column next(char type)
+		{
+			if(c == columns.length)
+			{
+				throw new IllegalStateException("More cells than columns in a row");
+			}
+			Column column = columns[c++];
+			if(rows == 0)
+			{
+				column.setType(type);
+			}
+			else if(column.type != type)
+			{
+				throw new IllegalStateException("Column holds '" + column.type + "', not '" + type + "'");
+			}
+			return column;
+		}
+
+		/**
+		 * Write the rows held as one row group, column by column
+		 */
+		private void writeGroup()
+		{
+			put((byte) 'G');
+			putInt(rows);
+			for(Column column : columns)
+			{
+				put((byte) column.type);
+				for(int r = 0; r < rows; r++)
+				{
+					switch(column.type)
+					{
+						case 'I': putInt(column.ints[r]); break;
+						case 'F': putFloat(column.floats[r]); break;
+						case 'D': putDouble(column.doubles[r]); break;
+						default: putString(column.strings[r]);
+					}
+				}
+			}
+			rows = 0;
+		}
+	}// end class BinarySink
+
+	/**
+	 * One column of a binary row group
+	 */
+	private static class Column
+	{
+		private char type; // 'I', 'F', 'D' or 'S'
+		private int[] ints;
+		private float[] floats;
+		private double[] doubles;
+		private String[] strings;
+
+		/**
+		 * Set the column's type, making room for a group of that type
+		 * @param type - the type
+		 */
+		void setType(char type)
+		{
+			this.type = type;
+			switch(type)
+			{
+				case 'I': ints = ints == null ? new int[GROUP] : ints; break;
+				case 'F': floats = floats == null ? new float[GROUP] : floats; break;
+				case 'D': doubles = doubles == null ? new double[GROUP] : doubles; break;
+				default: strings = strings == null ? new String[GROUP] : strings;
+			}
+		}
+	}// end class Column
+}// end class ResultSink
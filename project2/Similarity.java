@@ -0,0 +1,528 @@
+import java.text.DecimalFormat;
+import java.util.Arrays;
+
+import edu.rit.util.Random;
+
+/**
+ * Find the most similar collaborators of every vertex, by the Jaccard
+ * similarity of their neighbor sets, |N(v) & N(w)| / |N(v) | N(w)|,
+ * without comparing all pairs. Each vertex gets a MinHash signature of
+ * bands x rows values, the minimum of a random hash over its neighbors
+ * for each value; two vertices agree on a value with probability equal
+ * to their Jaccard similarity. The signature is cut into bands of rows
+ * values, and vertices that agree on a whole band land in the same
+ * bucket and become candidates. A pair with similarity s is a candidate
+ * with probability 1 - (1 - s^rows)^bands, an S-curve that rises around
+ * s = (1/bands)^(1/rows): more bands raise the recall, more rows cut the
+ * candidates. Every candidate is then verified exactly by merging the
+ * two sorted neighbor lists, and the k best are kept.
+ *
+ * The signatures take one pass over the arcs, the buckets one sort per
+ * band, and the verification one merge per candidate pair. A bucket of
+ * many vertices with the same band (e.g. many vertices whose only
+ * neighbor is the same hub) would give quadratically many pairs, so each
+ * vertex is only compared with the WINDOW nearest members of its bucket
+ * on each side. All phases are spread across all cores.
+ *
+ * Self-loops and duplicate edges are ignored, as in Clustering.
+ * @author Joseph Ville
+ *
+ * Usage: java Similarity <fileName> <k> <bands> <rows> <seed> [-recall <samples>]
+ * 		  <fileName> = the name of the graph file to be analyzed
+ * 		  <k> = the number of most similar vertices to find for each vertex
+ * 		  <bands> = the number of LSH bands
+ * 		  <rows> = the number of MinHash values per band
+ * 		  <seed> = seed for the hash functions
+ * 		  -recall = check the results against an exact search from
+ * 		  		  <samples> randomly chosen vertices
+ */
+public class Similarity
+{
+	private static final int WINDOW = 100; // most bucket members compared on each side
+
+	private AdjacencyGraph graph;
+	private int V; // number of vertices
+	private int k; // similar vertices kept per vertex
+	private int bands; // LSH bands
+	private int rows; // MinHash values per band
+	private long seed; // hash seed
+	private int[] start; // start of each vertex's neighbor set in adj, V+1 entries
+	private int[] adj; // sorted, distinct neighbors of each vertex, without itself
+	private long[][] buckets; // for each band, (bucket << 32 | vertex) in ascending order
+	private int[][] position; // for each band, the index of each vertex in buckets, or -1
+	private int[] similar; // the k most similar vertices of each vertex, or -1
+	private float[] jaccard; // their similarities
+	private long candidates; // candidate pairs verified, each counted from both ends
+
+	/**
+	 * Main method for this program
+	 * @param args - the command line arguments
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length != 5 && !(args.length == 7 && args[5].equals("-recall")))
+		{
+			usage();
+		}
+		int k = 0;
+		int bands = 0;
+		int rows = 0;
+		long seed = 0;
+		int samples = 0;
+		try
+		{
+			k = Integer.parseInt(args[1]);
+			bands = Integer.parseInt(args[2]);
+			rows = Integer.parseInt(args[3]);
+			seed = Long.parseLong(args[4]);
+			if(args.length == 7)
+			{
+				samples = Integer.parseInt(args[6]);
+			}
+		}
+		catch(NumberFormatException nfe)
+		{
+			usage();
+		}
+		if(k < 1 || bands < 1 || rows < 1 || samples < 0)
+		{
+			usage();
+		}
+
+		AdjacencyGraph graph = new Collaboration().readGraph(args[0]);
+		long t1 = System.currentTimeMillis();
+		Similarity similarity = new Similarity(graph, k, bands, rows, seed);
+		long t2 = System.currentTimeMillis();
+		System.err.println("Verified " + similarity.candidates + " candidate pairs in " + (t2 - t1) + " msec" +
+				" (similarity threshold about " + (float) Math.pow(1.0 / bands, 1.0 / rows) + ")");
+		if(samples > 0)
+		{
+			System.err.println("Recall on " + Math.min(samples, graph.V()) + " sampled vertices = " +
+					(float) similarity.recall(samples, seed));
+		}
+
+		DecimalFormat df = new DecimalFormat("0.#####");
+		StringBuilder line = new StringBuilder();
+		System.out.println("Vertex\tRank\tSimilar\tJaccard");
+		for(int id = 0; id < graph.V(); id++)
+		{
+			int v = graph.vertexOf(id);
+			for(int i = 0; i < k && similarity.similar[v * k + i] >= 0; i++)
+			{
+				line.setLength(0);
+				line.append(id).append('\t').append(i + 1).append('\t')
+					.append(graph.originalId(similarity.similar[v * k + i])).append('\t')
+					.append(df.format(similarity.jaccard[v * k + i]));
+				System.out.println(line);
+			}
+		}
+	}
+
+	/**
+	 * Construct an object of this class, finding the k most similar
+	 * vertices of every vertex
+	 * @param graph - the graph
+	 * @param k - the number of similar vertices to keep per vertex
+	 * @param bands - the number of LSH bands
+	 * @param rows - the number of MinHash values per band
+	 * @param seed - seed for the hash functions
+	 */
+	public Similarity(AdjacencyGraph graph, int k, int bands, int rows, long seed)
+	{
+		if(k < 1 || bands < 1 || rows < 1)
+		{
+			throw new IllegalArgumentException("Need k, bands and rows >= 1");
+		}
+		if((long) graph.V() * k > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Too many vertices for k = " + k);
+		}
+		this.graph = graph;
+		this.V = graph.V();
+		this.k = k;
+		this.bands = bands;
+		this.rows = rows;
+		this.seed = seed;
+		neighborSets();
+		signatures();
+		sortBuckets();
+		verify();
+	}
+
+	/**
+	 * @param v - a vertex
+	 * @param i - a rank, 0 to k-1
+	 * @return the vertex with the i+1-th highest similarity to v, or -1
+	 * 		if fewer than i+1 vertices share a neighbor with v
+	 */
+	public int similar(int v, int i)
+	{
+		return similar[v * k + i];
+	}
+
+	/**
+	 * @param v - a vertex
+	 * @param i - a rank, 0 to k-1
+	 * @return the Jaccard similarity of v and similar(v, i)
+	 */
+	public float jaccard(int v, int i)
+	{
+		return jaccard[v * k + i];
+	}
+
+	/**
+	 * Compare the results with an exact search, which finds every vertex
+	 * two steps away from a sample of vertices and ranks them all
+	 * @param samples - the number of vertices to check
+	 * @param seed - seed for choosing them
+	 * @return the fraction of the exact top-k similarities that were found
+	 */
+	public double recall(int samples, long seed)
+	{
+		Random prng = new Random(seed);
+		int[] mark = new int[V];
+		Arrays.fill(mark, -1);
+		int[] found = new int[V];
+		float[] bestJ = new float[k];
+		int[] bestW = new int[k];
+		long wanted = 0;
+		long hits = 0;
+		for(int s = 0; s < Math.min(samples, V); s++)
+		{
+			int v = samples >= V ? s : prng.nextInt(V);
+			int count = 0;
+			int n = 0;
+			for(int a = start[v]; a < start[v + 1]; a++)
+			{
+				int u = adj[a];
+				for(int b = start[u]; b < start[u + 1]; b++)
+				{
+					int w = adj[b];
+					if(w != v && mark[w] != s)
+					{
+						mark[w] = s;
+						found[n++] = w;
+					}
+				}
+			}
+			for(int i = 0; i < n; i++)
+			{
+				count = offer(bestW, bestJ, count, found[i], exactJaccard(v, found[i]));
+			}
+			// compare by value, so that ties at the k-th place do not count
+			// against the result
+			for(int i = 0; i < count; i++)
+			{
+				wanted++;
+				if(similar[v * k + i] >= 0 && jaccard[v * k + i] >= bestJ[i])
+				{
+					hits++;
+				}
+			}
+		}
+		return wanted == 0 ? 1.0 : (double) hits / wanted;
+	}
+
+	/**
+	 * Copy the neighbor lists, then sort them and remove duplicates and
+	 * self-loops in parallel, compacting each list in place
+	 */
+	private void neighborSets()
+	{
+		if(graph.arcs() > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Too many edges for similarity search: " + graph.arcs());
+		}
+		final int[] begin = new int[V + 1];
+		adj = new int[(int) graph.arcs()];
+		NeighborIterator it = graph.neighborIterator();
+		int i = 0;
+		for(int v = 0; v < V; v++)
+		{
+			it.start(v);
+			for(int w = it.next(); w >= 0; w = it.next())
+			{
+				adj[i++] = w;
+			}
+			begin[v + 1] = i;
+		}
+
+		final int[] size = new int[V];
+		new ParallelLoop()
+		{
+			public void run(int v)
+			{
+				Arrays.sort(adj, begin[v], begin[v + 1]);
+				int end = begin[v];
+				for(int a = begin[v]; a < begin[v + 1]; a++)
+				{
+					if(adj[a] != v && (end == begin[v] || adj[end - 1] != adj[a]))
+					{
+						adj[end++] = adj[a];
+					}
+				}
+				size[v] = end - begin[v];
+			}
+		}.chunk(256).exec(0, V - 1);
+
+		start = new int[V + 1];
+		for(int v = 0; v < V; v++)
+		{
+			System.arraycopy(adj, begin[v], adj, start[v], size[v]);
+			start[v + 1] = start[v] + size[v];
+		}
+	}
+
+	/**
+	 * Compute each vertex's MinHash signature, and from it the bucket of
+	 * each of its bands. Each neighbor is hashed once with a 64-bit mix,
+	 * and the bands x rows hash functions are multiply-shift hashes of
+	 * that value, with random odd multipliers.
+	 */
+	private void signatures()
+	{
+		final int h = bands * rows;
+		final long[] multiplier = new long[h];
+		final long[] increment = new long[h];
+		Random prng = new Random(seed);
+		for(int i = 0; i < h; i++)
+		{
+			multiplier[i] = prng.nextLong() | 1;
+			increment[i] = prng.nextLong();
+		}
+		buckets = new long[bands][V];
+
+		new ParallelLoop()
+		{
+			int[] signature; // per-thread signature buffer
+
+			public void start()
+			{
+				signature = new int[h];
+			}
+
+			public void run(int v)
+			{
+				if(start[v] == start[v + 1])
+				{
+					for(int j = 0; j < bands; j++)
+					{
+						buckets[j][v] = -1; // no neighbors, no bucket
+					}
+					return;
+				}
+				Arrays.fill(signature, Integer.MAX_VALUE);
+				for(int a = start[v]; a < start[v + 1]; a++)
+				{
+					long x = mix(graph.originalId(adj[a]) ^ seed);
+					for(int i = 0; i < h; i++)
+					{
+						int value = (int) ((x * multiplier[i] + increment[i]) >>> 33);
+						if(value < signature[i])
+						{
+							signature[i] = value;
+						}
+					}
+				}
+				for(int j = 0; j < bands; j++)
+				{
+					long key = j;
+					for(int r = j * rows; r < (j + 1) * rows; r++)
+					{
+						key = mix(key * 31 + signature[r]);
+					}
+					buckets[j][v] = (key >>> 33) << 32 | v;
+				}
+			}
+		}.chunk(256).exec(0, V - 1);
+	}
+
+	/**
+	 * Sort each band's (bucket, vertex) keys so that each bucket's members
+	 * are adjacent, and record where each vertex ended up
+	 */
+	private void sortBuckets()
+	{
+		position = new int[bands][V];
+		new ParallelLoop()
+		{
+			public void run(int j)
+			{
+				long[] keys = buckets[j];
+				Arrays.sort(keys);
+				Arrays.fill(position[j], -1);
+				for(int i = 0; i < V; i++)
+				{
+					if(keys[i] >= 0)
+					{
+						position[j][(int) keys[i]] = i;
+					}
+				}
+			}
+		}.exec(0, bands - 1);
+	}
+
+	/**
+	 * Verify every vertex's candidates, in parallel over vertices, and
+	 * keep the k most similar. Each pair is verified from both ends, so no
+	 * result is shared between threads.
+	 */
+	private void verify()
+	{
+		similar = new int[V * k];
+		jaccard = new float[V * k];
+		Arrays.fill(similar, -1);
+		final long[] total = new long[1];
+		new ParallelLoop()
+		{
+			int[] seen; // candidate stamp of each vertex
+			int[] bestW; // the best candidates so far
+			float[] bestJ; // and their similarities
+			long thrCandidates;
+
+			public void start()
+			{
+				seen = new int[V];
+				Arrays.fill(seen, -1);
+				bestW = new int[k];
+				bestJ = new float[k];
+			}
+
+			public void run(int v)
+			{
+				int count = 0;
+				for(int j = 0; j < bands; j++)
+				{
+					int p = position[j][v];
+					if(p < 0)
+					{
+						continue;
+					}
+					long[] keys = buckets[j];
+					long bucket = keys[p] >>> 32;
+					int lo = Math.max(0, p - WINDOW);
+					int hi = Math.min(V - 1, p + WINDOW);
+					for(int q = lo; q <= hi; q++)
+					{
+						int w = (int) keys[q];
+						if(q == p || keys[q] >>> 32 != bucket || seen[w] == v)
+						{
+							continue;
+						}
+						seen[w] = v;
+						thrCandidates++;
+						float s = exactJaccard(v, w);
+						if(s > 0)
+						{
+							count = offer(bestW, bestJ, count, w, s);
+						}
+					}
+				}
+				System.arraycopy(bestW, 0, similar, v * k, count);
+				System.arraycopy(bestJ, 0, jaccard, v * k, count);
+			}
+
+			public void finish()
+			{
+				synchronized(total)
+				{
+					total[0] += thrCandidates;
+				}
+			}
+		}.chunk(64).exec(0, V - 1);
+		candidates = total[0];
+	}
+
+	/**
+	 * Offer a vertex to a list of the best k so far, in descending order of
+	 * similarity, ties by ascending original ID
+	 * @param bestW - the vertices, k entries
+	 * @param bestJ - their similarities, k entries
+	 * @param count - the number of entries in use
+	 * @param w - the vertex offered
+	 * @param s - its similarity
+	 * @return the new number of entries in use
+	 */
+	private int offer(int[] bestW, float[] bestJ, int count, int w, float s)
+	{
+		int i = count;
+		while(i > 0 && (bestJ[i - 1] < s || (bestJ[i - 1] == s && graph.originalId(bestW[i - 1]) > graph.originalId(w))))
+		{
+			i--;
+		}
+		if(i == k)
+		{
+			return count;
+		}
+		int last = Math.min(count, k - 1);
+		System.arraycopy(bestW, i, bestW, i + 1, last - i);
+		System.arraycopy(bestJ, i, bestJ, i + 1, last - i);
+		bestW[i] = w;
+		bestJ[i] = s;
+		return last + 1;
+	}
+
+	/**
+	 * @param v - a vertex
+	 * @param w - another vertex
+	 * @return the Jaccard similarity of their neighbor sets, by merging the
+	 * 		sorted lists
+	 */
+	private float exactJaccard(int v, int w)
+	{
+		int a = start[v];
+		int aEnd = start[v + 1];
+		int b = start[w];
+		int bEnd = start[w + 1];
+		int common = 0;
+		while(a < aEnd && b < bEnd)
+		{
+			if(adj[a] < adj[b])
+			{
+				a++;
+			}
+			else if(adj[a] > adj[b])
+			{
+				b++;
+			}
+			else
+			{
+				common++;
+				a++;
+				b++;
+			}
+		}
+		int union = (aEnd - start[v]) + (bEnd - start[w]) - common;
+		return union == 0 ? 0 : (float) common / union;
+	}
+
+	/**
+	 * A 64-bit finalizing hash (from MurmurHash3)
+	 * @param x - the value to hash
+	 * @return the hash
+	 */
+	private static long mix(long x)
+	{
+		x ^= x >>> 33;
+		x *= 0xff51afd7ed558ccdL;
+		x ^= x >>> 33;
+		x *= 0xc4ceb9fe1a85ec53L;
+		x ^= x >>> 33;
+		return x;
+	}
+
+	/**
+	 * Print a usage message and exit
+	 */
+	public static void usage()
+	{
+		System.err.println("Usage: java Similarity <fileName> <k> <bands> <rows> <seed> [-recall <samples>]\n" +
+				"<fileName> = the name of the graph file to be analyzed\n" +
+				"<k> = the number of most similar vertices to find for each vertex\n" +
+				"<bands> = the number of LSH bands (more bands, higher recall)\n" +
+				"<rows> = the number of MinHash values per band (more rows, fewer candidates)\n" +
+				"<seed> = seed for the hash functions\n" +
+				"-recall = check the results against an exact search from <samples> random vertices");
+		System.exit(0);
+	}
+}// end class Similarity
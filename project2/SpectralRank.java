@@ -0,0 +1,315 @@
+/**
+ * Rank the vertices of a graph by PageRank or by eigenvector centrality,
+ * both found by power iteration. Each iteration is one sparse matrix-
+ * vector product in pull form: every vertex sums the values of its own
+ * neighbors into its own entry of the next vector, so the vertices can
+ * be split across all cores with no locking, and each thread only writes
+ * its own slice of a plain double array. Sums that the convergence test
+ * and the normalization need are kept per thread and added up at the end
+ * of each pass.
+ *
+ * PageRank: x' = (1-d)/n + d (A D^-1 x + (dangling mass)/n), starting
+ * from the uniform vector, where d is the damping factor. The graph is
+ * undirected, so each edge counts in both directions, and a vertex of
+ * degree 0 spreads its rank over all vertices. The values sum to 1.
+ *
+ * Eigenvector centrality: x' = (A + I) x / |(A + I) x|, starting from
+ * the uniform vector. The shift by I has the same leading eigenvector as
+ * A, but keeps the iteration from oscillating on bipartite graphs. The
+ * values have unit Euclidean norm.
+ *
+ * The iteration stops when the L1 distance between successive vectors is
+ * below the tolerance, or after MAX_ITERATIONS.
+ * @author Joseph Ville
+ */
+public class SpectralRank
+{
+	public static final int MAX_ITERATIONS = 1000;
+	private static final int BLOCK = 4096; // vertices per loop iteration
+
+	private AdjacencyGraph graph;
+	private int V; // number of vertices
+	private double[] x; // current vector
+	private double[] next; // next vector
+	private int iterations; // iterations run
+	private double residual; // L1 distance between the last two vectors
+	private double tolerance; // the residual wanted
+	private long msec; // time taken by the iteration
+
+	/**
+	 * Construct an object of this class
+	 * @param graph - the graph
+	 */
+	private SpectralRank(AdjacencyGraph graph)
+	{
+		this.graph = graph;
+		V = graph.V();
+		x = new double[V];
+		next = new double[V];
+	}
+
+	/**
+	 * Compute the PageRank of every vertex
+	 * @param graph - the graph
+	 * @param damping - the damping factor, 0 <= damping < 1 (usually 0.85)
+	 * @param tolerance - stop when successive vectors are this close in L1
+	 * @return the result
+	 */
+	public static SpectralRank pageRank(AdjacencyGraph graph, double damping, double tolerance)
+	{
+		if(damping < 0 || damping >= 1 || !(tolerance > 0))
+		{
+			throw new IllegalArgumentException("Need 0 <= damping < 1 and tolerance > 0");
+		}
+		SpectralRank rank = new SpectralRank(graph);
+		rank.iteratePageRank(damping, tolerance);
+		return rank;
+	}
+
+	/**
+	 * Compute the eigenvector centrality of every vertex
+	 * @param graph - the graph
+	 * @param tolerance - stop when successive vectors are this close in L1
+	 * @return the result
+	 */
+	public static SpectralRank eigenvector(AdjacencyGraph graph, double tolerance)
+	{
+		if(!(tolerance > 0))
+		{
+			throw new IllegalArgumentException("Need tolerance > 0");
+		}
+		SpectralRank rank = new SpectralRank(graph);
+		rank.iterateEigenvector(tolerance);
+		return rank;
+	}
+
+	/**
+	 * @param v - a vertex of the graph
+	 * @return v's value
+	 */
+	public double value(int v)
+	{
+		return x[v];
+	}
+
+	/**
+	 * @return the number of iterations run
+	 */
+	public int iterations()
+	{
+		return iterations;
+	}
+
+	/**
+	 * @return the L1 distance between the last two vectors
+	 */
+	public double residual()
+	{
+		return residual;
+	}
+
+	/**
+	 * @return whether the iteration converged within MAX_ITERATIONS
+	 */
+	public boolean converged()
+	{
+		return residual < tolerance;
+	}
+
+	/**
+	 * @param name - the name of the ranking
+	 * @return a one-line summary of the iteration, for stderr
+	 */
+	public String report(String name)
+	{
+		return name + (converged() ? " converged in " : " did not converge in ") + iterations +
+				" iterations, residual " + (float) residual + ", " + graph.arcs() + " arcs, " +
+				(iterations == 0 ? 0 : msec / iterations) + " msec/iteration";
+	}
+
+	/**
+	 * Run the PageRank iteration
+	 * @param damping - the damping factor
+	 * @param tolerance - the convergence tolerance
+	 */
+	private void iteratePageRank(final double damping, double tolerance)
+	{
+		this.tolerance = tolerance;
+		long t1 = System.currentTimeMillis();
+		// share[u] = x[u] / degree(u), so the pull reads one value per arc;
+		// each vertex also writes its next share into the other array
+		final double[][] shares = {new double[V], new double[V]};
+		double dangling = 0; // total rank of the vertices with no neighbors
+		for(int v = 0; v < V; v++)
+		{
+			x[v] = 1.0 / V;
+			int d = graph.degree(v);
+			if(d == 0)
+			{
+				dangling += x[v];
+			}
+			else
+			{
+				shares[0][v] = x[v] / d;
+			}
+		}
+
+		final double[] sums = new double[2]; // residual, and the next dangling mass
+		do
+		{
+			final double base = (1 - damping + damping * dangling) / V;
+			final double[] share = shares[iterations & 1];
+			final double[] nextShare = shares[~iterations & 1];
+			sums[0] = 0;
+			sums[1] = 0;
+			new ParallelLoop()
+			{
+				NeighborIterator it; // per-thread iterator
+				double thrResidual;
+				double thrDangling;
+
+				public void start()
+				{
+					it = graph.neighborIterator();
+				}
+
+				public void run(int b)
+				{
+					int end = Math.min(V, (b + 1) * BLOCK);
+					for(int v = b * BLOCK; v < end; v++)
+					{
+						double sum = 0;
+						int d = 0;
+						it.start(v);
+						for(int w = it.next(); w >= 0; w = it.next())
+						{
+							sum += share[w];
+							d++;
+						}
+						double value = base + damping * sum;
+						thrResidual += Math.abs(value - x[v]);
+						next[v] = value;
+						if(d == 0)
+						{
+							thrDangling += value;
+						}
+						else
+						{
+							nextShare[v] = value / d;
+						}
+					}
+				}
+
+				public void finish()
+				{
+					synchronized(sums)
+					{
+						sums[0] += thrResidual;
+						sums[1] += thrDangling;
+					}
+				}
+			}.exec(0, (V - 1) / BLOCK);
+			swap();
+			dangling = sums[1];
+			residual = sums[0];
+			iterations++;
+		}
+		while(residual >= tolerance && iterations < MAX_ITERATIONS);
+		msec = System.currentTimeMillis() - t1;
+	}
+
+	/**
+	 * Run the eigenvector centrality iteration
+	 * @param tolerance - the convergence tolerance
+	 */
+	private void iterateEigenvector(double tolerance)
+	{
+		this.tolerance = tolerance;
+		long t1 = System.currentTimeMillis();
+		for(int v = 0; v < V; v++)
+		{
+			x[v] = 1 / Math.sqrt(V);
+		}
+
+		final double[] sums = new double[2]; // squared norm of the product, and residual
+		do
+		{
+			sums[0] = 0;
+			sums[1] = 0;
+			new ParallelLoop()
+			{
+				NeighborIterator it; // per-thread iterator
+				double thrNorm;
+
+				public void start()
+				{
+					it = graph.neighborIterator();
+				}
+
+				public void run(int b)
+				{
+					int end = Math.min(V, (b + 1) * BLOCK);
+					for(int v = b * BLOCK; v < end; v++)
+					{
+						double sum = x[v];
+						it.start(v);
+						for(int w = it.next(); w >= 0; w = it.next())
+						{
+							sum += x[w];
+						}
+						next[v] = sum;
+						thrNorm += sum * sum;
+					}
+				}
+
+				public void finish()
+				{
+					synchronized(sums)
+					{
+						sums[0] += thrNorm;
+					}
+				}
+			}.exec(0, (V - 1) / BLOCK);
+
+			final double scale = sums[0] > 0 ? 1 / Math.sqrt(sums[0]) : 0;
+			new ParallelLoop()
+			{
+				double thrResidual;
+
+				public void run(int b)
+				{
+					int end = Math.min(V, (b + 1) * BLOCK);
+					for(int v = b * BLOCK; v < end; v++)
+					{
+						double value = next[v] * scale;
+						thrResidual += Math.abs(value - x[v]);
+						next[v] = value;
+					}
+				}
+
+				public void finish()
+				{
+					synchronized(sums)
+					{
+						sums[1] += thrResidual;
+					}
+				}
+			}.exec(0, (V - 1) / BLOCK);
+			swap();
+			residual = sums[1];
+			iterations++;
+		}
+		while(residual >= tolerance && iterations < MAX_ITERATIONS);
+		msec = System.currentTimeMillis() - t1;
+	}
+
+	/**
+	 * Make the next vector the current one
+	 */
+	private void swap()
+	{
+		double[] t = x;
+		x = next;
+		next = t;
+	}
+}// end class SpectralRank
@@ -1,21 +1,61 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.text.DecimalFormat;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
- * Analyze a graph and make conclusions about the top-40-ranked vertices
+ * Analyze a graph and make conclusions about the top-40-ranked vertices.
+ * The graph and the ranking options are kept in the object, so several
+ * graphs can be ranked at once, each with its own TopRank.
  * @author Joseph Ville
  *
- * Usage: java TopRank <fileName>
+ * Usage: java TopRank <fileName> [-order <order>] [-format <format>] [-offheap] [-budget <memoryMB>]
+ * 		  [-core <minCore>] [-topk | -approx <eps> <delta> <seed> | -pagerank <damping> <tol> | -eigen <tol>]
  * 		  <fileName> = the name of the graph file to be analyzed
+ * 		  -order = relabel vertices for cache locality before the analysis;
+ * 		  		  <order> = degree, rcm or community (same output)
+ * 		  -format = how to write the results: text (the default), csv or
+ * 		  		  binary (see ResultSink)
+ * 		  -offheap = keep the graph in direct buffers outside the Java heap
+ * 		  		  (see OffHeapGraph)
+ * 		  -budget = sort the graph into a temporary .csr file on disk, in at
+ * 		  		  most <memoryMB> MB, for a graph larger than memory
+ * 		  		  (see ExternalGraphBuilder)
+ * 		  -core = use k-core numbers for the closeness search: -topk tries
+ * 		  		  candidates in descending core number, and vertices below
+ * 		  		  core <minCore> are not ranked by closeness at all
+ * 		  		  (0 = none skipped, same output); not with -approx,
+ * 		  		  -pagerank or -eigen
+ * 		  -topk = compute closeness only as far as needed to find the top 40,
+ * 		  		  cutting off BFSs that cannot make it (same output)
+ * 		  -approx = estimate closeness from a random sample of BFS pivots
+ * 		  		  <eps> = allowed error, as a fraction of the diameter
+ * 		  		  <delta> = allowed probability of exceeding the error
+ * 		  		  <seed> = random seed for choosing pivots
+ * 		  -pagerank = rank by PageRank instead of closeness
+ * 		  		  <damping> = the damping factor, e.g. 0.85
+ * 		  		  <tol> = stop iterating when the vector changes by less
+ * 		  		  than this (L1 distance)
+ * 		  -eigen = rank by eigenvector centrality instead of closeness
  */
 public class TopRank
 {
-	private static String fileName;
-	private static Vertex[] vertices;
+	private AdjacencyGraph graph; // the graph being ranked
+	private boolean topK; // whether to use the pruned top-k closeness search
+	private boolean approx; // whether to estimate closeness by sampling
+	private double epsilon; // allowed error for approx, as a fraction of the diameter
+	private double delta; // allowed failure probability for approx
+	private long seed; // random seed for approx
+	private int minCore = -1; // skip closeness below this core number, or -1 if cores are not used
+	private int[] coreNumbers; // core number of each vertex, if minCore >= 0
+	private String spectral; // "pagerank" or "eigen" to rank by power iteration, or null
+	private double damping; // PageRank damping factor
+	private double tolerance; // power iteration convergence tolerance
 	
 	/**
 	 * Main method for this program
@@ -23,62 +63,612 @@ public class TopRank
 	 */
 	public static void main(String[] args)
 	{
-		if(args.length != 1)
+		if(args.length < 1)
 		{
 			usage();
 		}
-		fileName = args[0];
+		String fileName = args[0];
+		String order = null; // vertex order to relabel by
+		String format = "text"; // result format
+		boolean offHeap = false; // whether to keep the graph off the heap
+		long memoryMB = 0; // build the graph on disk within this many MB, or 0 to read it into memory
+		TopRank rank = new TopRank();
+		for(int a = 1; a < args.length; a++)
+		{
+			if(args[a].equals("-topk"))
+			{
+				rank.topK = true;
+			}
+			else if(args[a].equals("-order") && a + 1 < args.length && Reordering.isMethod(args[a + 1]))
+			{
+				order = args[++a];
+			}
+			else if(args[a].equals("-format") && a + 1 < args.length && ResultSink.isFormat(args[a + 1]))
+			{
+				format = args[++a];
+			}
+			else if(args[a].equals("-offheap"))
+			{
+				offHeap = true;
+			}
+			else if(args[a].equals("-budget") && a + 1 < args.length)
+			{
+				try
+				{
+					memoryMB = Long.parseLong(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(memoryMB < 1)
+				{
+					usage();
+				}
+			}
+			else if(args[a].equals("-core") && a + 1 < args.length)
+			{
+				try
+				{
+					rank.minCore = Integer.parseInt(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(rank.minCore < 0)
+				{
+					usage();
+				}
+			}
+			else if(args[a].equals("-approx") && a + 3 < args.length)
+			{
+				rank.approx = true;
+				try
+				{
+					rank.epsilon = Double.parseDouble(args[++a]);
+					rank.delta = Double.parseDouble(args[++a]);
+					rank.seed = Long.parseLong(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(rank.epsilon <= 0 || rank.delta <= 0 || rank.delta >= 1)
+				{
+					usage();
+				}
+			}
+			else if(args[a].equals("-pagerank") && a + 2 < args.length)
+			{
+				rank.spectral = "pagerank";
+				try
+				{
+					rank.damping = Double.parseDouble(args[++a]);
+					rank.tolerance = Double.parseDouble(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(rank.damping < 0 || rank.damping >= 1 || !(rank.tolerance > 0))
+				{
+					usage();
+				}
+			}
+			else if(args[a].equals("-eigen") && a + 1 < args.length)
+			{
+				rank.spectral = "eigen";
+				try
+				{
+					rank.tolerance = Double.parseDouble(args[++a]);
+				}
+				catch(NumberFormatException nfe)
+				{
+					usage();
+				}
+				if(!(rank.tolerance > 0))
+				{
+					usage();
+				}
+			}
+			else
+			{
+				usage();
+			}
+		}
+		if(rank.minCore >= 0 && (rank.approx || rank.spectral != null))
+		{
+			usage(); // the core numbers only steer the exact closeness search
+		}
 		
 		Collaboration collab = new Collaboration();
+		collab.setOffHeap(offHeap);
+		collab.setMemoryBudget(memoryMB << 20);
+		AdjacencyGraph graph = collab.readGraph(fileName);
+		if(order != null)
+		{
+			graph = Reordering.apply(graph, order);
+		}
+		ResultSink sink = ResultSink.open(format, new FileOutputStream(FileDescriptor.out));
+		rank.analyze(graph, sink);
+		sink.flush();
+	}
+
+	/**
+	 * Rank the largest connected component of a graph by degree, then by
+	 * closeness or by whichever other ranking has been chosen
+	 * @param g - the graph
+	 * @param out - where to print
+	 */
+	public void analyze(AdjacencyGraph g, ResultSink out)
+	{
 		ConnectedComponents cc = new ConnectedComponents(false);
-		vertices = collab.readFile(fileName);
-		int n = cc.findComponents(vertices);
-		ArrayList<Integer> largestCC = cc.getLargestComponent();
+		cc.findComponents(g);
+		analyze(g, cc.getLargestComponent(), out);
+	}
+
+	/**
+	 * Rank a connected component of a graph that has already been found,
+	 * by degree, then by closeness or by whichever other ranking has been
+	 * chosen
+	 * @param g - the graph
+	 * @param largestCC - its largest connected component, by original ID
+	 * @param out - where to print
+	 */
+	public void analyze(AdjacencyGraph g, ArrayList<Integer> largestCC, ResultSink out)
+	{
+		int top = Math.min(40, largestCC.size());
+		graph = extractComponent(g, largestCC);
+		coreNumbers = null;
+		
+		printDegreeCent(largestCC, top, out);
+		
+		if(approx)
+		{
+			printApproxCloseness(largestCC, top, out);
+			return;
+		}
+		if(spectral != null)
+		{
+			printSpectralRank(largestCC, top, out);
+			return;
+		}
+		if(minCore >= 0)
+		{
+			coreNumbers = KCore.coreNumbers(graph);
+			int ranked = 0; // vertices at or above the minimum core
+			for(int i = 0; i < largestCC.size(); i++)
+			{
+				if(!belowMinCore(graph.vertexOf(largestCC.get(i))))
+				{
+					ranked++;
+				}
+			}
+			top = Math.min(top, ranked);
+		}
 		
-		int vertex;
-		List<SimpleEntry<Integer, Integer>> cloCent = degreeCent(largestCC);
-		System.out.println("Rank\tVertex\tDegCen");
-		for(int i = 0; i < 40; i++)
+		printClosenessCent(largestCC, top, topK, out);
+	}
+
+	/**
+	 * Set the graph that the centrality methods work on, for callers
+	 * that do not go through analyze()
+	 * @param g - the graph
+	 */
+	public void useGraph(AdjacencyGraph g)
+	{
+		graph = g;
+	}
+
+	/**
+	 * Choose the closeness ranking for analyze()
+	 * @param topK - true for the top-k search with BFS cut-offs, false to
+	 * 		compute every vertex's closeness (same output)
+	 */
+	public void setTopK(boolean topK)
+	{
+		this.topK = topK;
+	}
+
+	/**
+	 * Copy a connected component out of a graph into a compact CSR graph,
+	 * so that the BFS buffers and neighbor lists of the rankings cover only
+	 * that component. The copy keeps the graph's vertex order and its
+	 * mapping to original IDs, so the rankings come out the same. Prints
+	 * the reduction on stderr.
+	 * @param g - the graph
+	 * @param cc - the component, by original ID
+	 * @return the component's subgraph, or g if cc is all of it
+	 */
+	public static AdjacencyGraph extractComponent(AdjacencyGraph g, ArrayList<Integer> cc)
+	{
+		if(cc.size() == g.V())
+		{
+			return g;
+		}
+		int[] members = new int[cc.size()];
+		for(int i = 0; i < members.length; i++)
+		{
+			members[i] = g.vertexOf(cc.get(i));
+		}
+		Arrays.sort(members); // keep any -order locality
+		CsrGraph sub = CsrGraph.inducedSubgraph(g, members);
+		System.err.println("Extracted component: " + sub.V() + " of " + g.V() + " vertices, " +
+				sub.arcs() + " of " + g.arcs() + " arcs");
+		return sub;
+	}
+
+	/**
+	 * Print the top of the degree centrality ranking of the given
+	 * connected component
+	 * @param cc - the connected component
+	 * @param top - how many ranks to print
+	 * @param out - where to print
+	 */
+	public void printDegreeCent(ArrayList<Integer> cc, int top, ResultSink out)
+	{
+		List<SimpleEntry<Integer, Integer>> degCent = degreeCent(cc);
+		out.startTable("degree centrality", "Rank", "Vertex", "DegCen");
+		for(int i = 0; i < top; i++)
+		{
+			out.cell(i + 1);
+			out.cell(degCent.get(i).getKey());
+			out.cell(degCent.get(i).getValue());
+			out.endRow();
+		}
+		out.endTable();
+	}
+
+	/**
+	 * Print the top of the closeness centrality ranking of the given
+	 * connected component
+	 * @param cc - the connected component
+	 * @param top - how many ranks to print
+	 * @param pruned - whether to use the top-k search with BFS cut-offs
+	 * @param out - where to print
+	 */
+	public void printClosenessCent(ArrayList<Integer> cc, int top, boolean pruned, ResultSink out)
+	{
+		float[] avgDistances = pruned ? topKClosenessCent(cc, top) : closenessCent(cc);
+		int[] ranking = rankAscending(avgDistances);
+		out.startTable("closeness centrality", "Rank", "Vertex", "CloCen");
+		for(int i = 0; i < top; i++)
 		{
-			vertex = largestCC.get(i);
-			System.out.println((i+1) + "\t" + cloCent.get(vertex).getKey() + "\t" + cloCent.get(vertex).getValue());
+			out.cell(i + 1);
+			out.cell(cc.get(ranking[i]));
+			out.cell(avgDistances[ranking[i]]);
+			out.endRow();
 		}
+		out.endTable();
+	}
+
+	/**
+	 * Estimate the closeness centrality of the given connected component by
+	 * sampling, and print the top of the ranking with its error bars
+	 * @param cc - the connected component
+	 * @param top - how many ranks to print
+	 * @param out - where to print
+	 */
+	public void printApproxCloseness(ArrayList<Integer> cc, int top, ResultSink out)
+	{
+		ApproxCloseness ac = new ApproxCloseness(graph, cc, epsilon, delta, seed);
+		float[] avgDistances = ac.estimates();
+		int[] ranking = rankAscending(avgDistances);
+		DecimalFormat df = new DecimalFormat("0.#####");
 		
-		List<SimpleEntry<Integer, Float>> avgDistances = closenessCent(largestCC);
-		System.out.println("Rank\tVertex\tCloCen");
-		for(int i = 0; i < 40; i++)
+		out.text("Approximate closeness from " + ac.pivots() + " of " + cc.size() + " BFS pivots" +
+				(ac.isExact() ? " (exact)" : ", eps = " + epsilon + ", delta = " + delta));
+		out.text("Avg distance in CC = " + df.format(ac.ccAverage()) + " +/- " + df.format(ac.error()) +
+				" with probability >= " + df.format(1 - delta));
+		out.startTable("approximate closeness centrality", "Rank", "Vertex", "CloCen", "+/-", "SureTop" + top);
+		for(int i = 0; i < top; i++)
 		{
-			vertex = largestCC.get(i);
-			System.out.println((i+1) + "\t" + avgDistances.get(vertex).getKey() + "\t" + avgDistances.get(vertex).getValue());
+			out.cell(i + 1);
+			out.cell(cc.get(ranking[i]));
+			out.cell(avgDistances[ranking[i]]);
+			out.cell(ac.error(), df.format(ac.error()));
+			out.cell(ac.surelyInTop(ranking[i], top) ? "yes" : "no");
+			out.endRow();
 		}
+		out.endTable();
 	}
 
 	/**
-	 * Compute the closeness centrality of the given connected component
+	 * Rank the given connected component by PageRank or eigenvector
+	 * centrality, as chosen on the command line, and print the top of the
+	 * ranking. The iteration runs over the whole graph, which in main() is
+	 * the component itself.
 	 * @param cc - the connected component
-	 * @return - an ArrayList<SimpleEntry<Integer, Float>> which stores the vertex number and its 
-	 * 		associated closeness centrality
+	 * @param top - how many ranks to print
+	 * @param out - where to print
 	 */
-	public static List<SimpleEntry<Integer, Float>> closenessCent(ArrayList<Integer> cc)
+	public void printSpectralRank(ArrayList<Integer> cc, int top, ResultSink out)
 	{
-		List<SimpleEntry<Integer, Float>> avgDistances = new ArrayList<SimpleEntry<Integer, Float>>(cc.size());
-		int current = 0;
-		for(int i = 0; i < cc.size(); i++)
+		boolean pageRank = spectral.equals("pagerank");
+		SpectralRank rank = pageRank
+				? SpectralRank.pageRank(graph, damping, tolerance)
+				: SpectralRank.eigenvector(graph, tolerance);
+		System.err.println(rank.report(pageRank ? "PageRank" : "Eigenvector centrality"));
+		float[] values = new float[cc.size()];
+		for(int i = 0; i < values.length; i++)
+		{
+			values[i] = (float) rank.value(graph.vertexOf(cc.get(i)));
+		}
+		int[] ranking = rankDescending(values);
+		out.startTable(pageRank ? "PageRank" : "eigenvector centrality", "Rank", "Vertex", pageRank ? "PageRank" : "EigCen");
+		for(int i = 0; i < top; i++)
 		{
-			current = cc.get(i);
-			avgDistances.add(new SimpleEntry<Integer, Float>(current, avgDistance(current)));
+			out.cell(i + 1);
+			out.cell(cc.get(ranking[i]));
+			out.cell(values[ranking[i]]);
+			out.endRow();
 		}
+		out.endTable();
+	}
+
+	/**
+	 * Compute the closeness centrality of the given connected component.
+	 * One BFS is run from every vertex of the component, spread across all
+	 * cores; each thread reuses a single BFS kernel for all of its BFSs.
+	 * Vertices below the -core minimum are skipped.
+	 * @param cc - the connected component
+	 * @return the average distance from each vertex of cc to the rest of
+	 * 		the graph, indexed by position in cc
+	 */
+	public float[] closenessCent(final ArrayList<Integer> cc)
+	{
+		final int[] sources = new int[cc.size()];
+		for(int i = 0; i < sources.length; i++)
+		{
+			sources[i] = graph.vertexOf(cc.get(i));
+		}
+		final float[] avgDistances = new float[sources.length];
+		final long[] edges = new long[3]; // edges examined, a top-down BFS's edges, and searches
 		
-		// sort the distances
-		Collections.sort(avgDistances, new Comparator<SimpleEntry<Integer, Float>>(){
-				@Override
-				public int compare(SimpleEntry<Integer, Float> arg0, SimpleEntry<Integer, Float> arg1)
+		new ParallelLoop()
+		{
+			BfsKernel bfs; // per-thread BFS buffers
+
+			public void start()
+			{
+				bfs = new BfsKernel(graph);
+			}
+
+			public void run(int i)
+			{
+				avgDistances[i] = belowMinCore(sources[i]) ? Float.POSITIVE_INFINITY : bfs.avgDistance(sources[i]);
+			}
+
+			public void finish()
+			{
+				synchronized(edges)
+				{
+					edges[0] += bfs.totalExamined();
+					edges[1] += bfs.totalTopDown();
+					edges[2] += bfs.searches();
+				}
+			}
+		}.chunk(16).exec(0, sources.length - 1);
+
+		System.err.println(BfsKernel.report(edges[2], edges[0], edges[1]));
+		return avgDistances;
+	}
+
+	/**
+	 * Compute the closeness centrality of only the k most central vertices
+	 * of the given connected component, giving the same top k as
+	 * closenessCent(). Candidates are tried from highest to lowest degree,
+	 * or with -core from highest to lowest core number, so good ones are
+	 * found early, and each BFS is abandoned as soon as a lower bound on
+	 * its vertex's total distance shows it cannot beat the k-th best
+	 * average distance found so far (Bergamini et al.'s cut-off).
+	 * Vertices below the -core minimum are not tried.
+	 * @param cc - the connected component
+	 * @param k - the number of top vertices wanted
+	 * @return the average distance from each vertex of cc to the rest of
+	 * 		the graph, indexed by position in cc, or Float.POSITIVE_INFINITY
+	 * 		for a vertex that was cut off because it is not in the top k
+	 */
+	public float[] topKClosenessCent(final ArrayList<Integer> cc, final int k)
+	{
+		final int n = cc.size();
+		final float[] avgDistances = new float[n];
+		Arrays.fill(avgDistances, Float.POSITIVE_INFINITY);
+		if(k <= 0 || n == 0)
+		{
+			return avgDistances;
+		}
+
+		// candidate order: descending degree, ties by position in cc
+		long[] keys = new long[n];
+		for(int i = 0; i < n; i++)
+		{
+			keys[i] = ((long) (Integer.MAX_VALUE - graph.degree(graph.vertexOf(cc.get(i)))) << 32) | i;
+		}
+		Arrays.sort(keys);
+		if(coreNumbers != null)
+		{
+			// descending core number, ties in degree order; the dense core
+			// holds the central vertices, so the threshold drops sooner
+			long[] byCore = new long[n];
+			for(int j = 0; j < n; j++)
+			{
+				int core = coreNumbers[graph.vertexOf(cc.get((int) keys[j]))];
+				byCore[j] = ((long) (Integer.MAX_VALUE - core) << 32) | j;
+			}
+			Arrays.sort(byCore);
+			for(int j = 0; j < n; j++)
+			{
+				byCore[j] = keys[(int) byCore[j]];
+			}
+			keys = byCore;
+		}
+		int candidates = 0;
+		final int[] order = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			int position = (int) keys[i];
+			if(!belowMinCore(graph.vertexOf(cc.get(position))))
+			{
+				order[candidates++] = position;
+			}
+		}
+		if(candidates < n)
+		{
+			System.err.println("Skipped " + (n - candidates) + " of " + n + " candidates below core " + minCore);
+		}
+
+		final KthSmallest kth = new KthSmallest(k);
+		final int[] pruned = new int[1];
+		final long[] edges = new long[2]; // edges examined, and a top-down BFS's edges
+		new ParallelLoop()
+		{
+			BfsKernel bfs; // per-thread BFS buffers
+			int thrPruned;
+
+			public void start()
+			{
+				bfs = new BfsKernel(graph);
+			}
+
+			public void run(int i)
+			{
+				int position = order[i];
+				float avg = bfs.avgDistance(graph.vertexOf(cc.get(position)), n, kth.threshold());
+				if(avg == Float.POSITIVE_INFINITY)
 				{
-					return arg0.getValue().compareTo(arg1.getValue());
+					thrPruned++;
 				}
-			});
+				else
+				{
+					avgDistances[position] = avg;
+					kth.offer(avg);
+				}
+			}
+
+			public void finish()
+			{
+				synchronized(pruned)
+				{
+					pruned[0] += thrPruned;
+					edges[0] += bfs.totalExamined();
+					edges[1] += bfs.totalTopDown();
+				}
+			}
+		}.exec(0, candidates - 1);
+
+		System.err.println("Cut off " + pruned[0] + " of " + candidates + " BFS runs");
+		System.err.println(BfsKernel.report(candidates, edges[0], edges[1]));
 		return avgDistances;
 	}
+
+	/**
+	 * @param v - a vertex
+	 * @return true if -core is in use and v's core number is below its minimum
+	 */
+	private boolean belowMinCore(int v)
+	{
+		return coreNumbers != null && coreNumbers[v] < minCore;
+	}
+
+	/**
+	 * Keeps the k smallest values offered so far, so that the k-th smallest
+	 * can serve as the cut-off for the top-k closeness search. Shared by all
+	 * the loop threads.
+	 */
+	private static class KthSmallest
+	{
+		private java.util.PriorityQueue<Float> largestFirst; // the k smallest values, largest at the head
+		private int k;
+		private volatile float threshold = Float.POSITIVE_INFINITY; // k-th smallest, or infinity if < k values
+
+		/**
+		 * Construct an object of this class
+		 * @param k - the number of values to keep
+		 */
+		KthSmallest(int k)
+		{
+			this.k = k;
+			largestFirst = new java.util.PriorityQueue<Float>(k, Collections.reverseOrder());
+		}
+
+		/**
+		 * @return the current k-th smallest value
+		 */
+		float threshold()
+		{
+			return threshold;
+		}
+
+		/**
+		 * Offer a value
+		 * @param value - the value
+		 */
+		synchronized void offer(float value)
+		{
+			if(largestFirst.size() < k)
+			{
+				largestFirst.add(value);
+			}
+			else if(value < largestFirst.peek())
+			{
+				largestFirst.poll();
+				largestFirst.add(value);
+			}
+			if(largestFirst.size() == k)
+			{
+				threshold = largestFirst.peek();
+			}
+		}
+	}
+
+	/**
+	 * Rank the entries of an array from smallest to largest. Equal values
+	 * keep their original order, so the ranking is deterministic no matter
+	 * how the values were computed. The values must not be negative.
+	 * @param values - the values to rank (e.g. average distances)
+	 * @return the indexes of values, in ascending order of value
+	 */
+	public static int[] rankAscending(float[] values)
+	{
+		// the bits of a non-negative float sort the same way as the float,
+		// so (bits, index) packed in a long sorts without boxing
+		long[] keys = new long[values.length];
+		for(int i = 0; i < values.length; i++)
+		{
+			keys[i] = ((long) Float.floatToIntBits(values[i]) << 32) | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[values.length];
+		for(int i = 0; i < values.length; i++)
+		{
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+	
+	/**
+	 * Rank the entries of an array from largest to smallest, ties in index
+	 * order. The values must not be negative.
+	 * @param values - the values to rank
+	 * @return the indexes of values, in descending order of value
+	 */
+	public static int[] rankDescending(float[] values)
+	{
+		long[] keys = new long[values.length];
+		for(int i = 0; i < values.length; i++)
+		{
+			keys[i] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(values[i])) << 32) | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[values.length];
+		for(int i = 0; i < values.length; i++)
+		{
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
 	
 	/**
 	 * Compute the degree centrality of the given connected component
@@ -86,14 +676,14 @@ public class TopRank
 	 * @return an ArrayList<SimpleEntry<Integer, Integer>> which stores the vertex number and its
 	 * 		associated degree centrality
 	 */
-	public static List<SimpleEntry<Integer, Integer>> degreeCent(ArrayList<Integer> cc)
+	public List<SimpleEntry<Integer, Integer>> degreeCent(ArrayList<Integer> cc)
 	{
 		List<SimpleEntry<Integer, Integer>> degrees = new ArrayList<SimpleEntry<Integer, Integer>>(cc.size());
 		int current = 0;
 		for(int v = 0; v < cc.size(); v++)
 		{
 			current = cc.get(v);
-			degrees.add(new SimpleEntry<Integer, Integer>(current, vertices[current].degree()));
+			degrees.add(new SimpleEntry<Integer, Integer>(current, graph.degree(graph.vertexOf(current))));
 		}
 		Collections.sort(degrees, new Comparator<SimpleEntry<Integer, Integer>>(){
 			@Override
@@ -110,58 +700,33 @@ public class TopRank
 	 * @param vertex - the vertex to find distances from
 	 * @return the average distance from this vertex to every other vertex
 	 */
-	public static float avgDistance(int vertex)
+	public float avgDistance(int vertex)
 	{
-		LinkedList<Integer> queue = new LinkedList<Integer>(); // queue of vertex indices
-		boolean[] seen = new boolean[	vertices.length]; // whether this vertex has been seen
-		int[] distances = new int[vertices.length];
-
-		for(int i = 0; i < vertices.length; i++) // initialize the arrays
-		{
-			distances[i] = Integer.MAX_VALUE;
-			seen[i] = false;
-		}
-
-		seen[vertex] = true;
-
-		queue.add(vertex);
-		int a = 0;
-		int count = 0;
-		distances[vertex] = 0;
-		
-		while(queue.size() != 0)
-		{
-			a = queue.poll(); // remove the head of the queue
-			for(Integer b : vertices[a].getNeighbors()) // loop through all neighbors of current vertex
-			{
-				if(!seen[b])
-				{
-					seen[b] = true;
-					queue.add(b); // add b to end of queue
-					count++;
-					distances[b] = distances[a] + 1;
-				} // end if 
-			} // end for
-		} // end while
-		
-		int sum = 0;
-		for(int i = 0; i < vertices.length; i++)
-		{
-			if(distances[i] != Integer.MAX_VALUE)
-			{
-				sum += distances[i];
-			}
-		}
-		return (float) sum / count;
+		return new BfsKernel(graph).avgDistance(graph.vertexOf(vertex));
 	}
-	
+
 	/**
 	 * Print a usage message and exit
 	 */
 	public static void usage()
 	{
-		System.err.println("Usage: java TopRank <fileName>\n" + 
-				"<fileName> = the name of the graph file to be analyzed");
+		System.err.println("Usage: java TopRank <fileName> [-order <order>] [-format <format>] [-offheap] [-budget <memoryMB>]\n" +
+				"\t[-core <minCore>] [-topk | -approx <eps> <delta> <seed> | -pagerank <damping> <tol> | -eigen <tol>]\n" +
+				"<fileName> = the name of the graph file to be analyzed\n" +
+				"-order = relabel vertices for cache locality; <order> = degree, rcm or community\n" +
+				"-format = how to write the results: text (the default), csv or binary\n" +
+				"-offheap = keep the graph in direct buffers outside the Java heap\n" +
+				"-budget = build the graph on disk in at most <memoryMB> MB, for one larger than memory\n" +
+				"-core = order -topk candidates by k-core number, and skip closeness below core <minCore>\n" +
+				"\t(not with -approx, -pagerank or -eigen)\n" +
+				"-topk = find the top 40 by closeness with BFS cut-offs (same output)\n" +
+				"-approx = estimate closeness from a random sample of BFS pivots\n" +
+				"<eps> = allowed error, as a fraction of the diameter\n" +
+				"<delta> = allowed probability of exceeding the error, 0 < delta < 1\n" +
+				"<seed> = random seed for choosing pivots\n" +
+				"-pagerank = rank by PageRank instead of closeness, with damping factor <damping>\n" +
+				"-eigen = rank by eigenvector centrality instead of closeness\n" +
+				"<tol> = stop iterating when the vector changes by less than this (L1 distance)");
 		System.exit(0);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+/**
+ * The Euclidean minimum spanning tree of a set of points, by Boruvka's
+ * algorithm on nearest neighbor searches in a k-d tree. Each round, every
+ * component of the forest so far finds the shortest edge from one of its
+ * points to a point in another component, and all those edges are added
+ * at once, so the number of components at least halves every round. The
+ * tree's points are labeled with their components, so a search skips the
+ * parts of the tree inside its own component, and each component's
+ * searches stop at the best edge found so far from any of its points.
+ * Each point remembers the nearest point it found in another component:
+ * until that point joins its component, no search is needed, and after,
+ * the old distance is a lower bound that lets the point be skipped when
+ * its component already has a shorter edge.
+ *
+ * The components' searches of a round are independent of each other, so
+ * they run in parallel, each thread with its own KdTree.Query. Ties go to
+ * the lower numbered point, and an edge that would join two points
+ * already joined in the same round is skipped, so the result is a tree.
+ * @author Joseph Ville
+ */
+public class Boruvka
+{
+	private double[] x, y; // the points
+	private int n; // number of points
+	private KdTree tree; // spatial index of the points
+	private int[] from, to; // tree edges
+	private int edges; // number of tree edges
+	private int rounds; // number of rounds run
+
+	/**
+	 * Construct an object of this class
+	 * @param x - the x coordinates
+	 * @param y - the y coordinates, y[i] going with x[i]
+	 * @param n - the number of points, the first n of each array
+	 */
+	public Boruvka(double[] x, double[] y, int n)
+	{
+		this(x, y, n, new KdTree(x, y, n));
+	}
+
+	/**
+	 * Construct an object of this class, to use an existing k-d tree
+	 * @param x - the x coordinates
+	 * @param y - the y coordinates, y[i] going with x[i]
+	 * @param n - the number of points, the first n of each array
+	 * @param tree - a k-d tree of the points; its labels are overwritten
+	 */
+	public Boruvka(double[] x, double[] y, int n, KdTree tree)
+	{
+		this.x = x;
+		this.y = y;
+		this.n = n;
+		this.tree = tree;
+		from = new int[Math.max(n - 1, 0)];
+		to = new int[from.length];
+	}
+
+	/**
+	 * Compute the minimum spanning tree
+	 */
+	public void run()
+	{
+		final int[] parent = new int[n]; // union-find forest of the components
+		int[] size = new int[n];
+		final int[] component = new int[n]; // number of each point's component
+		for(int v = 0; v < n; v++)
+		{
+			parent[v] = v;
+			size[v] = 1;
+		}
+		final int[] members = new int[n]; // the points, grouped by component
+		final int[] start = new int[n + 1]; // where each component's points start in members
+		final int[] edgeFrom = new int[n]; // each component's shortest edge out
+		final int[] edgeTo = new int[n];
+		// each point's nearest point in another component, as of the last
+		// search from it, and the squared distance. Components only grow,
+		// so while that point is still in another component it is still
+		// the nearest, and the distance can only have grown since.
+		final int[] near = new int[n];
+		final double[] near2 = new double[n];
+		Arrays.fill(near, -1);
+		int[] count = new int[n + 1];
+		edges = 0;
+		rounds = 0;
+
+		while(edges < n - 1)
+		{
+			// number the components 0 to C-1 in the k-d tree's leaf order, so
+			// components searched one after another are near each other, and
+			// group their points
+			Arrays.fill(count, -1);
+			int components = 0;
+			for(int k = 0; k < n; k++)
+			{
+				int root = find(parent, tree.point(k));
+				if(count[root] == -1)
+				{
+					count[root] = components++;
+				}
+			}
+			for(int v = 0; v < n; v++)
+			{
+				component[v] = count[find(parent, v)];
+			}
+			Arrays.fill(start, 0, components + 1, 0);
+			for(int v = 0; v < n; v++)
+			{
+				start[component[v] + 1]++;
+			}
+			for(int c = 0; c < components; c++)
+			{
+				start[c + 1] += start[c];
+			}
+			System.arraycopy(start, 0, count, 0, components);
+			for(int k = 0; k < n; k++)
+			{
+				int v = tree.point(k);
+				members[count[component[v]]++] = v;
+			}
+			tree.setLabels(component);
+
+			new ParallelLoop()
+			{
+				KdTree.Query query; // per-thread search
+
+				public void start()
+				{
+					query = tree.query();
+				}
+
+				public void run(int c)
+				{
+					double best = Double.POSITIVE_INFINITY;
+					int bestFrom = -1, bestTo = -1;
+					// first the points whose nearest point elsewhere is still elsewhere
+					for(int j = start[c]; j < start[c + 1]; j++)
+					{
+						int v = members[j];
+						int w = near[v];
+						// ties go to the lower w
+						if(w != -1 && component[w] != c && (near2[v] < best || (near2[v] == best && w < bestTo)))
+						{
+							best = near2[v];
+							bestFrom = v;
+							bestTo = w;
+						}
+					}
+					// then search from the others that might still beat that
+					for(int j = start[c]; j < start[c + 1]; j++)
+					{
+						int v = members[j];
+						if(near2[v] > best || (near[v] != -1 && component[near[v]] != c))
+						{
+							continue;
+						}
+						int w = query.nearestOther(x[v], y[v], c, best);
+						if(w == -1)
+						{
+							near2[v] = best; // nothing in another component within best
+							near[v] = -1;
+							continue;
+						}
+						near[v] = w;
+						near2[v] = query.distance2();
+						if(near2[v] < best || bestFrom == -1 || w < bestTo)
+						{
+							best = near2[v];
+							bestFrom = v;
+							bestTo = w;
+						}
+					}
+					edgeFrom[c] = bestFrom;
+					edgeTo[c] = bestTo;
+				}
+			}.chunk(Math.max(1, components / (64 * Runtime.getRuntime().availableProcessors())))
+					.exec(0, components - 1);
+
+			for(int c = 0; c < components; c++)
+			{
+				int a = find(parent, edgeFrom[c]);
+				int b = find(parent, edgeTo[c]);
+				if(a != b)
+				{
+					if(size[a] < size[b])
+					{
+						int t = a;
+						a = b;
+						b = t;
+					}
+					parent[b] = a;
+					size[a] += size[b];
+					from[edges] = edgeFrom[c];
+					to[edges++] = edgeTo[c];
+				}
+			}
+			rounds++;
+		}
+	}
+
+	/**
+	 * Find the root of a point's component, halving the path on the way
+	 * @param parent - the union-find forest
+	 * @param v - the point
+	 * @return the root
+	 */
+	private static int find(int[] parent, int v)
+	{
+		while(parent[v] != v)
+		{
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/**
+	 * @return the number of tree edges, n-1 after run()
+	 */
+	public int edges()
+	{
+		return edges;
+	}
+
+	/**
+	 * @param e - a tree edge, 0 to edges()-1
+	 * @return its first point
+	 */
+	public int from(int e)
+	{
+		return from[e];
+	}
+
+	/**
+	 * @param e - a tree edge, 0 to edges()-1
+	 * @return its second point
+	 */
+	public int to(int e)
+	{
+		return to[e];
+	}
+
+	/**
+	 * @return the number of rounds run()
+	 */
+	public int rounds()
+	{
+		return rounds;
+	}
+}// end class Boruvka
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 
 import edu.rit.util.PriorityQueue;
 
@@ -20,8 +21,10 @@ public class Cities
 	private static int V; // number of vertices
 	private static int E; // number of edges
 	private static Vertex[] vertices; // array of vertices
+	private static double[] xs, ys; // coordinates of the vertices, kept apart so distance loops read them in order
 	private static double totalDistance; // total distance of the MST
 	private static boolean eLine; // whether there's an edge line in the graph file
+	private static String method = "prim"; // how to compute the MST
 	
 	/**
 	 * Default constructor
@@ -40,6 +43,19 @@ public class Cities
 		{
 			usage();
 		}
+		for(int a = 1; a < args.length; a++)
+		{
+			if(args[a].equals("-mst") && a + 1 < args.length &&
+					(args[a + 1].equals("prim") || args[a + 1].equals("dense") || args[a + 1].equals("delaunay") ||
+					args[a + 1].equals("boruvka")))
+			{
+				method = args[++a];
+			}
+			else
+			{
+				usage();
+			}
+		}
 		
 		Cities cities = new Cities();
 		cities.readFile(args[0]);
@@ -47,7 +63,22 @@ public class Cities
 		// start at vertex 0, because it is the center city of the empire
 		int startingVertex = 0;
 		
-		cities.minSpanningTree(startingVertex);
+		if(method.equals("delaunay"))
+		{
+			cities.delaunayTree(startingVertex);
+		}
+		else if(method.equals("boruvka"))
+		{
+			cities.boruvkaTree(startingVertex);
+		}
+		else if(method.equals("dense"))
+		{
+			cities.denseTree(startingVertex);
+		}
+		else
+		{
+			cities.minSpanningTree(startingVertex);
+		}
 		totalDistance = 0.0;
 		E = V - 1;
 		String city = args[0].substring(0, args[0].indexOf('-'));
@@ -78,26 +109,261 @@ public class Cities
 			minPQ.add(vertices[i]);
 		}
 		
+		// distances are compared squared during the search, which orders them
+		// the same, and square rooted once at the end
+		double[] d2 = new double[V];
 		while(!minPQ.isEmpty())
 		{
 			Vertex v = minPQ.remove();
+			int vi = v.getIndex();
 			
 			// the original graph is completely connected, so every other 
 			// vertex is adjacent to v
-			for(Vertex w : vertices)
+			squaredDistances(xs[vi], ys[vi], xs, ys, V, d2);
+			for(int i = 0; i < V; i++)
 			{
-				if(v.getIndex() != w.getIndex())
+				Vertex w = vertices[i];
+				if(i != vi && w.enqueued() && (d2[i] < w.getDistance()))
 				{
-					double vwDist = euclideanDistance(v.getX(), v.getY(), w.getX(), w.getY());
-					if(w.enqueued() && (vwDist < w.getDistance()))
-					{
-						w.setPredecessor(v.getIndex());
-						w.setDistance(vwDist);
-						w.increasePriority();
-					}
+					w.setPredecessor(vi);
+					w.setDistance(d2[i]);
+					w.increasePriority();
+				}
+			}
+		}
+		for(int i = 0; i < V; i++)
+		{
+			vertices[i].setDistance(Math.sqrt(vertices[i].getDistance()));
+		}
+		return vertices;
+	}
+
+	/**
+	 * Compute the minimum spanning tree of the graph, by Prim's algorithm
+	 * on the complete graph as minSpanningTree() does, but in its O(V^2)
+	 * array form: no priority queue, just the distance of each vertex to
+	 * the tree in a primitive array, with each step's scan for the nearest
+	 * vertex split across all cores (see DensePrim)
+	 * @param startingVertex - the starting vertex
+	 * @return the vertices, as a minimum spanning tree
+	 */
+	public Vertex[] denseTree(int startingVertex)
+	{
+		DensePrim prim = new DensePrim(xs, ys, V);
+		prim.run(startingVertex);
+		for(int i = 0; i < V; i++)
+		{
+			int p = prim.predecessor(i);
+			vertices[i].setPredecessor(p == -1 ? Integer.MIN_VALUE : p);
+			vertices[i].setDistance(prim.distance(i));
+		}
+		return vertices;
+	}
+
+	/**
+	 * Compute the minimum spanning tree of the graph, which is the Euclidean
+	 * minimum spanning tree of the cities, from the Delaunay triangulation
+	 * of their coordinates. Every edge of a Euclidean minimum spanning tree
+	 * is an edge of the triangulation, which has fewer than 3V edges, so
+	 * Kruskal's algorithm on those edges gives the same tree as Prim's
+	 * algorithm on the complete graph (the same total distance, if there
+	 * are ties) in O(V log V) time instead of O(V^2 log V). Cities at the
+	 * same location are joined by edges of length 0 before triangulating
+	 * the rest.
+	 * @param startingVertex - the root of the tree
+	 * @return the vertices, as a minimum spanning tree
+	 */
+	public Vertex[] delaunayTree(int startingVertex)
+	{
+		double[] x = xs, y = ys;
+
+		// sort the cities by location to find the ones at the same place
+		int[] ids = new int[V];
+		for(int i = 0; i < V; i++)
+		{
+			ids[i] = i;
+		}
+		Delaunay.quicksort(ids, x, 0, V - 1);
+		for(int i = 0, j; i < V; i = j)
+		{
+			for(j = i + 1; j < V && x[ids[j]] == x[ids[i]]; j++);
+			Delaunay.quicksort(ids, y, i, j - 1);
+		}
+		int[] from = new int[Math.max(3 * V, 1)];
+		int[] to = new int[from.length];
+		int m = 0; // number of candidate edges
+		int n = 0; // number of distinct locations
+		int[] city = new int[V]; // a city at each distinct location
+		double[] ux = new double[V];
+		double[] uy = new double[V];
+		for(int i = 0; i < V; i++)
+		{
+			int v = ids[i];
+			if(n > 0 && x[v] == ux[n - 1] && y[v] == uy[n - 1])
+			{
+				from[m] = city[n - 1];
+				to[m++] = v;
+			}
+			else
+			{
+				city[n] = v;
+				ux[n] = x[v];
+				uy[n++] = y[v];
+			}
+		}
+
+		Delaunay triangulation = new Delaunay(ux, uy, n);
+		int[] uFrom = new int[Math.max(3 * n, 1)];
+		int[] uTo = new int[uFrom.length];
+		int k = triangulation.edges(uFrom, uTo);
+		for(int i = 0; i < k; i++)
+		{
+			from[m] = city[uFrom[i]];
+			to[m++] = city[uTo[i]];
+		}
+
+		// Kruskal: shortest edges first, skipping those that close a cycle
+		double[] length = new double[m];
+		int[] order = new int[m];
+		for(int i = 0; i < m; i++)
+		{
+			length[i] = squaredDistance(x[from[i]], y[from[i]], x[to[i]], y[to[i]]);
+			order[i] = i;
+		}
+		Delaunay.quicksort(order, length, 0, m - 1);
+		int[] parent = new int[V];
+		int[] size = new int[V];
+		for(int i = 0; i < V; i++)
+		{
+			parent[i] = i;
+			size[i] = 1;
+		}
+		int[] treeFrom = new int[Math.max(V - 1, 0)];
+		int[] treeTo = new int[treeFrom.length];
+		int t = 0;
+		for(int i = 0; i < m && t < V - 1; i++)
+		{
+			int a = find(parent, from[order[i]]);
+			int b = find(parent, to[order[i]]);
+			if(a != b)
+			{
+				if(size[a] < size[b])
+				{
+					int c = a;
+					a = b;
+					b = c;
 				}
+				parent[b] = a;
+				size[a] += size[b];
+				treeFrom[t] = from[order[i]];
+				treeTo[t++] = to[order[i]];
 			}
 		}
+		if(t < V - 1)
+		{
+			throw new IllegalStateException("Delaunay edges span only " + (t + 1) + " of " + V + " cities");
+		}
+		return orientTree(treeFrom, treeTo, t, startingVertex);
+	}
+
+	/**
+	 * Compute the minimum spanning tree of the graph, which is the Euclidean
+	 * minimum spanning tree of the cities, by Boruvka's algorithm with
+	 * nearest neighbor searches in a k-d tree of the cities (see Boruvka),
+	 * in near linear time in practice
+	 * @param startingVertex - the root of the tree
+	 * @return the vertices, as a minimum spanning tree
+	 */
+	public Vertex[] boruvkaTree(int startingVertex)
+	{
+		Boruvka boruvka = new Boruvka(xs, ys, V);
+		boruvka.run();
+		int m = boruvka.edges();
+		int[] from = new int[m];
+		int[] to = new int[m];
+		for(int i = 0; i < m; i++)
+		{
+			from[i] = boruvka.from(i);
+			to[i] = boruvka.to(i);
+		}
+		return orientTree(from, to, m, startingVertex);
+	}
+
+	/**
+	 * Find the root of a vertex's set in a union-find forest, halving the
+	 * path on the way
+	 * @param parent - the forest
+	 * @param v - the vertex
+	 * @return the root
+	 */
+	private static int find(int[] parent, int v)
+	{
+		while(parent[v] != v)
+		{
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/**
+	 * Set each vertex's predecessor and distance from a list of tree edges,
+	 * by a breadth first search from the root, as minSpanningTree() sets them
+	 * @param from - the first vertex of each edge
+	 * @param to - the second vertex of each edge
+	 * @param m - the number of edges
+	 * @param root - the root of the tree
+	 * @return the vertices, as a minimum spanning tree
+	 * @throws IllegalStateException if the edges do not reach every vertex
+	 */
+	private Vertex[] orientTree(int[] from, int[] to, int m, int root)
+	{
+		// adjacency lists of the tree, in compressed form
+		int[] start = new int[V + 1];
+		for(int i = 0; i < m; i++)
+		{
+			start[from[i] + 1]++;
+			start[to[i] + 1]++;
+		}
+		for(int v = 0; v < V; v++)
+		{
+			start[v + 1] += start[v];
+		}
+		int[] fill = Arrays.copyOf(start, V);
+		int[] adj = new int[2 * m];
+		for(int i = 0; i < m; i++)
+		{
+			adj[fill[from[i]]++] = to[i];
+			adj[fill[to[i]]++] = from[i];
+		}
+
+		for(int i = 0; i < V; i++)
+		{
+			vertices[i].setPredecessor(Integer.MIN_VALUE);
+			vertices[i].setDistance(Double.POSITIVE_INFINITY);
+		}
+		vertices[root].setDistance(0);
+		int[] queue = new int[V];
+		int head = 0, tail = 0;
+		queue[tail++] = root;
+		while(head < tail)
+		{
+			int v = queue[head++];
+			for(int j = start[v]; j < start[v + 1]; j++)
+			{
+				int w = adj[j];
+				if(vertices[w].getDistance() == Double.POSITIVE_INFINITY)
+				{
+					vertices[w].setPredecessor(v);
+					vertices[w].setDistance(euclideanDistance(xs[v], ys[v], xs[w], ys[w]));
+					queue[tail++] = w;
+				}
+			}
+		}
+		if(tail < V)
+		{
+			throw new IllegalStateException("Spanning tree reaches only " + tail + " of " + V + " cities");
+		}
 		return vertices;
 	}
 
@@ -115,7 +381,7 @@ public class Cities
 			bw.write("g " + V + " " + E + "\n");
 			for(int i = 1; i < V; i++)
 			{
-				bw.write("d " + i + " " + new BigDecimal(vertices[i].getX(), mc) + " " + new BigDecimal(vertices[i].getY(), mc) + "\n");
+				bw.write("d " + i + " " + new BigDecimal(xs[i], mc) + " " + new BigDecimal(ys[i], mc) + "\n");
 			}
 			
 			for(int i = 1; i < V; i++)
@@ -192,6 +458,8 @@ public class Cities
 						V = numVertices;
 						E = numEdges;
 						vertices = new Vertex[V];
+						xs = new double[V];
+						ys = new double[V];
 					}
 					// ignore
 					else if(lineArr[0].equals("v"))
@@ -208,6 +476,8 @@ public class Cities
 						initializeIfNull(index, V);
 						vertices[index].setX(x);
 						vertices[index].setY(y);
+						xs[index] = x;
+						ys[index] = y;
 						vertices[index].setIndex(index);
 					}
 					// ignore
@@ -251,7 +521,44 @@ public class Cities
 	 */
 	public static double euclideanDistance(double x1, double y1, double x2, double y2)
 	{
-		return Math.sqrt(Math.pow((x1 - x2), 2) + Math.pow((y1 - y2), 2));
+		return Math.sqrt(squaredDistance(x1, y1, x2, y2));
+	}
+	
+	/**
+	 * Compute the square of the Euclidean distance between two points, which
+	 * orders pairs of points the same as the distance, without the square root
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @return the squared distance
+	 */
+	public static double squaredDistance(double x1, double y1, double x2, double y2)
+	{
+		double dx = x1 - x2;
+		double dy = y1 - y2;
+		return dx * dx + dy * dy;
+	}
+	
+	/**
+	 * Compute the squared distances from one point to a block of points.
+	 * The loop has no branches and each iteration is independent, so the JIT
+	 * compiles it to SIMD instructions that do several points at a time.
+	 * @param qx - x coordinate of the point
+	 * @param qy - y coordinate of the point
+	 * @param x - x coordinates of the block
+	 * @param y - y coordinates of the block
+	 * @param n - the number of points in the block, the first n of each array
+	 * @param d2 - set to the squared distance to each point of the block
+	 */
+	public static void squaredDistances(double qx, double qy, double[] x, double[] y, int n, double[] d2)
+	{
+		for(int i = 0; i < n; i++)
+		{
+			double dx = x[i] - qx;
+			double dy = y[i] - qy;
+			d2[i] = dx * dx + dy * dy;
+		}
 	}
 	
 	/**
@@ -264,6 +571,7 @@ public class Cities
 		if(vertices[index] == null)
 		{
 			vertices[index] = new Vertex(index, V);
+			vertices[index].setIndex(index);
 		}
 	}
 	
@@ -281,8 +589,13 @@ public class Cities
 	 */
 	public static void usage()
 	{
-		System.err.println("Usage: java Cities <fileName>"
-				+ "<fileName> = name of a file in graph file format");
+		System.err.println("Usage: java Cities <fileName> [-mst <method>]\n"
+				+ "<fileName> = name of a file in graph file format\n"
+				+ "-mst = how to compute the minimum spanning tree (same total distance):\n"
+				+ "       prim = Prim's algorithm on the complete graph (default)\n"
+				+ "       dense = Prim's algorithm on the complete graph, array form, O(V^2) on all cores\n"
+				+ "       delaunay = Kruskal's algorithm on the Delaunay triangulation, O(V log V)\n"
+				+ "       boruvka = Boruvka's algorithm with k-d tree nearest neighbor searches, on all cores");
 		System.exit(0);
 	}
 }
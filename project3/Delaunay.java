@@ -0,0 +1,728 @@
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Delaunay triangulation of a set of points in the plane, by the sweep-
+ * hull method: the points are added in order of distance from a seed
+ * triangle near the middle of the set, each one joined to the part of the
+ * convex hull it can see, and the new triangles flipped until they all
+ * satisfy the empty circle condition. A hash of the hull by angle finds
+ * the visible part of the hull in near constant time, so the whole
+ * triangulation takes O(n log n) time, the cost of the sort, and linear
+ * space.
+ *
+ * The triangulation is stored as half-edges: triangle t has half-edges
+ * 3t, 3t+1 and 3t+2, half-edge e starts at point triangles[e], and
+ * halfedges[e] is the opposite half-edge in the adjacent triangle, or -1
+ * on the convex hull.
+ *
+ * The orientation and in-circle tests are exact (they fall back to
+ * BigDecimal arithmetic when the floating point result is too close to 0
+ * to trust), so the hull stays convex and the flips are right even with
+ * many collinear or cocircular points. The sweep needs each point to be
+ * outside the hull of the ones before it. When the points are so nearly
+ * collinear that the seed triangle's circumcenter is too far away for the
+ * distances from it to order them, a point turns out to be inside; the
+ * sweep then starts again with the points in lexicographic order, in
+ * which each one is outside the hull of those before it. Points must be
+ * distinct; if they are all collinear there are no triangles, and
+ * edges() returns the path through them in order along the line.
+ * @author Joseph Ville
+ */
+public class Delaunay
+{
+	private static final double ORIENT_BOUND = 3.3306690738754716e-16; // (3 + 16 eps) eps
+	private static final double IN_CIRCLE_BOUND = 1.1102230246251577e-15; // (10 + 96 eps) eps
+
+	private double[] x, y; // the points
+	private int n; // number of points
+	private int[] triangles; // start point of each half-edge
+	private int[] halfedges; // opposite half-edge, or -1
+	private int trianglesLen; // half-edges in use
+	private int[] collinear; // the points in order along the line, if there are no triangles
+
+	// state of the sweep
+	private int[] hullPrev, hullNext; // the hull as a circular doubly linked list
+	private int[] hullTri; // a hull half-edge of each point on the hull
+	private int[] hullHash; // hull points by pseudo-angle about the center
+	private int hashSize;
+	private int hullStart;
+	private double cx, cy; // center of the seed triangle's circumcircle
+	private int[] edgeStack = new int[512]; // pending flips, grown as needed
+
+	/**
+	 * Triangulate a set of points
+	 * @param x - the x coordinates
+	 * @param y - the y coordinates, y[i] going with x[i]
+	 * @param n - the number of points, the first n of each array
+	 */
+	public Delaunay(double[] x, double[] y, int n)
+	{
+		this.x = x;
+		this.y = y;
+		this.n = n;
+		int maxTriangles = Math.max(2 * n - 5, 0);
+		triangles = new int[maxTriangles * 3];
+		halfedges = new int[maxTriangles * 3];
+		triangulate();
+		// let the sweep state go
+		hullPrev = hullNext = hullTri = hullHash = null;
+		checkConnected();
+	}
+
+	/**
+	 * @return the number of half-edges; the triangles are 0 to size()/3-1
+	 */
+	public int size()
+	{
+		return trianglesLen;
+	}
+
+	/**
+	 * @param e - a half-edge
+	 * @return the point the half-edge starts at
+	 */
+	public int start(int e)
+	{
+		return triangles[e];
+	}
+
+	/**
+	 * @param e - a half-edge
+	 * @return the opposite half-edge, or -1 if e is on the convex hull
+	 */
+	public int opposite(int e)
+	{
+		return halfedges[e];
+	}
+
+	/**
+	 * @param e - a half-edge
+	 * @return the next half-edge around the same triangle
+	 */
+	public static int next(int e)
+	{
+		return e % 3 == 2 ? e - 2 : e + 1;
+	}
+
+	/**
+	 * List each edge of the triangulation once. There are at most 3n-6.
+	 * @param from - set to the first point of each edge
+	 * @param to - set to the second point of each edge
+	 * @return the number of edges
+	 */
+	public int edges(int[] from, int[] to)
+	{
+		int m = 0;
+		if(collinear != null)
+		{
+			for(int i = 1; i < collinear.length; i++)
+			{
+				from[m] = collinear[i - 1];
+				to[m++] = collinear[i];
+			}
+			return m;
+		}
+		for(int e = 0; e < trianglesLen; e++)
+		{
+			if(e > halfedges[e])
+			{
+				from[m] = triangles[e];
+				to[m++] = triangles[next(e)];
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * @return the most edges edges() can list
+	 */
+	public int maxEdges()
+	{
+		return Math.max(3 * n - 6, n - 1);
+	}
+
+	/**
+	 * Build the triangulation
+	 */
+	private void triangulate()
+	{
+		if(n < 2)
+		{
+			collinear = new int[n];
+			return;
+		}
+		hullPrev = new int[n];
+		hullNext = new int[n];
+		hullTri = new int[n];
+		hashSize = (int) Math.ceil(Math.sqrt(n));
+		hullHash = new int[hashSize];
+		int[] ids = new int[n];
+		double[] dists = new double[n];
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < n; i++)
+		{
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+			ids[i] = i;
+		}
+		double midX = (minX + maxX) / 2;
+		double midY = (minY + maxY) / 2;
+
+		// seed triangle: the point nearest the middle, the point nearest
+		// that, and the point making the smallest circumcircle with them
+		int i0 = 0, i1 = 0, i2 = 0;
+		double minDist = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < n; i++)
+		{
+			double d = dist(midX, midY, x[i], y[i]);
+			if(d < minDist)
+			{
+				i0 = i;
+				minDist = d;
+			}
+		}
+		minDist = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < n; i++)
+		{
+			double d = dist(x[i0], y[i0], x[i], y[i]);
+			if(i != i0 && d < minDist && d > 0)
+			{
+				i1 = i;
+				minDist = d;
+			}
+		}
+		double minRadius = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < n; i++)
+		{
+			if(i == i0 || i == i1 || (!orient(x[i0], y[i0], x[i1], y[i1], x[i], y[i]) &&
+					!orient(x[i1], y[i1], x[i0], y[i0], x[i], y[i])))
+			{
+				continue; // one of the first two, or on the line through them
+			}
+			double r = circumradius(x[i0], y[i0], x[i1], y[i1], x[i], y[i]);
+			if(r < minRadius)
+			{
+				i2 = i;
+				minRadius = r;
+			}
+		}
+
+		if(minRadius == Double.POSITIVE_INFINITY)
+		{
+			// all on one line: order them along it
+			for(int i = 0; i < n; i++)
+			{
+				dists[i] = x[i] != x[0] ? x[i] - x[0] : y[i] - y[0];
+			}
+			quicksort(ids, dists, 0, n - 1);
+			collinear = ids;
+			return;
+		}
+
+		// add the points in order of distance from the seed's circumcenter
+		circumcenter(x[i0], y[i0], x[i1], y[i1], x[i2], y[i2]);
+		for(int i = 0; i < n; i++)
+		{
+			dists[i] = dist(x[i], y[i], cx, cy);
+		}
+		quicksort(ids, dists, 0, n - 1);
+		if(sweep(ids, i0, i1, i2))
+		{
+			return;
+		}
+
+		// nearly collinear: add them in lexicographic order instead, from
+		// the first two points and the first point not on the line through
+		// them, with the hash keyed on the angle about that triangle's centroid
+		for(int i = 0; i < n; i++)
+		{
+			ids[i] = i;
+		}
+		quicksort(ids, x, 0, n - 1);
+		for(int i = 0, j; i < n; i = j)
+		{
+			for(j = i + 1; j < n && x[ids[j]] == x[ids[i]]; j++);
+			quicksort(ids, y, i, j - 1);
+		}
+		i0 = ids[0];
+		i1 = ids[1];
+		int k = 2;
+		while(!orient(x[i0], y[i0], x[i1], y[i1], x[ids[k]], y[ids[k]]) &&
+				!orient(x[i1], y[i1], x[i0], y[i0], x[ids[k]], y[ids[k]]))
+		{
+			k++;
+		}
+		i2 = ids[k];
+		cx = (x[i0] + x[i1] + x[i2]) / 3;
+		cy = (y[i0] + y[i1] + y[i2]) / 3;
+		if(!sweep(ids, i0, i1, i2))
+		{
+			throw new IllegalStateException("Delaunay sweep found a point inside the hull; are the points distinct?");
+		}
+	}
+
+	/**
+	 * Triangulate the points from a seed triangle, adding the rest in an
+	 * order in which each point is outside the hull of those before it,
+	 * with the hull hash keyed on the angle about (cx, cy), a point inside
+	 * the seed triangle or its circumcenter
+	 * @param ids - the points, in the order to add them
+	 * @param i0 - a point of the seed triangle
+	 * @param i1 - another
+	 * @param i2 - the third, not on the line through the other two
+	 * @return false, leaving the triangulation incomplete, if a point was
+	 * 		not outside the hull when its turn came
+	 */
+	private boolean sweep(int[] ids, int i0, int i1, int i2)
+	{
+		// make the seed triangle clockwise
+		if(orient(x[i0], y[i0], x[i1], y[i1], x[i2], y[i2]))
+		{
+			int i = i1;
+			i1 = i2;
+			i2 = i;
+		}
+
+		// the seed triangle is the starting hull
+		hullStart = i0;
+		hullNext[i0] = hullPrev[i2] = i1;
+		hullNext[i1] = hullPrev[i0] = i2;
+		hullNext[i2] = hullPrev[i1] = i0;
+		hullTri[i0] = 0;
+		hullTri[i1] = 1;
+		hullTri[i2] = 2;
+		Arrays.fill(hullHash, -1);
+		hullHash[hashKey(x[i0], y[i0])] = i0;
+		hullHash[hashKey(x[i1], y[i1])] = i1;
+		hullHash[hashKey(x[i2], y[i2])] = i2;
+		trianglesLen = 0;
+		addTriangle(i0, i1, i2, -1, -1, -1);
+
+		for(int k = 0; k < n; k++)
+		{
+			int i = ids[k];
+			if(i == i0 || i == i1 || i == i2)
+			{
+				continue;
+			}
+			double px = x[i], py = y[i];
+
+			// find an edge of the hull that the point can see, starting
+			// from the hull point nearest it in angle
+			int start = 0;
+			for(int j = 0, key = hashKey(px, py); j < hashSize; j++)
+			{
+				start = hullHash[(key + j) % hashSize];
+				if(start != -1 && start != hullNext[start])
+				{
+					break;
+				}
+			}
+			start = hullPrev[start];
+			int e = start, q;
+			while(!orient(px, py, x[e], y[e], x[q = hullNext[e]], y[q]))
+			{
+				e = q;
+				if(e == start)
+				{
+					e = -1;
+					break;
+				}
+			}
+			if(e == -1)
+			{
+				return false; // inside the hull, or on it
+			}
+
+			// join the point to the visible edge, then flip until Delaunay
+			int t = addTriangle(e, i, hullNext[e], -1, -1, hullTri[e]);
+			hullTri[i] = legalize(t + 2);
+			hullTri[e] = t;
+
+			// walk forward along the hull, joining the other visible edges
+			int m = hullNext[e];
+			while(orient(px, py, x[m], y[m], x[q = hullNext[m]], y[q]))
+			{
+				t = addTriangle(m, i, q, hullTri[i], -1, hullTri[m]);
+				hullTri[i] = legalize(t + 2);
+				hullNext[m] = m; // off the hull
+				m = q;
+			}
+
+			// and backward, if the first edge found was not the first visible one
+			if(e == start)
+			{
+				while(orient(px, py, x[q = hullPrev[e]], y[q], x[e], y[e]))
+				{
+					t = addTriangle(q, i, e, -1, hullTri[e], hullTri[q]);
+					legalize(t + 2);
+					hullTri[q] = t;
+					hullNext[e] = e; // off the hull
+					e = q;
+				}
+			}
+
+			hullStart = hullPrev[i] = e;
+			hullNext[e] = hullPrev[m] = i;
+			hullNext[i] = m;
+			hullHash[hashKey(px, py)] = i;
+			hullHash[hashKey(x[e], y[e])] = e;
+		}
+		return true;
+	}
+
+	/**
+	 * Check that the edges join every point to every other, as those of a
+	 * triangulation must; a point left out by the sweep would break the
+	 * spanning tree built on them
+	 * @throws IllegalStateException if they do not
+	 */
+	private void checkConnected()
+	{
+		int[] from = new int[maxEdges()];
+		int[] to = new int[from.length];
+		int m = edges(from, to);
+		int[] parent = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			parent[i] = i;
+		}
+		int components = n;
+		for(int j = 0; j < m; j++)
+		{
+			int a = find(parent, from[j]);
+			int b = find(parent, to[j]);
+			if(a != b)
+			{
+				parent[a] = b;
+				components--;
+			}
+		}
+		if(components > 1)
+		{
+			throw new IllegalStateException("Delaunay triangulation left " + components + " separate pieces");
+		}
+	}
+
+	/**
+	 * Find the root of a point's set in a union-find forest, halving the
+	 * path on the way
+	 * @param parent - the forest
+	 * @param v - the point
+	 * @return the root
+	 */
+	private static int find(int[] parent, int v)
+	{
+		while(parent[v] != v)
+		{
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/**
+	 * Flip half-edge a and the edges behind it until the triangles on
+	 * both sides of each satisfy the empty circle condition
+	 * @param a - a half-edge
+	 * @return the half-edge that ends at a's triangle's new point
+	 */
+	private int legalize(int a)
+	{
+		int i = 0; // edges on the stack
+		int ar;
+		while(true)
+		{
+			int b = halfedges[a];
+			int a0 = a - a % 3;
+			ar = a0 + (a + 2) % 3;
+			if(b == -1)
+			{
+				// hull edge
+				if(i == 0)
+				{
+					break;
+				}
+				a = edgeStack[--i];
+				continue;
+			}
+			int b0 = b - b % 3;
+			int al = a0 + (a + 1) % 3;
+			int bl = b0 + (b + 2) % 3;
+			int p0 = triangles[ar];
+			int pr = triangles[a];
+			int pl = triangles[al];
+			int p1 = triangles[bl];
+			if(inCircle(x[p0], y[p0], x[pr], y[pr], x[pl], y[pl], x[p1], y[p1]))
+			{
+				triangles[a] = p1;
+				triangles[b] = p0;
+				int hbl = halfedges[bl];
+				if(hbl == -1)
+				{
+					// the flipped edge was on the hull; fix the hull's reference to it
+					int e = hullStart;
+					do
+					{
+						if(hullTri[e] == bl)
+						{
+							hullTri[e] = a;
+							break;
+						}
+						e = hullPrev[e];
+					}
+					while(e != hullStart);
+				}
+				link(a, hbl);
+				link(b, halfedges[ar]);
+				link(ar, bl);
+				if(i == edgeStack.length)
+				{
+					edgeStack = Arrays.copyOf(edgeStack, 2 * i);
+				}
+				edgeStack[i++] = b0 + (b + 1) % 3;
+			}
+			else
+			{
+				if(i == 0)
+				{
+					break;
+				}
+				a = edgeStack[--i];
+			}
+		}
+		return ar;
+	}
+
+	/**
+	 * Make two half-edges opposite each other
+	 * @param a - a half-edge
+	 * @param b - a half-edge, or -1
+	 */
+	private void link(int a, int b)
+	{
+		halfedges[a] = b;
+		if(b != -1)
+		{
+			halfedges[b] = a;
+		}
+	}
+
+	/**
+	 * Add a triangle
+	 * @param i0 - first point
+	 * @param i1 - second point
+	 * @param i2 - third point
+	 * @param a - half-edge opposite i0-i1, or -1
+	 * @param b - half-edge opposite i1-i2, or -1
+	 * @param c - half-edge opposite i2-i0, or -1
+	 * @return the triangle's first half-edge
+	 */
+	private int addTriangle(int i0, int i1, int i2, int a, int b, int c)
+	{
+		int t = trianglesLen;
+		triangles[t] = i0;
+		triangles[t + 1] = i1;
+		triangles[t + 2] = i2;
+		link(t, a);
+		link(t + 1, b);
+		link(t + 2, c);
+		trianglesLen += 3;
+		return t;
+	}
+
+	/**
+	 * @param px - x coordinate of a point
+	 * @param py - y coordinate of a point
+	 * @return the point's slot in the hull hash
+	 */
+	private int hashKey(double px, double py)
+	{
+		double dx = px - cx, dy = py - cy;
+		double p = dx / (Math.abs(dx) + Math.abs(dy));
+		double angle = (dy > 0 ? 3 - p : 1 + p) / 4; // increases with the angle, 0 to 1
+		return (int) Math.floor(angle * hashSize) % hashSize;
+	}
+
+	/**
+	 * Exact orientation test
+	 * @return true if (rx, ry), (qx, qy), (px, py) turn counterclockwise
+	 */
+	private static boolean orient(double rx, double ry, double qx, double qy, double px, double py)
+	{
+		double l = (qx - rx) * (py - ry);
+		double r = (qy - ry) * (px - rx);
+		double det = l - r;
+		if(Math.abs(det) > ORIENT_BOUND * (Math.abs(l) + Math.abs(r)))
+		{
+			return det > 0;
+		}
+		BigDecimal ax = new BigDecimal(rx), ay = new BigDecimal(ry);
+		BigDecimal exact = new BigDecimal(qx).subtract(ax).multiply(new BigDecimal(py).subtract(ay)).subtract(
+				new BigDecimal(qy).subtract(ay).multiply(new BigDecimal(px).subtract(ax)));
+		return exact.signum() > 0;
+	}
+
+	/**
+	 * Exact in-circle test
+	 * @return true if (px, py) is inside the circle through the clockwise
+	 * 		   triangle (ax, ay), (bx, by), (cx, cy)
+	 */
+	private static boolean inCircle(double ax, double ay, double bx, double by, double cx, double cy,
+			double px, double py)
+	{
+		double dx = ax - px, dy = ay - py;
+		double ex = bx - px, ey = by - py;
+		double fx = cx - px, fy = cy - py;
+		double ap = dx * dx + dy * dy;
+		double bp = ex * ex + ey * ey;
+		double cp = fx * fx + fy * fy;
+		double efxy = ex * fy, fexy = fx * ey;
+		double fdxy = fx * dy, dfxy = dx * fy;
+		double dexy = dx * ey, edxy = ex * dy;
+		double det = ap * (efxy - fexy) + bp * (fdxy - dfxy) + cp * (dexy - edxy);
+		double permanent = (Math.abs(efxy) + Math.abs(fexy)) * ap + (Math.abs(fdxy) + Math.abs(dfxy)) * bp +
+				(Math.abs(dexy) + Math.abs(edxy)) * cp;
+		if(Math.abs(det) > IN_CIRCLE_BOUND * permanent)
+		{
+			return det < 0;
+		}
+		BigDecimal qx = new BigDecimal(px), qy = new BigDecimal(py);
+		BigDecimal adx = new BigDecimal(ax).subtract(qx), ady = new BigDecimal(ay).subtract(qy);
+		BigDecimal bdx = new BigDecimal(bx).subtract(qx), bdy = new BigDecimal(by).subtract(qy);
+		BigDecimal cdx = new BigDecimal(cx).subtract(qx), cdy = new BigDecimal(cy).subtract(qy);
+		BigDecimal exact = adx.multiply(adx).add(ady.multiply(ady)).multiply(bdx.multiply(cdy).subtract(cdx.multiply(bdy)))
+				.add(bdx.multiply(bdx).add(bdy.multiply(bdy)).multiply(cdx.multiply(ady).subtract(adx.multiply(cdy))))
+				.add(cdx.multiply(cdx).add(cdy.multiply(cdy)).multiply(adx.multiply(bdy).subtract(bdx.multiply(ady))));
+		return exact.signum() < 0;
+	}
+
+	/**
+	 * @return the squared distance between (ax, ay) and (bx, by)
+	 */
+	private static double dist(double ax, double ay, double bx, double by)
+	{
+		double dx = ax - bx, dy = ay - by;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * @return the squared radius of the circle through three points
+	 */
+	private static double circumradius(double ax, double ay, double bx, double by, double cx, double cy)
+	{
+		double dx = bx - ax, dy = by - ay;
+		double ex = cx - ax, ey = cy - ay;
+		double bl = dx * dx + dy * dy;
+		double cl = ex * ex + ey * ey;
+		double d = 0.5 / (dx * ey - dy * ex);
+		double ox = (ey * bl - dy * cl) * d;
+		double oy = (dx * cl - ex * bl) * d;
+		return ox * ox + oy * oy;
+	}
+
+	/**
+	 * Set (cx, cy) to the center of the circle through three points
+	 */
+	private void circumcenter(double ax, double ay, double bx, double by, double px, double py)
+	{
+		double dx = bx - ax, dy = by - ay;
+		double ex = px - ax, ey = py - ay;
+		double bl = dx * dx + dy * dy;
+		double cl = ex * ex + ey * ey;
+		double d = 0.5 / (dx * ey - dy * ex);
+		cx = ax + (ey * bl - dy * cl) * d;
+		cy = ay + (dx * cl - ex * bl) * d;
+	}
+
+	/**
+	 * Sort part of an array of indexes by a key
+	 * @param ids - the indexes
+	 * @param keys - the key of each index
+	 * @param left - first element to sort
+	 * @param right - last element to sort
+	 */
+	static void quicksort(int[] ids, double[] keys, int left, int right)
+	{
+		while(right - left > 20)
+		{
+			// median of three as the pivot
+			int median = (left + right) >>> 1;
+			swap(ids, median, left + 1);
+			if(keys[ids[left]] > keys[ids[right]])
+			{
+				swap(ids, left, right);
+			}
+			if(keys[ids[left + 1]] > keys[ids[right]])
+			{
+				swap(ids, left + 1, right);
+			}
+			if(keys[ids[left]] > keys[ids[left + 1]])
+			{
+				swap(ids, left, left + 1);
+			}
+			int i = left + 1;
+			int j = right;
+			int temp = ids[left + 1];
+			double tempKey = keys[temp];
+			while(true)
+			{
+				do
+				{
+					i++;
+				}
+				while(keys[ids[i]] < tempKey);
+				do
+				{
+					j--;
+				}
+				while(keys[ids[j]] > tempKey);
+				if(j < i)
+				{
+					break;
+				}
+				swap(ids, i, j);
+			}
+			ids[left + 1] = ids[j];
+			ids[j] = temp;
+			// recurse on the smaller side, loop on the larger
+			if(right - i + 1 >= j - left)
+			{
+				quicksort(ids, keys, left, j - 1);
+				left = i;
+			}
+			else
+			{
+				quicksort(ids, keys, i, right);
+				right = j - 1;
+			}
+		}
+		for(int i = left + 1; i <= right; i++)
+		{
+			int temp = ids[i];
+			double tempKey = keys[temp];
+			int j = i - 1;
+			while(j >= left && keys[ids[j]] > tempKey)
+			{
+				ids[j + 1] = ids[j];
+				j--;
+			}
+			ids[j + 1] = temp;
+		}
+	}
+
+	/**
+	 * Swap two elements of an array
+	 */
+	private static void swap(int[] a, int i, int j)
+	{
+		int t = a[i];
+		a[i] = a[j];
+		a[j] = t;
+	}
+}// end class Delaunay
@@ -0,0 +1,276 @@
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Prim's algorithm for the minimum spanning tree of the complete graph on
+ * a set of points, with edge weights the Euclidean distances, in the
+ * array form suited to a dense graph: no heap, just each point's distance
+ * to the tree so far, and at each step one pass over the points that are
+ * not yet in the tree, which relaxes their distances through the point
+ * just added and finds the nearest of them to add next. That is O(V^2)
+ * time and O(V) space, all in primitive arrays.
+ *
+ * The pass is split across a team of threads that lives for the whole
+ * run. Each thread owns a fixed slice of the points, and keeps the ones
+ * not yet in the tree packed at the front of its own arrays of
+ * coordinates, distances and predecessors (a point that joins the tree is
+ * replaced by the slice's last one), so the pass is a straight scan with
+ * no test for points already in the tree. Distances are kept squared,
+ * which orders them the same, and each pass starts with one call of the
+ * Cities.squaredDistances() kernel over the packed coordinates. When all
+ * threads reach the barrier with the nearest point of their slice, the
+ * barrier action picks the nearest of those, so only one value per thread
+ * is compared serially at each step. Ties go to the lower numbered point.
+ * @author Joseph Ville
+ */
+public class DensePrim
+{
+	private double[] x, y; // the points
+	private int n; // number of points
+	private double[] distance; // distance from each point to the tree
+	private int[] predecessor; // nearest tree point to each point, or -1 for the root
+	private int current; // the point added to the tree last
+	private int owner; // the slice it was in
+	private int ownerIndex; // and its place in the slice
+	private int added; // the number of points in the tree
+
+	/**
+	 * Construct an object of this class
+	 * @param x - the x coordinates
+	 * @param y - the y coordinates, y[i] going with x[i]
+	 * @param n - the number of points, the first n of each array
+	 */
+	public DensePrim(double[] x, double[] y, int n)
+	{
+		this.x = x;
+		this.y = y;
+		this.n = n;
+		distance = new double[n];
+		predecessor = new int[n];
+	}
+
+	/**
+	 * Compute the minimum spanning tree, using one thread per available
+	 * processor
+	 * @param root - the point to start from
+	 */
+	public void run(int root)
+	{
+		run(root, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Compute the minimum spanning tree
+	 * @param root - the point to start from
+	 * @param threads - the number of threads
+	 */
+	public void run(int root, int threads)
+	{
+		distance[root] = 0;
+		predecessor[root] = -1;
+		current = root;
+		owner = -1; // the root is in no slice
+		added = 1;
+		if(n <= 1)
+		{
+			return;
+		}
+
+		// at least a few thousand points per thread, or the barrier costs more than it saves
+		final int nt = Math.max(1, Math.min(threads, n / 4096));
+		final Slice[] slices = new Slice[nt];
+		for(int t = 0; t < nt; t++)
+		{
+			slices[t] = new Slice((int) ((long) n * t / nt), (int) ((long) n * (t + 1) / nt), root);
+		}
+		final CyclicBarrier barrier = new CyclicBarrier(nt, new Runnable()
+		{
+			public void run()
+			{
+				addNearest(slices);
+			}
+		});
+		final RuntimeException[] failure = new RuntimeException[1];
+		Thread[] team = new Thread[nt];
+		for(int t = 0; t < nt; t++)
+		{
+			final int rank = t;
+			team[t] = new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						while(added < n)
+						{
+							slices[rank].relax(rank);
+							barrier.await();
+						}
+					}
+					catch(InterruptedException | BrokenBarrierException ex)
+					{
+						// another thread failed
+					}
+					catch(RuntimeException ex)
+					{
+						synchronized(failure)
+						{
+							failure[0] = ex;
+						}
+						barrier.reset();
+					}
+				}
+			};
+			team[t].start();
+		}
+		for(Thread thread : team)
+		{
+			try
+			{
+				thread.join();
+			}
+			catch(InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for Prim threads", ex);
+			}
+		}
+		if(failure[0] != null)
+		{
+			throw failure[0];
+		}
+		slices[owner].remove(ownerIndex); // the last point added
+	}
+
+	/**
+	 * Add the nearest of the slices' nearest points to the tree. Runs in
+	 * one thread, while all the others wait at the barrier.
+	 * @param slices - the slices
+	 */
+	private void addNearest(Slice[] slices)
+	{
+		int nearest = -1;
+		for(int t = 0; t < slices.length; t++)
+		{
+			Slice s = slices[t];
+			if(s.nearest != -1 && (nearest == -1 || s.min < slices[owner].min ||
+					(s.min == slices[owner].min && s.id[s.nearest] < current)))
+			{
+				owner = t;
+				nearest = s.nearest;
+				current = s.id[nearest];
+			}
+		}
+		ownerIndex = nearest;
+		added++;
+	}
+
+	/**
+	 * The points of one slice that are not yet in the tree
+	 */
+	private class Slice
+	{
+		private double[] sx, sy; // coordinates
+		private double[] sd; // squared distance to the tree
+		private double[] d2; // squared distance to the point just added
+		private int[] sp; // predecessor
+		private int[] id; // the point
+		private int m; // how many
+		private double min; // distance of the nearest one to the tree
+		private int nearest; // its index in these arrays, or -1
+
+		/**
+		 * Construct an object of this class
+		 * @param lo - the first point of the slice
+		 * @param hi - one past the last point of the slice
+		 * @param root - the point the tree starts from, left out
+		 */
+		Slice(int lo, int hi, int root)
+		{
+			sx = new double[hi - lo];
+			sy = new double[hi - lo];
+			sd = new double[hi - lo];
+			d2 = new double[hi - lo];
+			sp = new int[hi - lo];
+			id = new int[hi - lo];
+			for(int v = lo; v < hi; v++)
+			{
+				if(v != root)
+				{
+					sx[m] = x[v];
+					sy[m] = y[v];
+					sd[m] = Double.POSITIVE_INFINITY;
+					id[m++] = v;
+				}
+			}
+		}
+
+		/**
+		 * Take a point that has joined the tree out of the slice, recording
+		 * its distance and predecessor
+		 * @param k - the point's index in these arrays
+		 */
+		void remove(int k)
+		{
+			distance[id[k]] = Math.sqrt(sd[k]);
+			predecessor[id[k]] = sp[k];
+			m--;
+			sx[k] = sx[m];
+			sy[k] = sy[m];
+			sd[k] = sd[m];
+			sp[k] = sp[m];
+			id[k] = id[m];
+		}
+
+		/**
+		 * Take out the point just added to the tree, if it is in this
+		 * slice, then relax the distances of the rest through it and find
+		 * the nearest of them to the tree
+		 * @param rank - this slice's index
+		 */
+		void relax(int rank)
+		{
+			if(rank == owner)
+			{
+				remove(ownerIndex);
+			}
+			int u = current;
+			Cities.squaredDistances(x[u], y[u], sx, sy, m, d2);
+			double best = Double.POSITIVE_INFINITY;
+			int bestK = -1;
+			for(int k = 0; k < m; k++)
+			{
+				if(d2[k] < sd[k])
+				{
+					sd[k] = d2[k];
+					sp[k] = u;
+				}
+				if(sd[k] <= best && (sd[k] < best || bestK == -1 || id[k] < id[bestK]))
+				{
+					best = sd[k];
+					bestK = k;
+				}
+			}
+			min = best;
+			nearest = bestK;
+		}
+	}// end class Slice
+
+	/**
+	 * @param v - a point
+	 * @return the point v joins in the tree, or -1 for the root
+	 */
+	public int predecessor(int v)
+	{
+		return predecessor[v];
+	}
+
+	/**
+	 * @param v - a point
+	 * @return the length of the edge from v to its predecessor, 0 for the root
+	 */
+	public double distance(int v)
+	{
+		return distance[v];
+	}
+}// end class DensePrim
@@ -0,0 +1,335 @@
+/**
+ * A k-d tree over a set of points in the plane, for nearest neighbor
+ * searches. Each node splits its points at the median of the coordinate
+ * in which their bounding box is widest, down to leaves of at most LEAF
+ * points. The nodes are stored in preorder in flat arrays, and the points
+ * are copied into the order of the leaves, so a search reads each leaf's
+ * coordinates from consecutive memory.
+ *
+ * Points can be given labels (e.g. the component each point is in), and
+ * a search can ask for the nearest point with a different label. Every
+ * node records the label its points all share, if they do, so a search
+ * skips whole subtrees of its own label without looking at their points.
+ *
+ * The tree does not change once built, so any number of threads may
+ * search it at once, each with its own Query object; setLabels() must
+ * not run during a search.
+ * @author Joseph Ville
+ */
+public class KdTree
+{
+	private static final int LEAF = 8; // most points in a leaf
+
+	private int n; // number of points
+	private double[] px, py; // coordinates, in leaf order
+	private int[] id; // the index of each point, in leaf order
+	private int[] label; // the label of each point, in leaf order
+
+	// nodes, in preorder; node i's left child is node i+1
+	private int nodes; // number of nodes
+	private int[] lo, hi; // the node's points are lo to hi-1 in leaf order
+	private int[] right; // right child, or -1 for a leaf
+	private double[] minX, maxX, minY, maxY; // bounding box
+	private int[] nodeLabel; // the label all the node's points have, or -1 if they differ
+
+	/**
+	 * Build a k-d tree
+	 * @param x - the x coordinates
+	 * @param y - the y coordinates, y[i] going with x[i]
+	 * @param n - the number of points, the first n of each array
+	 */
+	public KdTree(double[] x, double[] y, int n)
+	{
+		this.n = n;
+		px = new double[n];
+		py = new double[n];
+		id = new int[n];
+		label = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			px[i] = x[i];
+			py[i] = y[i];
+			id[i] = i;
+		}
+		int maxNodes = Math.max(1, 4 * ((n + LEAF - 1) / LEAF));
+		lo = new int[maxNodes];
+		hi = new int[maxNodes];
+		right = new int[maxNodes];
+		minX = new double[maxNodes];
+		maxX = new double[maxNodes];
+		minY = new double[maxNodes];
+		maxY = new double[maxNodes];
+		nodeLabel = new int[maxNodes];
+		build(0, n);
+	}
+
+	/**
+	 * Build the subtree for some of the points, in preorder
+	 * @param from - the first point, in leaf order
+	 * @param to - one past the last point
+	 * @return the root node of the subtree
+	 */
+	private int build(int from, int to)
+	{
+		int node = nodes++;
+		lo[node] = from;
+		hi[node] = to;
+		double x0 = Double.POSITIVE_INFINITY, x1 = Double.NEGATIVE_INFINITY;
+		double y0 = Double.POSITIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for(int k = from; k < to; k++)
+		{
+			x0 = Math.min(x0, px[k]);
+			x1 = Math.max(x1, px[k]);
+			y0 = Math.min(y0, py[k]);
+			y1 = Math.max(y1, py[k]);
+		}
+		minX[node] = x0;
+		maxX[node] = x1;
+		minY[node] = y0;
+		maxY[node] = y1;
+		if(to - from <= LEAF)
+		{
+			right[node] = -1;
+			return node;
+		}
+		int mid = (from + to) >>> 1;
+		select(from, to - 1, mid, x1 - x0 >= y1 - y0);
+		build(from, mid);
+		right[node] = build(mid, to);
+		return node;
+	}
+
+	/**
+	 * Partially sort some of the points so the k-th is where it would be
+	 * if they were sorted, with none after it smaller and none before it
+	 * larger (Hoare's selection)
+	 * @param left - the first point
+	 * @param rightEnd - the last point
+	 * @param k - the position wanted
+	 * @param byX - whether to compare x coordinates, else y
+	 */
+	private void select(int left, int rightEnd, int k, boolean byX)
+	{
+		double[] key = byX ? px : py;
+		while(left < rightEnd)
+		{
+			double pivot = key[(left + rightEnd) >>> 1];
+			int i = left, j = rightEnd;
+			while(i <= j)
+			{
+				while(key[i] < pivot)
+				{
+					i++;
+				}
+				while(key[j] > pivot)
+				{
+					j--;
+				}
+				if(i <= j)
+				{
+					swap(i++, j--);
+				}
+			}
+			if(k <= j)
+			{
+				rightEnd = j;
+			}
+			else if(k >= i)
+			{
+				left = i;
+			}
+			else
+			{
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Swap two points in leaf order
+	 */
+	private void swap(int i, int j)
+	{
+		double t = px[i];
+		px[i] = px[j];
+		px[j] = t;
+		t = py[i];
+		py[i] = py[j];
+		py[j] = t;
+		int s = id[i];
+		id[i] = id[j];
+		id[j] = s;
+	}
+
+	/**
+	 * Give the points labels, for Query.nearestOther()
+	 * @param labels - the label of each point, >= 0
+	 */
+	public void setLabels(int[] labels)
+	{
+		for(int k = 0; k < n; k++)
+		{
+			label[k] = labels[id[k]];
+		}
+		// children come after their parent in preorder
+		for(int node = nodes - 1; node >= 0; node--)
+		{
+			if(right[node] == -1)
+			{
+				int common = label[lo[node]];
+				for(int k = lo[node] + 1; k < hi[node] && common != -1; k++)
+				{
+					if(label[k] != common)
+					{
+						common = -1;
+					}
+				}
+				nodeLabel[node] = common;
+			}
+			else
+			{
+				int l = nodeLabel[node + 1];
+				nodeLabel[node] = l == nodeLabel[right[node]] ? l : -1;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of points
+	 */
+	public int size()
+	{
+		return n;
+	}
+
+	/**
+	 * @param k - a position in leaf order, 0 to size()-1
+	 * @return the point at that position; nearby positions hold nearby points
+	 */
+	public int point(int k)
+	{
+		return id[k];
+	}
+
+	/**
+	 * @return a new search object, for one thread
+	 */
+	public Query query()
+	{
+		return new Query();
+	}
+
+	/**
+	 * A nearest neighbor search, and its result
+	 */
+	public class Query
+	{
+		private double qx, qy; // the query point
+		private int skip; // label to leave out, or -1
+		private int point; // the nearest point found, or -1
+		private double dist2; // its squared distance
+
+		/**
+		 * Find the nearest point to a location
+		 * @param x - x coordinate
+		 * @param y - y coordinate
+		 * @return the index of the nearest point, or -1 if there are none
+		 */
+		public int nearest(double x, double y)
+		{
+			return nearestOther(x, y, -1, Double.POSITIVE_INFINITY);
+		}
+
+		/**
+		 * Find the nearest point to a location that does not have a given
+		 * label and is closer than a given distance. Ties go to the lower
+		 * numbered point.
+		 * @param x - x coordinate
+		 * @param y - y coordinate
+		 * @param skip - the label to leave out, or -1 for none
+		 * @param bound2 - the square of the distance to look within
+		 * @return the index of the nearest such point, or -1 if there are none
+		 */
+		public int nearestOther(double x, double y, int skip, double bound2)
+		{
+			qx = x;
+			qy = y;
+			this.skip = skip;
+			point = -1;
+			dist2 = bound2;
+			if(n > 0)
+			{
+				search(0);
+			}
+			return point;
+		}
+
+		/**
+		 * @return the squared distance to the point found by the last search
+		 */
+		public double distance2()
+		{
+			return dist2;
+		}
+
+		/**
+		 * Search a subtree
+		 * @param node - its root
+		 */
+		private void search(int node)
+		{
+			if(skip != -1 && nodeLabel[node] == skip)
+			{
+				return;
+			}
+			if(right[node] == -1)
+			{
+				for(int k = lo[node]; k < hi[node]; k++)
+				{
+					if(skip == -1 || label[k] != skip)
+					{
+						double dx = px[k] - qx, dy = py[k] - qy;
+						double d = dx * dx + dy * dy;
+						if(d < dist2 || (d == dist2 && (point == -1 || id[k] < point)))
+						{
+							dist2 = d;
+							point = id[k];
+						}
+					}
+				}
+				return;
+			}
+			// nearer child first, then the other if it can still hold a closer point
+			int a = node + 1, b = right[node];
+			double da = boxDistance2(a), db = boxDistance2(b);
+			if(db < da)
+			{
+				int t = a;
+				a = b;
+				b = t;
+				double s = da;
+				da = db;
+				db = s;
+			}
+			if(da <= dist2)
+			{
+				search(a);
+				if(db <= dist2)
+				{
+					search(b);
+				}
+			}
+		}
+
+		/**
+		 * @param node - a node
+		 * @return the squared distance from the query point to the node's bounding box
+		 */
+		private double boxDistance2(int node)
+		{
+			double dx = Math.max(0, Math.max(minX[node] - qx, qx - maxX[node]));
+			double dy = Math.max(0, Math.max(minY[node] - qy, qy - maxY[node]));
+			return dx * dx + dy * dy;
+		}
+	}// end class Query
+}// end class KdTree
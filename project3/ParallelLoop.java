@@ -0,0 +1,174 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A parallel for loop over a range of ints, in the style of the PJ2
+ * parallelFor()/Loop idiom, but usable from a plain main() method.
+ * Each worker thread runs its own clone of the loop object, so fields
+ * set up in start() are per-thread variables. Iterations are handed out
+ * dynamically in chunks, because the cost of one iteration (a BFS, for
+ * example) can vary a lot.
+ *
+ * Usage:
+ * 	new ParallelLoop()
+ * 	{
+ * 		int[] buffer; // per-thread variable
+ * 		public void start() { buffer = new int[n]; }
+ * 		public void run(int i) { ... }
+ * 	}.exec(0, n - 1);
+ *
+ * @author Joseph Ville
+ */
+public abstract class ParallelLoop implements Cloneable
+{
+	private int rank; // index of the thread running this clone
+	private int threads; // number of threads in the team
+	private int chunk = 1; // iterations handed out at a time
+
+	/**
+	 * Initialize per-thread variables. Called once in each thread before
+	 * any call to run().
+	 */
+	public void start()
+	{
+	}
+
+	/**
+	 * Loop body
+	 * @param i - the loop index
+	 */
+	public abstract void run(int i);
+
+	/**
+	 * Finalize per-thread variables, e.g. merge a per-thread result into a
+	 * shared one. Called once in each thread after its last call to run().
+	 * Runs concurrently with the other threads' finish(), so any shared
+	 * state must be synchronized.
+	 */
+	public void finish()
+	{
+	}
+
+	/**
+	 * @return the rank of the thread running this loop object, 0 to threads()-1
+	 */
+	public int rank()
+	{
+		return rank;
+	}
+
+	/**
+	 * @return the number of threads running this loop
+	 */
+	public int threads()
+	{
+		return threads;
+	}
+
+	/**
+	 * Set the number of iterations handed to a thread at a time
+	 * @param chunk - the chunk size, >= 1
+	 * @return this loop object
+	 */
+	public ParallelLoop chunk(int chunk)
+	{
+		this.chunk = Math.max(1, chunk);
+		return this;
+	}
+
+	/**
+	 * Execute the loop for i = lb to ub inclusive, using one thread per
+	 * available processor. Returns when every iteration has finished.
+	 * @param lb - the lower bound
+	 * @param ub - the upper bound
+	 */
+	public void exec(int lb, int ub)
+	{
+		exec(lb, ub, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Execute the loop for i = lb to ub inclusive, using the given number
+	 * of threads. Returns when every iteration has finished.
+	 * @param lb - the lower bound
+	 * @param ub - the upper bound
+	 * @param nt - the number of threads
+	 */
+	public void exec(final int lb, final int ub, int nt)
+	{
+		if(ub < lb)
+		{
+			return;
+		}
+		nt = (int) Math.max(1, Math.min(nt, (long) ub - lb + 1));
+		final AtomicInteger next = new AtomicInteger(lb);
+		final RuntimeException[] failure = new RuntimeException[1];
+		Thread[] team = new Thread[nt];
+
+		for(int t = 0; t < nt; t++)
+		{
+			final ParallelLoop loop = copy();
+			loop.rank = t;
+			loop.threads = nt;
+			team[t] = new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						loop.start();
+						int i;
+						while((i = next.getAndAdd(loop.chunk)) <= ub && i >= lb)
+						{
+							int end = (int) Math.min(ub, (long) i + loop.chunk - 1);
+							for(int j = i; j <= end; j++)
+							{
+								loop.run(j);
+							}
+						}
+						loop.finish();
+					}
+					catch(RuntimeException ex)
+					{
+						synchronized(failure)
+						{
+							failure[0] = ex;
+						}
+					}
+				}
+			};
+			team[t].start();
+		}
+
+		for(Thread thread : team)
+		{
+			try
+			{
+				thread.join();
+			}
+			catch(InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for loop threads", ex);
+			}
+		}
+		if(failure[0] != null)
+		{
+			throw failure[0];
+		}
+	}
+
+	/**
+	 * @return a shallow copy of this loop object for one thread
+	 */
+	private ParallelLoop copy()
+	{
+		try
+		{
+			return (ParallelLoop) clone();
+		}
+		catch(CloneNotSupportedException ex)
+		{
+			throw new IllegalStateException(ex);
+		}
+	}
+}// end class ParallelLoop